@@ -0,0 +1,27 @@
+package com.test.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extraction de l'ID du contenu, y compris pour un texte invalide (coût de l'exception de conversion).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ContentIdBenchmark {
+
+    @Param({"CONTENT:123456", "123456", "CONTENT:inconnu"})
+    public String qrContent;
+
+    private final QrCodeDecoder decoder = new QrCodeDecoder();
+
+    @Benchmark
+    public Long extractContentId() {
+        return decoder.extractContentId(qrContent);
+    }
+}
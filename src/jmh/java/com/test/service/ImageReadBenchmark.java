@@ -0,0 +1,38 @@
+package com.test.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lecture d'une image reçue (première étape coûteuse de la capture), selon la résolution et le format.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ImageReadBenchmark {
+
+    @Param({"1024x768", "2048x1536", "4000x3000"})
+    public String resolution;
+
+    @Param({"jpeg", "png"})
+    public String format;
+
+    private final QrCodeDecoder decoder = new QrCodeDecoder();
+    private byte[] bytes;
+
+    @Setup
+    public void setup() throws Exception {
+        bytes = SyntheticImages.encode(SyntheticImages.page(resolution, 0), format);
+    }
+
+    @Benchmark
+    public BufferedImage readImage() throws Exception {
+        return decoder.readImage(new ByteArrayInputStream(bytes));
+    }
+}
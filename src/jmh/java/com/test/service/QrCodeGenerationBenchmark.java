@@ -0,0 +1,82 @@
+package com.test.service;
+
+import com.test.model.Folder;
+import com.test.model.FolderContent;
+import com.test.repository.FolderRepo;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Génération des étiquettes : un QR Code seul, puis l'archive ZIP d'un dossier.
+ * Le dossier est construit en mémoire ; le dépôt est remplacé par un proxy qui le retourne.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QrCodeGenerationBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Label {
+
+        @Param({"300", "1000"})
+        public int size;
+
+        QRCodeService qrCodeService;
+
+        @Setup
+        public void setup() {
+            qrCodeService = new QRCodeService(folderRepo(new Folder()));
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class FolderLabels {
+
+        @Param({"10", "100"})
+        public int contents;
+
+        QRCodeService qrCodeService;
+
+        @Setup
+        public void setup() {
+            List<FolderContent> folderContents = new ArrayList<>();
+            for (long id = 1; id <= contents; id++) {
+                FolderContent content = new FolderContent();
+                content.setId(id);
+                content.setName("Pièce justificative " + id);
+                folderContents.add(content);
+            }
+            Folder folder = new Folder();
+            folder.setId(1L);
+            folder.setContents(folderContents);
+            qrCodeService = new QRCodeService(folderRepo(folder));
+        }
+    }
+
+    @Benchmark
+    public byte[] generateQRCode(Label state) throws Exception {
+        return state.qrCodeService.generateQRCode("CONTENT:123456", state.size, state.size);
+    }
+
+    @Benchmark
+    public byte[] generateQRCodesZipForFolder(FolderLabels state) throws Exception {
+        return state.qrCodeService.generateQRCodesZipForFolder(1L);
+    }
+
+    private static FolderRepo folderRepo(Folder folder) {
+        return (FolderRepo) Proxy.newProxyInstance(FolderRepo.class.getClassLoader(),
+                new Class<?>[]{FolderRepo.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("findById")) {
+                        return Optional.of(folder);
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
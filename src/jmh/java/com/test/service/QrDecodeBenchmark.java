@@ -0,0 +1,73 @@
+package com.test.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lecture du QR Code sur une image déjà décodée, selon la résolution et l'intensité du bruit.
+ * decode ne porte que sur des images lisibles : une lecture en échec interrompt le banc au démarrage.
+ * decodeUnreadable mesure le chemin d'échec, sur un bruit choisi pour rendre le QR Code illisible.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QrDecodeBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class ReadablePage {
+
+        @Param({"1024x768", "2048x1536", "4000x3000"})
+        public String resolution;
+
+        // Au-delà de 0.02, le QR Code n'est plus lu aux résolutions les plus élevées
+        @Param({"0", "0.02"})
+        public double noise;
+
+        final QrCodeDecoder decoder = new QrCodeDecoder();
+        BufferedImage image;
+
+        @Setup
+        public void setup() throws Exception {
+            image = SyntheticImages.page(resolution, noise);
+            if (!SyntheticImages.QR_TEXT.equals(decoder.decode(image))) {
+                throw new IllegalStateException("QR Code illisible pour " + resolution + " / bruit " + noise);
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class UnreadablePage {
+
+        @Param({"1024x768", "2048x1536", "4000x3000"})
+        public String resolution;
+
+        // Bruit volontairement excessif : aucune lecture n'est attendue, quelle que soit la résolution
+        @Param({"0.2"})
+        public double unreadableNoise;
+
+        final QrCodeDecoder decoder = new QrCodeDecoder();
+        BufferedImage image;
+
+        @Setup
+        public void setup() throws Exception {
+            image = SyntheticImages.page(resolution, unreadableNoise);
+            if (decoder.decode(image) != null) {
+                throw new IllegalStateException("QR Code encore lisible pour " + resolution + " / bruit " + unreadableNoise);
+            }
+        }
+    }
+
+    @Benchmark
+    public String decode(ReadablePage page) {
+        return page.decoder.decode(page.image);
+    }
+
+    @Benchmark
+    public String decodeUnreadable(UnreadablePage page) {
+        return page.decoder.decode(page.image);
+    }
+}
@@ -0,0 +1,92 @@
+package com.test.service;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.client.j2se.MatrixToImageWriter;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Images de test générées à la volée : une page claire avec des lignes de « texte »,
+ * l'étiquette QR collée dans un coin, puis un bruit gaussien de capteur.
+ * La graine est fixe : chaque exécution mesure exactement les mêmes pixels.
+ */
+final class SyntheticImages {
+
+    static final String QR_TEXT = "CONTENT:123456";
+
+    private SyntheticImages() {
+    }
+
+    // Résolution au format "largeurxhauteur", par exemple "4000x3000"
+    static BufferedImage page(String resolution, double noise) throws WriterException {
+        String[] parts = resolution.split("x");
+        int width = Integer.parseInt(parts[0]);
+        int height = Integer.parseInt(parts[1]);
+        Random random = new Random(42);
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setColor(new Color(0xF2F0EA));
+            g.fillRect(0, 0, width, height);
+
+            // Lignes de texte simulées
+            g.setColor(new Color(0x303030));
+            int lineHeight = Math.max(6, height / 60);
+            for (int y = height / 3; y < height - lineHeight; y += lineHeight * 2) {
+                for (int x = width / 12; x < width - width / 12; ) {
+                    int word = lineHeight * (2 + random.nextInt(6));
+                    g.fillRect(x, y, Math.min(word, width - x), lineHeight);
+                    x += word + lineHeight;
+                }
+            }
+
+            // Étiquette QR : un quart du petit côté, comme une étiquette imprimée photographiée
+            int side = Math.min(width, height) / 4;
+            BitMatrix matrix = new QRCodeWriter().encode(QR_TEXT, BarcodeFormat.QR_CODE, side, side,
+                    Map.of(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.H, EncodeHintType.MARGIN, 1));
+            g.drawImage(MatrixToImageWriter.toBufferedImage(matrix), width - side - width / 20, height / 20, null);
+        } finally {
+            g.dispose();
+        }
+
+        // Bruit de capteur : écart type exprimé en fraction de la dynamique
+        if (noise > 0) {
+            double sigma = noise * 255;
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    int rgb = image.getRGB(x, y);
+                    int delta = (int) (random.nextGaussian() * sigma);
+                    image.setRGB(x, y, clamp((rgb >> 16 & 0xFF) + delta) << 16
+                            | clamp((rgb >> 8 & 0xFF) + delta) << 8
+                            | clamp((rgb & 0xFF) + delta));
+                }
+            }
+        }
+        return image;
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+
+    static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!ImageIO.write(image, format, out)) {
+            throw new IllegalArgumentException("Format d'image non pris en charge: " + format);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,115 @@
+package com.test.config;
+
+import com.test.storage.LocalStorageBackend;
+import com.test.storage.PackedStorageBackend;
+import com.test.storage.S3StorageBackend;
+import com.test.storage.StorageBackend;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+/**
+ * Choix du stockage des fichiers de pièces (project.storage.type) :
+ * local (répertoire project.document, par défaut) ou s3 (bucket compatible S3, partagé entre les nœuds).
+ * En stockage local, les pièces des documents validés sont regroupées dans des fichiers groupés (project.storage.packs).
+ */
+@Configuration
+public class StorageConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "project.storage.type", havingValue = LocalStorageBackend.TYPE, matchIfMissing = true)
+    public LocalStorageBackend localStorageBackend(@Value("${project.document}") String documentPath) throws IOException {
+        return new LocalStorageBackend(Paths.get(documentPath));
+    }
+
+    // Pièces des documents validés regroupées dans des fichiers groupés ; les fichiers séparés restent lus en dessous
+    @Bean
+    @Primary
+    @ConditionalOnExpression(PackedStorageBackend.ENABLED)
+    public PackedStorageBackend packedStorageBackend(LocalStorageBackend localStorageBackend, JdbcTemplate jdbcTemplate,
+                                                     @Value("${project.storage.packs.dir:packs/}") String packDir,
+                                                     @Value("${project.storage.packs.index-cache-size:100000}") long indexCacheSize,
+                                                     @Value("${project.storage.packs.index-ttl:PT1M}") Duration indexTtl) throws IOException {
+        return new PackedStorageBackend(localStorageBackend, jdbcTemplate, Paths.get(packDir), indexCacheSize, indexTtl);
+    }
+
+
+    @Configuration
+    @ConditionalOnProperty(name = "project.storage.type", havingValue = S3StorageBackend.TYPE)
+    static class S3 {
+
+        @Value("${project.storage.s3.endpoint:}")
+        private String endpoint;
+
+        @Value("${project.storage.s3.region:us-east-1}")
+        private String region;
+
+        @Value("${project.storage.s3.access-key:}")
+        private String accessKey;
+
+        @Value("${project.storage.s3.secret-key:}")
+        private String secretKey;
+
+        // MinIO et la plupart des stockages compatibles attendent le bucket dans le chemin
+        @Value("${project.storage.s3.path-style:true}")
+        private boolean pathStyle;
+
+        @Bean
+        public S3Client s3Client() {
+            var builder = S3Client.builder()
+                    .region(Region.of(region))
+                    .credentialsProvider(credentials())
+                    .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(pathStyle).build());
+            if (StringUtils.hasText(endpoint)) {
+                builder.endpointOverride(URI.create(endpoint));
+            }
+            return builder.build();
+        }
+
+        @Bean
+        public S3Presigner s3Presigner() {
+            var builder = S3Presigner.builder()
+                    .region(Region.of(region))
+                    .credentialsProvider(credentials())
+                    .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(pathStyle).build());
+            if (StringUtils.hasText(endpoint)) {
+                builder.endpointOverride(URI.create(endpoint));
+            }
+            return builder.build();
+        }
+
+        @Bean
+        public StorageBackend s3StorageBackend(S3Client s3Client, S3Presigner s3Presigner,
+                                               @Value("${project.storage.s3.bucket}") String bucket,
+                                               @Value("${project.storage.s3.prefix:}") String prefix,
+                                               @Value("${project.storage.s3.part-size:8MB}") DataSize partSize) {
+            return new S3StorageBackend(s3Client, s3Presigner, bucket, prefix, Math.toIntExact(partSize.toBytes()));
+        }
+
+        // Clés explicites, sinon chaîne par défaut du SDK (variables d'environnement, profil, rôle d'instance)
+        private AwsCredentialsProvider credentials() {
+            return StringUtils.hasText(accessKey)
+                    ? StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey))
+                    : DefaultCredentialsProvider.builder().build();
+        }
+    }
+}
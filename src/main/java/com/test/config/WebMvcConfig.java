@@ -1,19 +1,48 @@
 package com.test.config;
 
-import org.springframework.beans.factory.annotation.Value;
+import com.test.service.BatchUploadService;
+import com.test.storage.LocalStorageBackend;
+import com.test.storage.PackedStorageBackend;
+import com.test.storage.StorageBackend;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.servlet.autoconfigure.MultipartProperties;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.multipart.support.StandardServletMultipartResolver;
+import org.springframework.web.servlet.DispatcherServlet;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+@RequiredArgsConstructor
 @Configuration
 public class WebMvcConfig implements WebMvcConfigurer {
 
-    @Value("${project.document}")
-    private String documentPath;
+    private final StorageBackend storage;
 
+    // Accès direct au répertoire de stockage, uniquement en stockage local ; sinon /files/{filename}
+    // Les pièces déjà regroupées ne sont plus des fichiers du répertoire : seul /files/{filename} les sert
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        registry.addResourceHandler("/documents/**")
-                .addResourceLocations("file:" + documentPath);
+        StorageBackend files = storage instanceof PackedStorageBackend packed ? packed.getLoose() : storage;
+        if (files instanceof LocalStorageBackend local) {
+            registry.addResourceHandler("/documents/**")
+                    .addResourceLocations(local.getRoot().toUri().toString());
+        }
+    }
+
+    // Résolveur multipart par défaut, sauf pour l'envoi par lot au fil de l'eau dont BatchUploadService lit
+    // lui-même le corps : le conteneur ne le met pas en fichiers temporaires avant l'appel du contrôleur
+    @Bean(name = DispatcherServlet.MULTIPART_RESOLVER_BEAN_NAME)
+    public StandardServletMultipartResolver multipartResolver(MultipartProperties properties) {
+        StandardServletMultipartResolver resolver = new StandardServletMultipartResolver() {
+            @Override
+            public boolean isMultipart(HttpServletRequest request) {
+                return !BatchUploadService.isStreamingUpload(request) && super.isMultipart(request);
+            }
+        };
+        resolver.setResolveLazily(properties.isResolveLazily());
+        resolver.setStrictServletCompliance(properties.isStrictServletCompliance());
+        return resolver;
     }
 }
@@ -1,8 +1,5 @@
 package com.test.controller;
 
-import com.test.model.ClassificationPlan;
-import com.test.model.Folder;
-import com.test.model.FolderContent;
 import com.test.payload.*;
 import com.test.service.ClassificationService;
 import com.test.service.QRCodeService;
@@ -25,20 +22,20 @@ public class ClassificationController {
     // ============== GESTION DES PLANS ==============
 
     @PostMapping("/plans")
-    public ResponseEntity<ClassificationPlan> createPlan(@Valid @RequestBody ClassificationPlanDTO classificationPlanDTO) {
-        ClassificationPlan classificationPlan = classificationService.createPlan(classificationPlanDTO);
+    public ResponseEntity<ClassificationPlanResponseDTO> createPlan(@Valid @RequestBody ClassificationPlanDTO classificationPlanDTO) {
+        ClassificationPlanResponseDTO classificationPlan = classificationService.createPlan(classificationPlanDTO);
         return ResponseEntity.status(HttpStatus.CREATED).body(classificationPlan);
     }
 
     @GetMapping("/plans")
-    public ResponseEntity<List<ClassificationPlan>> getAllPlans() {
-        List<ClassificationPlan> plans = classificationService.getAllPlans();
+    public ResponseEntity<List<ClassificationPlanResponseDTO>> getAllPlans() {
+        List<ClassificationPlanResponseDTO> plans = classificationService.getAllPlans();
         return ResponseEntity.status(HttpStatus.OK).body(plans);
     }
 
     @GetMapping("/plans/{id}")
-    public ResponseEntity<ClassificationPlan> getPlanById(@PathVariable Long id) {
-        ClassificationPlan plan = classificationService.getPlanById(id);
+    public ResponseEntity<ClassificationPlanResponseDTO> getPlanById(@PathVariable Long id) {
+        ClassificationPlanResponseDTO plan = classificationService.getPlanById(id);
         return ResponseEntity.status(HttpStatus.OK).body(plan);
     }
 
@@ -60,22 +57,22 @@ public class ClassificationController {
 
     // Gestion des dossiers & parentId est optionnel : si absent, c'est un dossier racine du plan
     @PostMapping("/folders")
-    public ResponseEntity<Folder> createFolder(@RequestBody FolderDTO folderDTO) {
-        Folder folder = classificationService.createFolder(folderDTO);
+    public ResponseEntity<FolderResponseDTO> createFolder(@RequestBody FolderDTO folderDTO) {
+        FolderResponseDTO folder = classificationService.createFolder(folderDTO);
         return ResponseEntity.status(HttpStatus.CREATED).body(folder);
     }
 
     @GetMapping("/folders/{id}")
-    public ResponseEntity<Folder> getFolderById(@PathVariable Long id) {
-        Folder folder = classificationService.getFolderById(id);
+    public ResponseEntity<FolderResponseDTO> getFolderById(@PathVariable Long id) {
+        FolderResponseDTO folder = classificationService.getFolderById(id);
         return ResponseEntity.ok(folder);
     }
 
     @PutMapping("/folders/{id}")
-    public ResponseEntity<Folder> updateFolder(
+    public ResponseEntity<FolderResponseDTO> updateFolder(
             @PathVariable Long id,
             @Valid @RequestBody FolderDTO dto) {
-        Folder folder = classificationService.updateFolder(id, dto);
+        FolderResponseDTO folder = classificationService.updateFolder(id, dto);
         return ResponseEntity.ok(folder);
     }
 
@@ -90,22 +87,22 @@ public class ClassificationController {
     // ============== GESTION DES CONTENUS ==============
 
     @PostMapping("/contents")
-    public ResponseEntity<FolderContent> createContent(@Valid @RequestBody FolderContentDTO dto) throws Exception {
-        FolderContent content = classificationService.createContent(dto);
+    public ResponseEntity<FolderContentDTO> createContent(@Valid @RequestBody FolderContentDTO dto) throws Exception {
+        FolderContentDTO content = classificationService.createContent(dto);
         return ResponseEntity.status(HttpStatus.CREATED).body(content);
     }
 
     @GetMapping("/contents/{id}")
-    public ResponseEntity<FolderContent> getContentById(@PathVariable Long id) {
-        FolderContent content = classificationService.getContentById(id);
+    public ResponseEntity<FolderContentDTO> getContentById(@PathVariable Long id) {
+        FolderContentDTO content = classificationService.getContentById(id);
         return ResponseEntity.ok(content);
     }
 
     @PutMapping("/contents/{id}")
-    public ResponseEntity<FolderContent> updateContent(
+    public ResponseEntity<FolderContentDTO> updateContent(
             @PathVariable Long id,
             @Valid @RequestBody FolderContentDTO dto) {
-        FolderContent content = classificationService.updateContent(id, dto);
+        FolderContentDTO content = classificationService.updateContent(id, dto);
         return ResponseEntity.ok(content);
     }
 
@@ -127,8 +124,8 @@ public class ClassificationController {
     }
 
     @GetMapping("/folders/{folderId}/contents")
-    public ResponseEntity<List<FolderContent>> getFolderContents(@PathVariable Long folderId) {
-        List<FolderContent> contents = classificationService.getFolderContents(folderId);
+    public ResponseEntity<List<FolderContentDTO>> getFolderContents(@PathVariable Long folderId) {
+        List<FolderContentDTO> contents = classificationService.getFolderContents(folderId);
         return ResponseEntity.ok(contents);
     }
 
@@ -164,7 +161,7 @@ public class ClassificationController {
     @GetMapping("/contents/{id}/qrcode/base64")
     public ResponseEntity<QRCodeResponseDTO> getQRCodeBase64(@PathVariable Long id) throws Exception {
         String base64QrCode = qrCodeService.generateQRCodeBase64(id);
-        FolderContent content = classificationService.getContentById(id);
+        FolderContentDTO content = classificationService.getContentById(id);
 
         QRCodeResponseDTO response = QRCodeResponseDTO.builder()
                 .contentId(id)
@@ -1,19 +1,38 @@
 package com.test.controller;
 
 import com.test.enums.DocumentStatus;
+import com.test.enums.StatScope;
+import com.test.exception.OverloadedException;
 import com.test.model.Document;
 import com.test.model.Piece;
 import com.test.payload.*;
+import com.test.service.BatchUploadService;
+import com.test.service.BulkJobService;
 import com.test.service.CaptureService;
+import com.test.service.ClassificationService;
+import com.test.service.DocumentEventBroadcaster;
+import com.test.service.DocumentExportService;
 import com.test.service.DocumentService;
+import com.test.service.DocumentStatisticsService;
+import com.test.service.ReportService;
+import com.test.service.ResumableUploadService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -25,12 +44,20 @@ public class DocumentController {
 
     private final DocumentService  documentService;
     private final CaptureService  captureService;
+    private final ReportService reportService;
+    private final DocumentStatisticsService statisticsService;
+    private final DocumentEventBroadcaster eventBroadcaster;
+    private final ClassificationService classificationService;
+    private final BulkJobService bulkJobService;
+    private final DocumentExportService exportService;
+    private final ResumableUploadService uploadService;
+    private final BatchUploadService batchUploadService;
 
 
     // ============== CRÉATION DE DOCUMENT ==============
 
     @PostMapping
-    public ResponseEntity<Document> createDocument(@Valid @RequestBody DocumentCreateDTO payload) {
+    public ResponseEntity<DocumentDetailDTO> createDocument(@Valid @RequestBody DocumentCreateDTO payload) {
         return ResponseEntity.status(HttpStatus.CREATED)
                 .body(this.documentService.createDocument(payload));
     }
@@ -47,21 +74,11 @@ public class DocumentController {
         try {
             Piece piece = documentService.uploadAndClassifyPiece(documentId, file);
 
-            PieceResponseDTO response = PieceResponseDTO.builder()
-                    .id(piece.getId())
-                    .fileName(piece.getFileName())
-                    .fileSize(piece.getFileSize())
-                    .fileType(piece.getFileType())
-                    .pieceUrl(piece.getPieceUrl())
-                    .qrCodeData(piece.getQrCodeData())
-                    .contentId(piece.getContent().getId())
-                    .contentName(piece.getContent().getName())
-                    .isRequired(piece.getContent().isRequired())
-                    .createdAt(piece.getCreatedAt())
-                    .build();
-
-            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+            return ResponseEntity.status(HttpStatus.CREATED).body(documentService.toDTO(piece));
 
+        } catch (OverloadedException e) {
+            // 429 et Retry-After posés par le gestionnaire global
+            throw e;
         } catch (IllegalArgumentException e) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
         } catch (Exception e) {
@@ -70,6 +87,46 @@ public class DocumentController {
         }
     }
 
+    // ============== ENVOI REPRENABLE ==============
+
+    // Ouverture d'une session ; le fichier est ensuite envoyé par morceaux
+    @PostMapping("/{documentId}/uploads")
+    public ResponseEntity<UploadSessionDTO> createUpload(@PathVariable Long documentId,
+                                                         @Valid @RequestBody UploadSessionCreateDTO payload) throws IOException {
+        return ResponseEntity.status(HttpStatus.CREATED).body(uploadService.create(documentId, payload));
+    }
+
+    // Position atteinte, à partir de laquelle reprendre après une coupure
+    @GetMapping("/{documentId}/uploads/{uploadId}")
+    public ResponseEntity<UploadSessionDTO> getUpload(@PathVariable Long documentId, @PathVariable String uploadId) {
+        return ResponseEntity.ok(uploadService.get(documentId, uploadId));
+    }
+
+    // Corps brut (application/octet-stream), écrit à la position offset
+    @PutMapping("/{documentId}/uploads/{uploadId}")
+    public ResponseEntity<UploadSessionDTO> uploadChunk(@PathVariable Long documentId,
+                                                        @PathVariable String uploadId,
+                                                        @RequestParam long offset,
+                                                        HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(uploadService.appendChunk(documentId, uploadId, offset,
+                request.getContentLengthLong(), request.getInputStream()));
+    }
+
+    // Fichier complet : QR code, classement et enregistrement de la pièce comme pour un envoi direct
+    @PostMapping("/{documentId}/uploads/{uploadId}/complete")
+    public ResponseEntity<PieceResponseDTO> completeUpload(@PathVariable Long documentId,
+                                                           @PathVariable String uploadId) throws Exception {
+        Piece piece = uploadService.complete(documentId, uploadId);
+        return ResponseEntity.status(HttpStatus.CREATED).body(documentService.toDTO(piece));
+    }
+
+    @DeleteMapping("/{documentId}/uploads/{uploadId}")
+    public ResponseEntity<MessageResponseDTO> cancelUpload(@PathVariable Long documentId,
+                                                           @PathVariable String uploadId) throws IOException {
+        uploadService.cancel(documentId, uploadId);
+        return ResponseEntity.ok(new MessageResponseDTO("Envoi annulé avec succès"));
+    }
+
     // Upload multiple de pièces
     @PostMapping("/{documentId}/pieces/batch")
     public ResponseEntity<List<PieceResponseDTO>> uploadMultiplePieces(
@@ -83,17 +140,7 @@ public class DocumentController {
             try {
                 Piece piece = documentService.uploadAndClassifyPiece(documentId, files.get(i));
 
-                PieceResponseDTO response = PieceResponseDTO.builder()
-                        .id(piece.getId())
-                        .fileName(piece.getFileName())
-                        .fileSize(piece.getFileSize())
-                        .fileType(piece.getFileType())
-                        .pieceUrl(piece.getPieceUrl())
-                        .contentId(piece.getContent().getId())
-                        .contentName(piece.getContent().getName())
-                        .build();
-
-                responses.add(response);
+                responses.add(documentService.toDTO(piece));
 
             } catch (Exception e) {
                 errors.add("Fichier " + (i + 1) + ": " + e.getMessage());
@@ -108,59 +155,39 @@ public class DocumentController {
         return ResponseEntity.status(HttpStatus.CREATED).body(responses);
     }
 
+    // Upload multiple lu au fil de l'eau : chaque fichier est traité dès sa réception,
+    // une ligne de résultat NDJSON par fichier dès qu'il est traité
+    @PostMapping("/{documentId}/pieces/batch/stream")
+    public ResponseEntity<ResponseBodyEmitter> streamMultiplePieces(@PathVariable Long documentId,
+                                                                    HttpServletRequest request) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(batchUploadService.upload(documentId, request));
+    }
+
 
 
     // ============== CONSULTATION DE DOCUMENTS ==============
 
     @GetMapping("/{id}")
     public ResponseEntity<DocumentDetailDTO> getDocument(@PathVariable Long id) {
-        Document document = documentService.getDocumentForValidation(id);
-
-        DocumentDetailDTO dto = DocumentDetailDTO.builder()
-                .id(document.getId())
-                .title(document.getTitle())
-                .description(document.getDescription())
-                .status(document.getStatus())
-                .metadata(document.getMetadata())
-                .pieces(document.getPieces().stream()
-                        .map(p -> PieceResponseDTO.builder()
-                                .id(p.getId())
-                                .fileName(p.getFileName())
-                                .fileSize(p.getFileSize())
-                                .fileType(p.getFileType())
-                                .pieceUrl(p.getPieceUrl())
-                                .contentId(p.getContent().getId())
-                                .contentName(p.getContent().getName())
-                                .isRequired(p.getContent().isRequired())
-                                .createdAt(p.getCreatedAt())
-                                .build())
-                        .collect(Collectors.toList()))
-                .createdAt(document.getCreatedAt())
-                .updatedAt(document.getUpdatedAt())
-                .build();
-
-        return ResponseEntity.ok(dto);
+        return ResponseEntity.ok(documentService.getDocumentDetail(id));
     }
 
     @GetMapping
     public ResponseEntity<List<DocumentSummaryDTO>> getAllDocuments(
             @RequestParam(required = false) String title,
-            @RequestParam(required = false) DocumentStatus status) {
+            @RequestParam(required = false) DocumentStatus status,
+            @RequestParam(required = false) Long folderId) {
 
-        List<Document> documents = documentService.searchDocuments(title, status);
-
-        List<DocumentSummaryDTO> summaries = documents.stream()
-                .map(doc -> DocumentSummaryDTO.builder()
-                        .id(doc.getId())
-                        .title(doc.getTitle())
-                        .status(doc.getStatus())
-                        .pieceCount(doc.getPieces().size())
-                        .createdAt(doc.getCreatedAt())
-                        .updatedAt(doc.getUpdatedAt())
-                        .build())
-                .collect(Collectors.toList());
+        return ResponseEntity.ok(documentService.searchDocuments(title, status, folderId));
+    }
 
-        return ResponseEntity.ok(summaries);
+    // Reconstruction complète de la table des résumés depuis les tables sources
+    @PostMapping("/summaries/rebuild")
+    public ResponseEntity<MessageResponseDTO> rebuildSummaries() {
+        long rebuilt = documentService.rebuildSummaries();
+        return ResponseEntity.ok(new MessageResponseDTO(rebuilt + " résumé(s) reconstruit(s)"));
     }
 
 
@@ -178,28 +205,55 @@ public class DocumentController {
         }
     }
 
+    // Suivi de la capture : lit uniquement l'état de complétude maintenu à chaque pièce
+    @GetMapping("/{id}/completeness")
+    public ResponseEntity<DocumentCompletenessDTO> getDocumentCompleteness(@PathVariable Long id) {
+        return ResponseEntity.ok(documentService.getDocumentCompleteness(id));
+    }
+
 
 
     // ============== MISE À JOUR DE DOCUMENT ==============
 
     @PutMapping("/{id}")
-    public ResponseEntity<Document> updateDocument(
+    public ResponseEntity<DocumentDetailDTO> updateDocument(
             @PathVariable Long id,
             @Valid @RequestBody DocumentUpdateDTO dto) {
-        Document document = documentService.updateDocument(id, dto);
+        DocumentDetailDTO document = documentService.updateDocument(id, dto);
         return ResponseEntity.ok(document);
     }
 
     @PatchMapping("/{id}/status")
-    public ResponseEntity<Document> updateDocumentStatus(
+    public ResponseEntity<DocumentDetailDTO> updateDocumentStatus(
             @PathVariable Long id,
             @RequestParam DocumentStatus status) {
-        Document document = documentService.updateDocumentStatus(id, status);
+        DocumentDetailDTO document = documentService.updateDocumentStatus(id, status);
         return ResponseEntity.ok(document);
     }
 
 
 
+    // ============== TRAITEMENTS EN MASSE ==============
+
+    // Changement de statut ou validation de tous les documents correspondant au filtre
+    @PostMapping("/bulk-jobs")
+    public ResponseEntity<BulkJobDTO> submitBulkJob(@Valid @RequestBody BulkJobRequestDTO payload) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(bulkJobService.submit(payload));
+    }
+
+    @GetMapping("/bulk-jobs")
+    public ResponseEntity<List<BulkJobDTO>> getBulkJobs() {
+        return ResponseEntity.ok(bulkJobService.getJobs());
+    }
+
+    @GetMapping("/bulk-jobs/{jobId}")
+    public ResponseEntity<BulkJobDTO> getBulkJob(@PathVariable String jobId) {
+        return ResponseEntity.ok(bulkJobService.getJob(jobId));
+    }
+
+
+
     // ============== SUPPRESSION ==============
 
     @DeleteMapping("/{id}")
@@ -218,11 +272,86 @@ public class DocumentController {
 
 
 
+    // ============== ÉVÉNEMENTS (SSE) ==============
+
+    // Flux des événements d'un document : pièces ajoutées, changements de statut et de complétude
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamDocumentEvents(@PathVariable Long id) {
+        documentService.getDocumentForValidation(id);
+        return eventBroadcaster.subscribeToDocument(id);
+    }
+
+    // Flux des événements de tous les documents d'un dossier
+    @GetMapping(value = "/folders/{folderId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamFolderEvents(@PathVariable Long folderId) {
+        classificationService.getFolderById(folderId);
+        return eventBroadcaster.subscribeToFolder(folderId);
+    }
+
+
+
+    // ============== EXPORT ==============
+
+    // Archive ZIP du document : pièces rangées par contenu et manifest.json
+    @GetMapping("/{id}/export")
+    public ResponseEntity<StreamingResponseBody> exportDocument(@PathVariable Long id) {
+        DocumentExportService.DocumentExport export = exportService.prepareExport(id);
+
+        ContentDisposition disposition = ContentDisposition.attachment()
+                .filename(DocumentExportService.entryName(export.title()) + ".zip", StandardCharsets.UTF_8)
+                .build();
+
+        StreamingResponseBody body = out -> exportService.writeExport(export, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
+                .body(body);
+    }
+
+
+
+    // ============== RAPPORTS ==============
+
+    // Contenus obligatoires manquants pour tous les documents d'un dossier (sous-dossiers compris) ou d'un plan
+    @GetMapping("/reports/missing-contents")
+    public ResponseEntity<StreamingResponseBody> getMissingContentsReport(
+            @RequestParam(required = false) Long folderId,
+            @RequestParam(required = false) Long planId,
+            @RequestParam(defaultValue = "NDJSON") ReportService.ReportFormat format) {
+        reportService.checkScope(folderId, planId);
+
+        MediaType mediaType = format == ReportService.ReportFormat.CSV
+                ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                : MediaType.APPLICATION_NDJSON;
+
+        StreamingResponseBody body = out -> reportService.writeMissingContentsReport(folderId, planId, format, out);
+        return ResponseEntity.ok()
+                .contentType(mediaType)
+                .body(body);
+    }
+
+
+
     // ============== STATISTIQUES ==============
 
     @GetMapping("/stats")
-    public ResponseEntity<DocumentStatsDTO> getDocumentStats() {
-        DocumentStatsDTO stats = documentService.getDocumentStatistics();
+    public ResponseEntity<DocumentStatsDTO> getDocumentStats(
+            @RequestParam(required = false) Long folderId,
+            @RequestParam(required = false) Long planId) {
+        DocumentStatsDTO stats = documentService.getDocumentStatistics(folderId, planId);
         return ResponseEntity.ok(stats);
     }
+
+    // Ventilation par dossier (FOLDER) ou par plan (PLAN)
+    @GetMapping("/stats/breakdown")
+    public ResponseEntity<List<DocumentStatsDTO>> getDocumentStatsBreakdown(@RequestParam StatScope scope) {
+        return ResponseEntity.ok(statisticsService.getBreakdown(scope));
+    }
+
+    // Recalcul complet des compteurs depuis les tables sources
+    @PostMapping("/stats/reconcile")
+    public ResponseEntity<DocumentStatsDTO> reconcileDocumentStats() {
+        statisticsService.reconcile();
+        return ResponseEntity.ok(documentService.getDocumentStatistics(null, null));
+    }
 }
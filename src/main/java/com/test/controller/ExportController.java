@@ -0,0 +1,57 @@
+package com.test.controller;
+
+import com.test.payload.ArchiveExportDTO;
+import com.test.payload.ArchiveExportRequestDTO;
+import com.test.service.ArchiveExportService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.file.Path;
+import java.util.List;
+
+@RequiredArgsConstructor
+@RequestMapping("/exports")
+@RestController
+public class ExportController {
+
+    private final ArchiveExportService archiveExportService;
+
+
+    // Export d'archivage des documents validés d'un dossier (sous-dossiers compris) ou d'un plan
+    @PostMapping
+    public ResponseEntity<ArchiveExportDTO> startExport(@RequestBody ArchiveExportRequestDTO payload) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(archiveExportService.start(payload));
+    }
+
+    @GetMapping
+    public ResponseEntity<List<ArchiveExportDTO>> getExports() {
+        return ResponseEntity.ok(archiveExportService.getJobs());
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<ArchiveExportDTO> getExport(@PathVariable String id) {
+        return ResponseEntity.ok(archiveExportService.getJob(id));
+    }
+
+    @PostMapping("/{id}/resume")
+    public ResponseEntity<ArchiveExportDTO> resumeExport(@PathVariable String id) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(archiveExportService.resume(id));
+    }
+
+    @GetMapping("/{id}/segments/{name}")
+    public ResponseEntity<Resource> downloadSegment(@PathVariable String id, @PathVariable String name) {
+        Path segment = archiveExportService.getSegment(id, name);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + name + "\"")
+                .body(new FileSystemResource(segment));
+    }
+}
@@ -1,6 +1,12 @@
 package com.test.controller;
 
+import com.test.payload.CacheStatisticsDTO;
+import com.test.payload.DecodeLoadDTO;
+import com.test.service.CacheStatisticsService;
+import com.test.service.DecodeAdmissionService;
+import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -9,10 +15,14 @@ import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
 
+@RequiredArgsConstructor
 @RequestMapping("/health")
 @RestController
 public class HealthController {
 
+    private final CacheStatisticsService cacheStatisticsService;
+    private final DecodeAdmissionService decodeAdmissionService;
+
     @GetMapping
     public ResponseEntity<Map<String, Object>> healthCheck() {
         Map<String, Object> health = new HashMap<>();
@@ -20,7 +30,26 @@ public class HealthController {
         health.put("timestamp", LocalDateTime.now());
         health.put("service", "Capture Archive API");
         health.put("version", "1.0.0");
+        health.put("decode", decodeAdmissionService.getLoad());
 
         return ResponseEntity.ok(health);
     }
+
+    // Taux de succès du cache des données de référence
+    @GetMapping("/cache")
+    public ResponseEntity<CacheStatisticsDTO> cacheStatistics() {
+        return ResponseEntity.ok(cacheStatisticsService.getStatistics());
+    }
+
+    @DeleteMapping("/cache/statistics")
+    public ResponseEntity<Void> resetCacheStatistics() {
+        cacheStatisticsService.reset();
+        return ResponseEntity.noContent().build();
+    }
+
+    // Charge du décodage des captures : file d'attente, temps d'attente, refus
+    @GetMapping("/decode")
+    public ResponseEntity<DecodeLoadDTO> decodeLoad() {
+        return ResponseEntity.ok(decodeAdmissionService.getLoad());
+    }
 }
@@ -0,0 +1,39 @@
+package com.test.controller;
+
+import com.test.enums.RollupGranularity;
+import com.test.payload.ThroughputPointDTO;
+import com.test.service.IngestionMetricsService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RequiredArgsConstructor
+@RequestMapping("/ingestion")
+@RestController
+public class IngestionController {
+
+    private final IngestionMetricsService ingestionMetricsService;
+
+
+    // Débit de capture par tranche (MINUTE, HOUR, DAY), filtrable par dossier et par type de contenu
+    @GetMapping("/throughput")
+    public ResponseEntity<List<ThroughputPointDTO>> getThroughput(
+            @RequestParam(defaultValue = "HOUR") RollupGranularity granularity,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Long folderId,
+            @RequestParam(required = false) Long contentId) {
+
+        LocalDateTime end = to != null ? to : LocalDateTime.now();
+        LocalDateTime start = from != null ? from : end.minusDays(1);
+
+        return ResponseEntity.ok(ingestionMetricsService.getThroughput(granularity, start, end, folderId, contentId));
+    }
+}
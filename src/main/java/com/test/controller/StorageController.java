@@ -0,0 +1,81 @@
+package com.test.controller;
+
+import com.test.payload.StorageStatusDTO;
+import com.test.payload.ThumbnailCacheDTO;
+import com.test.service.ArchivalService;
+import com.test.service.FilePurgeService;
+import com.test.service.PackCompactionService;
+import com.test.service.ThumbnailService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RequiredArgsConstructor
+@RequestMapping("/storage")
+@RestController
+public class StorageController {
+
+    private final FilePurgeService filePurgeService;
+    private final ThumbnailService thumbnailService;
+    private final ArchivalService archivalService;
+    // Absent lorsque le regroupement est désactivé ou le stockage distant
+    private final ObjectProvider<PackCompactionService> packCompactionService;
+
+
+    // File de purge et résultat du rapprochement fichiers / pièces
+    @GetMapping("/status")
+    public ResponseEntity<StorageStatusDTO> getStatus() {
+        return ResponseEntity.ok(status());
+    }
+
+    // Rapprochement immédiat d'une tranche du stockage
+    @PostMapping("/reconcile")
+    public ResponseEntity<StorageStatusDTO> reconcile() {
+        filePurgeService.reconcile();
+        return ResponseEntity.ok(status());
+    }
+
+    // Reprise immédiate des recompressions en attente
+    @PostMapping("/archival/resume")
+    public ResponseEntity<StorageStatusDTO> resumeArchival() {
+        archivalService.resumePending();
+        return ResponseEntity.ok(status());
+    }
+
+    // Regroupement immédiat des pièces des documents validés
+    @PostMapping("/packs/compact")
+    public ResponseEntity<StorageStatusDTO> compactPacks() {
+        PackCompactionService compaction = packCompactionService.getIfAvailable();
+        if (compaction == null) {
+            throw new IllegalStateException("Regroupement des pièces désactivé");
+        }
+        compaction.compact();
+        return ResponseEntity.ok(status());
+    }
+
+    // Cache disque des aperçus et charge du pool de décodage
+    @GetMapping("/thumbnails")
+    public ResponseEntity<ThumbnailCacheDTO> getThumbnailCache() {
+        return ResponseEntity.ok(thumbnailService.getStatistics());
+    }
+
+
+    private StorageStatusDTO status() {
+        StorageStatusDTO status = filePurgeService.getStatus();
+        status.setRecompressedPieces(archivalService.getRecompressedCount());
+        status.setRecompressionSavedBytes(archivalService.getSavedBytes());
+        packCompactionService.ifAvailable(compaction -> {
+            PackCompactionService.PackStatus packs = compaction.getStatus();
+            status.setPackFiles(packs.packFiles());
+            status.setPackedPieces(packs.packedPieces());
+            status.setPackBytes(packs.packBytes());
+            status.setPackDeadBytes(packs.deadBytes());
+            status.setPackPendingLooseFiles(packs.pendingLooseFiles());
+        });
+        return status;
+    }
+}
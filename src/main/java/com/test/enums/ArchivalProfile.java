@@ -0,0 +1,9 @@
+package com.test.enums;
+
+// Recompression appliquée aux images capturées, après lecture du QR code
+public enum ArchivalProfile {
+    // Niveaux de gris, JPEG à qualité fixée
+    GRAYSCALE_JPEG,
+    // Noir et blanc, PNG 1 bit par pixel
+    BITONAL_PNG
+}
@@ -0,0 +1,6 @@
+package com.test.enums;
+
+public enum BulkAction {
+    SET_STATUS,
+    VALIDATE
+}
@@ -0,0 +1,12 @@
+package com.test.enums;
+
+public enum DocumentEventType {
+    DOCUMENT_CREATED,
+    DOCUMENT_UPDATED,
+    DOCUMENT_DELETED,
+    PIECE_ADDED,
+    PIECE_REMOVED,
+    PIECE_UPDATED,
+    STATUS_CHANGED,
+    COMPLETENESS_CHANGED
+}
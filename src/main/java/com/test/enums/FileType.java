@@ -1,8 +1,16 @@
 package com.test.enums;
 
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
 public enum FileType {
-    PDF,
-    IMAGE_PNG,
-    IMAGE_JPG,
-    IMAGE_JPEG
+    PDF("application/pdf"),
+    IMAGE_PNG("image/png"),
+    IMAGE_JPG("image/jpeg"),
+    IMAGE_JPEG("image/jpeg");
+
+    // Type MIME servi pour les fichiers de ce type
+    private final String mimeType;
 }
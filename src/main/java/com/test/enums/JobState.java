@@ -0,0 +1,8 @@
+package com.test.enums;
+
+public enum JobState {
+    PENDING,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,26 @@
+package com.test.enums;
+
+import java.time.temporal.ChronoUnit;
+
+public enum RollupGranularity {
+    MINUTE(ChronoUnit.MINUTES, "minute"),
+    HOUR(ChronoUnit.HOURS, "hour"),
+    DAY(ChronoUnit.DAYS, "day");
+
+    private final ChronoUnit unit;
+    private final String sqlUnit;
+
+    RollupGranularity(ChronoUnit unit, String sqlUnit) {
+        this.unit = unit;
+        this.sqlUnit = sqlUnit;
+    }
+
+    public ChronoUnit getUnit() {
+        return unit;
+    }
+
+    // Unité attendue par date_trunc côté PostgreSQL
+    public String getSqlUnit() {
+        return sqlUnit;
+    }
+}
@@ -0,0 +1,7 @@
+package com.test.enums;
+
+public enum StatScope {
+    GLOBAL,
+    FOLDER,
+    PLAN
+}
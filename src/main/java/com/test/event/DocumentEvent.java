@@ -0,0 +1,21 @@
+package com.test.event;
+
+import com.test.enums.DocumentEventType;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Evénement métier publié par DocumentService.
+ * Les écouteurs le reçoivent après la validation de la transaction.
+ */
+public record DocumentEvent(DocumentEventType type,
+                            Long documentId,
+                            Long folderId,
+                            Map<String, Object> payload,
+                            LocalDateTime occurredAt) {
+
+    public DocumentEvent(DocumentEventType type, Long documentId, Long folderId, Map<String, Object> payload) {
+        this(type, documentId, folderId, payload, LocalDateTime.now());
+    }
+}
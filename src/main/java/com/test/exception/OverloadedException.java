@@ -0,0 +1,19 @@
+package com.test.exception;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * Traitement refusé faute de capacité ; le client est invité à réessayer après le délai indiqué.
+ */
+@Getter
+public class OverloadedException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public OverloadedException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+}
@@ -1,6 +1,7 @@
 package com.test.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.test.enums.ArchivalProfile;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
@@ -8,6 +9,8 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -18,6 +21,8 @@ import java.util.List;
 @Data
 @Table(name = "classification_plans")
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "classification-plans")
 public class ClassificationPlan extends BaseEntity {
 
     @NotBlank
@@ -30,6 +35,10 @@ public class ClassificationPlan extends BaseEntity {
     @Column(nullable = false)
     private boolean active = true;
 
+    // Recompression par défaut des pièces des dossiers du plan
+    @Enumerated(EnumType.STRING)
+    private ArchivalProfile archivalProfile;
+
     @OneToMany(mappedBy = "plan", cascade =  CascadeType.ALL, fetch = FetchType.LAZY)
     @JsonIgnoreProperties("plan")
     private List<Folder> folders = new ArrayList<>();
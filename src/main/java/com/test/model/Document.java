@@ -35,6 +35,11 @@ public class Document extends BaseEntity {
     @Column(nullable = false)
     private DocumentStatus status;
 
+    // Verrouillage optimiste des mises à jour complètes ; les transitions de statut l'incrémentent aussi
+    @Version
+    @Column(columnDefinition = "bigint default 0")
+    private Long version;
+
     @JdbcTypeCode(SqlTypes.JSON)
     @Column(columnDefinition = "jsonb")
     private Map<String, Object> metadata;
@@ -57,4 +62,10 @@ public class Document extends BaseEntity {
     )
     @JsonIgnoreProperties("documents")
     private List<User> users = new ArrayList<>();
+
+    // Le dossier de classement est porté par les métadonnées (null s'il a été retiré)
+    public Long getFolderId() {
+        Object folderIdObj = metadata != null ? metadata.get("folderId") : null;
+        return folderIdObj != null ? Long.valueOf(folderIdObj.toString()) : null;
+    }
 }
@@ -0,0 +1,53 @@
+package com.test.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Etat de complétude d'un document, maintenu à chaque ajout ou suppression de pièce.
+ * Une seule ligne suffit pour savoir si le document peut être validé.
+ */
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Table(name = "document_completeness")
+@Entity
+public class DocumentCompleteness extends BaseEntity {
+
+    @Column(name = "document_id", nullable = false, unique = true)
+    private Long documentId;
+
+    @Column(name = "folder_id", nullable = false)
+    private Long folderId;
+
+    // Contenus obligatoires du dossier au moment du dernier calcul
+    @Builder.Default
+    @JdbcTypeCode(SqlTypes.ARRAY)
+    @Column(columnDefinition = "bigint[]", nullable = false)
+    private List<Long> requiredContentIds = new ArrayList<>();
+
+    // Contenus obligatoires pour lesquels aucune pièce n'a encore été capturée
+    @Builder.Default
+    @JdbcTypeCode(SqlTypes.ARRAY)
+    @Column(columnDefinition = "bigint[]", nullable = false)
+    private List<Long> missingContentIds = new ArrayList<>();
+
+    @Column(nullable = false)
+    private int requiredCount;
+
+    @Column(nullable = false)
+    private int capturedRequiredCount;
+
+    public boolean isComplete() {
+        return missingContentIds == null || missingContentIds.isEmpty();
+    }
+}
@@ -0,0 +1,43 @@
+package com.test.model;
+
+import com.test.enums.StatScope;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Compteur statistique maintenu dans la même transaction que les changements de statut
+ * et les ajouts/suppressions de pièces. Plusieurs lignes (tranches) par (portée, identifiant, métrique),
+ * additionnées à la lecture : les captures concurrentes ne se disputent pas une même ligne.
+ */
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Table(name = "document_stat_counters",
+        uniqueConstraints = @UniqueConstraint(name = "uk_document_stat_counters_shard",
+                columnNames = {"scope", "scope_id", "metric", "shard"}))
+@Entity
+public class DocumentStatCounter extends BaseEntity {
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private StatScope scope;
+
+    // 0 pour la portée globale
+    @Column(name = "scope_id", nullable = false)
+    private Long scopeId;
+
+    // Nom d'un statut de document, ou DOCUMENTS / PIECES
+    @Column(nullable = false)
+    private String metric;
+
+    // Tranche choisie d'après l'identifiant du document ; 0 pour les valeurs réconciliées
+    @Column(nullable = false, columnDefinition = "integer default 0")
+    private int shard;
+
+    @Column(name = "counter_value", nullable = false)
+    private long counterValue;
+}
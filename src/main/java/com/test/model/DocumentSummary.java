@@ -0,0 +1,62 @@
+package com.test.model;
+
+import com.test.enums.DocumentStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Résumé dénormalisé d'un document, lu par les listes et la recherche.
+ * Recalculé depuis les tables sources après chaque transaction qui publie un événement du document.
+ */
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Table(name = "document_summary", indexes = {
+        @Index(name = "idx_document_summary_status", columnList = "status"),
+        @Index(name = "idx_document_summary_folder", columnList = "folder_id")
+})
+@Entity
+public class DocumentSummary extends BaseEntity {
+
+    @Column(name = "document_id", nullable = false, unique = true)
+    private Long documentId;
+
+    private String title;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private DocumentStatus status;
+
+    @Column(name = "folder_id")
+    private Long folderId;
+
+    @Column(nullable = false)
+    private int pieceCount;
+
+    @Column(nullable = false)
+    private int requiredCount;
+
+    @Column(nullable = false)
+    private int missingRequiredCount;
+
+    // Date de la dernière pièce capturée (null sans pièce)
+    private LocalDateTime lastCaptureAt;
+
+    // Uniquement les clés de métadonnées retenues pour l'affichage
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(columnDefinition = "jsonb")
+    private Map<String, Object> metadata;
+
+    private LocalDateTime documentCreatedAt;
+
+    private LocalDateTime documentUpdatedAt;
+}
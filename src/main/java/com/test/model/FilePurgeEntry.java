@@ -0,0 +1,38 @@
+package com.test.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Fichier physique à supprimer. La ligne est écrite dans la même transaction que la suppression
+ * de la pièce ou du document ; le fichier est effacé plus tard, par lots, en arrière-plan.
+ */
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Table(name = "file_purge_queue", indexes = @Index(name = "idx_file_purge_queue_attempts", columnList = "attempts, id"))
+@Entity
+public class FilePurgeEntry extends BaseEntity {
+
+    @Column(name = "file_path", nullable = false)
+    private String filePath;
+
+    // PIECE_DELETED, DOCUMENT_DELETED, ORPHAN_FILE ou RECOMPRESSED
+    @Column(nullable = false)
+    private String reason;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    private String lastError;
+
+    // Pas de suppression avant : fichier qui peut encore être lu (ancien original d'une pièce recompressée)
+    // ou ligne réservée par un passage de purge en cours
+    private LocalDateTime notBefore;
+}
@@ -1,6 +1,7 @@
 package com.test.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.test.enums.ArchivalProfile;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
@@ -8,6 +9,8 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -18,6 +21,8 @@ import java.util.List;
 @Data
 @Table(name = "folder_contents")
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "folder-contents")
 public class FolderContent extends BaseEntity {
 
     @NotBlank
@@ -34,6 +39,10 @@ public class FolderContent extends BaseEntity {
     @Column(unique = true)
     private String qrCode;
 
+    // Recompression des pièces capturées ; à défaut, celle du plan du dossier
+    @Enumerated(EnumType.STRING)
+    private ArchivalProfile archivalProfile;
+
     // Relation bidirectionnelle avec les dossiers
     @ManyToMany(mappedBy = "contents", fetch = FetchType.LAZY)
     @JsonIgnoreProperties("contents")
@@ -0,0 +1,45 @@
+package com.test.model;
+
+import com.test.enums.RollupGranularity;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Agrégat d'ingestion des pièces par tranche de temps, dossier et type de contenu.
+ * Les tranches minute sont compactées en tranches horaires puis journalières.
+ */
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Table(name = "ingestion_rollups",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"granularity", "bucket_start", "folder_id", "content_id"}),
+        indexes = @Index(columnList = "granularity, bucket_start"))
+@Entity
+public class IngestionRollup extends BaseEntity {
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private RollupGranularity granularity;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    // 0 lorsque le dossier du document est inconnu
+    @Column(name = "folder_id", nullable = false)
+    private Long folderId;
+
+    @Column(name = "content_id", nullable = false)
+    private Long contentId;
+
+    @Column(nullable = false)
+    private long pieceCount;
+
+    @Column(nullable = false)
+    private long byteCount;
+}
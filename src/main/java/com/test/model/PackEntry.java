@@ -0,0 +1,48 @@
+package com.test.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Emplacement d'une pièce dans un fichier groupé : [packOffset, packOffset + length[ de pack_files.name.
+ * Une clé indexée est lue depuis le fichier groupé ; son fichier séparé est supprimé après un délai de grâce.
+ */
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Table(name = "pack_entries", indexes = {
+        @Index(name = "idx_pack_entries_piece", columnList = "piece_id"),
+        @Index(name = "idx_pack_entries_pack", columnList = "pack_id"),
+        @Index(name = "idx_pack_entries_loose", columnList = "loose_removed, id")
+})
+@Entity
+public class PackEntry extends BaseEntity {
+
+    @Column(name = "piece_id", nullable = false)
+    private Long pieceId;
+
+    // Clé de stockage de la pièce (nom de fichier)
+    @Column(name = "storage_key", nullable = false, unique = true)
+    private String storageKey;
+
+    @Column(name = "pack_id", nullable = false)
+    private Long packId;
+
+    @Column(name = "pack_offset", nullable = false)
+    private long packOffset;
+
+    @Column(nullable = false)
+    private long length;
+
+    // Date de modification du fichier d'origine, conservée pour Last-Modified et les ETag
+    @Column(nullable = false)
+    private long lastModified;
+
+    // Fichier séparé déjà supprimé
+    @Column(name = "loose_removed", nullable = false)
+    private boolean looseRemoved;
+}
@@ -0,0 +1,34 @@
+package com.test.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Fichier groupé (pack) regroupant les pièces des documents validés, écrit uniquement par ajout.
+ * size est la longueur validée : les octets au-delà proviennent d'un ajout interrompu et sont écrasés.
+ */
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Table(name = "pack_files")
+@Entity
+public class PackFile extends BaseEntity {
+
+    @Column(nullable = false, unique = true)
+    private String name;
+
+    @Column(nullable = false)
+    private long size;
+
+    // Octets de pièces supprimées depuis, jamais récupérés sur place
+    @Column(nullable = false)
+    private long deadBytes;
+
+    // Plein : plus aucun ajout
+    @Column(nullable = false)
+    private boolean sealed;
+}
@@ -1,6 +1,7 @@
 package com.test.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.test.enums.ArchivalProfile;
 import com.test.enums.FileType;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
@@ -9,11 +10,16 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.LocalDateTime;
+
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
 @Data
-@Table(name = "pieces")
+@Table(name = "pieces", indexes = {
+        @Index(name = "idx_pieces_file_path", columnList = "file_path"),
+        @Index(name = "idx_pieces_archival", columnList = "archival_profile, archived_at")
+})
 @Entity
 public class Piece extends BaseEntity {
 
@@ -38,6 +44,12 @@ public class Piece extends BaseEntity {
     @Column(nullable = false)
     private String qrCodeData;
 
+    // Recompression à appliquer ; faite lorsque archivedAt est renseigné
+    @Enumerated(EnumType.STRING)
+    private ArchivalProfile archivalProfile;
+
+    private LocalDateTime archivedAt;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "document_id", nullable = false)
     @JsonIgnoreProperties("pieces")
@@ -0,0 +1,48 @@
+package com.test.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Envoi reprenable d'un fichier par morceaux.
+ * receivedBytes ne compte que des octets déjà écrits sur disque dans le fichier de transit :
+ * c'est la position à laquelle le client reprend.
+ */
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Table(name = "upload_sessions", indexes = @Index(name = "idx_upload_sessions_expires_at", columnList = "expires_at"))
+@Entity
+public class UploadSession extends BaseEntity {
+
+    @Column(name = "upload_id", nullable = false, unique = true, length = 36)
+    private String uploadId;
+
+    @Column(name = "document_id", nullable = false)
+    private Long documentId;
+
+    @Column(nullable = false)
+    private String fileName;
+
+    @Column(nullable = false)
+    private String contentType;
+
+    @Column(nullable = false)
+    private long totalSize;
+
+    @Column(nullable = false)
+    private long receivedBytes;
+
+    @Column(nullable = false)
+    private String stagingPath;
+
+    // Repoussée à chaque morceau reçu
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
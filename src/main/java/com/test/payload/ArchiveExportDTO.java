@@ -0,0 +1,33 @@
+package com.test.payload;
+
+import com.test.enums.JobState;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Builder(toBuilder = true)
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class ArchiveExportDTO {
+    private String id;
+    private Long folderId;
+    private Long planId;
+    private long maxSegmentBytes;
+    private JobState state;
+    private String error;
+
+    // Dernier document inclus dans un segment terminé : point de reprise
+    private Long lastDocumentId;
+    private long documentsExported;
+    private long piecesExported;
+    private long bytesWritten;
+    private List<ArchiveSegmentDTO> segments;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,19 @@
+package com.test.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class ArchiveExportRequestDTO {
+    // Portée de l'export : un dossier (sous-dossiers compris) ou un plan entier
+    private Long folderId;
+    private Long planId;
+
+    // Taille visée d'un segment, en octets ; valeur par défaut de la configuration si absente
+    private Long maxSegmentBytes;
+}
@@ -0,0 +1,18 @@
+package com.test.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class ArchiveSegmentDTO {
+    private String name;
+    private long size;
+    private long documents;
+    private Long firstDocumentId;
+    private Long lastDocumentId;
+}
@@ -0,0 +1,23 @@
+package com.test.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Résultat d'un fichier d'un envoi par lot au fil de l'eau, une ligne NDJSON par fichier dans l'ordre de fin
+ * de traitement. index : rang du fichier dans le lot, absent pour une erreur portant sur le lot entier.
+ */
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class BatchUploadResultDTO {
+    private Integer index;
+    private String fileName;
+    // Code HTTP qu'aurait reçu l'envoi isolé du fichier
+    private int status;
+    private PieceResponseDTO piece;
+    private String error;
+}
@@ -0,0 +1,33 @@
+package com.test.payload;
+
+import com.test.enums.BulkAction;
+import com.test.enums.DocumentStatus;
+import com.test.enums.JobState;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class BulkJobDTO {
+    private String id;
+    private BulkAction action;
+    private DocumentStatus targetStatus;
+    private JobState state;
+    private long total;
+    private long processed;
+    private long succeeded;
+    // Documents déjà dans le statut cible
+    private long skipped;
+    private long failed;
+    private List<BulkJobFailureDTO> failures;
+    private String error;
+    private LocalDateTime createdAt;
+    private LocalDateTime finishedAt;
+}
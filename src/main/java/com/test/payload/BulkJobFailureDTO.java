@@ -0,0 +1,15 @@
+package com.test.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class BulkJobFailureDTO {
+    private Long documentId;
+    private String reason;
+}
@@ -0,0 +1,29 @@
+package com.test.payload;
+
+import com.test.enums.BulkAction;
+import com.test.enums.DocumentStatus;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class BulkJobRequestDTO {
+
+    @NotNull(message = "L'action est obligatoire")
+    private BulkAction action;
+
+    // Statut cible, obligatoire pour SET_STATUS
+    private DocumentStatus targetStatus;
+
+    // Filtres de sélection des documents (combinés)
+    private Long folderId;
+    private DocumentStatus status;
+    private Map<String, Object> metadata;
+}
@@ -0,0 +1,19 @@
+package com.test.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class CacheRegionStatisticsDTO {
+    private String region;
+    private long hits;
+    private long misses;
+    private long puts;
+    // Part des lectures servies par le cache, entre 0 et 1 (null sans lecture)
+    private Double hitRatio;
+}
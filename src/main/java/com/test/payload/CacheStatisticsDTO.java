@@ -0,0 +1,30 @@
+package com.test.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class CacheStatisticsDTO {
+    // Faux tant que project.cache.statistics n'est pas activé : les compteurs restent alors à zéro
+    private boolean statisticsEnabled;
+    // Cache de second niveau (entités et collections), toutes régions confondues
+    private long secondLevelHits;
+    private long secondLevelMisses;
+    private long secondLevelPuts;
+    private Double secondLevelHitRatio;
+    // Cache des requêtes
+    private long queryHits;
+    private long queryMisses;
+    private long queryPuts;
+    private Double queryHitRatio;
+    // Requêtes SQL préparées par Hibernate depuis le démarrage (ou la dernière remise à zéro)
+    private long preparedStatements;
+    private List<CacheRegionStatisticsDTO> regions;
+}
@@ -1,5 +1,6 @@
 package com.test.payload;
 
+import com.test.enums.ArchivalProfile;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
@@ -18,4 +19,6 @@ public class ClassificationPlanDTO {
     private String name;
 
     private  String description;
+
+    private ArchivalProfile archivalProfile;
 }
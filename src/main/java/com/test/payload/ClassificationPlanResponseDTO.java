@@ -0,0 +1,23 @@
+package com.test.payload;
+
+import com.test.enums.ArchivalProfile;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class ClassificationPlanResponseDTO {
+    private Long id;
+    private String name;
+    private String description;
+    private boolean active;
+    private ArchivalProfile archivalProfile;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,24 @@
+package com.test.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class DecodeLoadDTO {
+    // Décodages simultanés autorisés et places d'attente
+    private int maxConcurrent;
+    private int queueCapacity;
+    // Instantané
+    private int active;
+    private int queued;
+    // Depuis le démarrage
+    private long completed;
+    private long rejected;
+    private double averageWaitMs;
+    private double maxWaitMs;
+}
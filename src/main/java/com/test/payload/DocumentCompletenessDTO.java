@@ -0,0 +1,23 @@
+package com.test.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class DocumentCompletenessDTO {
+    private Long documentId;
+    private Long folderId;
+    private int requiredCount;
+    private int capturedRequiredCount;
+    private List<Long> missingContentIds;
+    private boolean complete;
+    private LocalDateTime updatedAt;
+}
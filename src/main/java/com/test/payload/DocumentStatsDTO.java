@@ -1,5 +1,6 @@
 package com.test.payload;
 
+import com.test.enums.StatScope;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -10,9 +11,12 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 @NoArgsConstructor
 public class DocumentStatsDTO {
+    private StatScope scope;
+    private Long scopeId;
     private long totalDocuments;
     private long documentsEnCours;
     private long documentsValides;
     private long documentsBrouillon;
+    private long documentsRejetes;
     private long totalPieces;
 }
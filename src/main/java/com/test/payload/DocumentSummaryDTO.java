@@ -7,6 +7,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.Map;
 
 @Builder
 @AllArgsConstructor
@@ -16,7 +17,13 @@ public class DocumentSummaryDTO {
     private Long id;
     private String title;
     private DocumentStatus status;
+    private Long folderId;
     private int pieceCount;
+    private int requiredCount;
+    private int missingRequiredCount;
+    private LocalDateTime lastCaptureAt;
+    // Clés de métadonnées retenues (project.summary.metadata-keys)
+    private Map<String, Object> metadata;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 }
@@ -1,5 +1,6 @@
 package com.test.payload;
 
+import com.test.enums.ArchivalProfile;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
@@ -24,4 +25,6 @@ public class FolderContentDTO {
     private boolean required;
 
     private String qrCode;
+
+    private ArchivalProfile archivalProfile;
 }
@@ -0,0 +1,25 @@
+package com.test.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class FolderResponseDTO {
+    private Long id;
+    private String name;
+    private String description;
+    private Long planId;
+    private Long parentFolderId;
+    // Contenus attendus dans le dossier (sans leurs pièces)
+    private List<FolderContentDTO> contents;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
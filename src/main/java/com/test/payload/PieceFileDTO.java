@@ -0,0 +1,22 @@
+package com.test.payload;
+
+import com.test.enums.FileType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Métadonnées stockées d'un fichier de pièce, utilisées pour servir le fichier (ETag, type)
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class PieceFileDTO {
+    private Long id;
+    private String fileName;
+    private Long fileSize;
+    private FileType fileType;
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,36 @@
+package com.test.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class StorageStatusDTO {
+    // Stockage des fichiers de pièces : local ou s3
+    private String backend;
+    // Fichiers en attente de suppression
+    private long pendingFiles;
+    // Fichiers dont la suppression a échoué trop de fois
+    private long failedFiles;
+    // Depuis le démarrage
+    private long purgedFiles;
+    private long orphanFilesQueued;
+    // Pièces recompressées pour l'archivage et octets gagnés
+    private long recompressedPieces;
+    private long recompressionSavedBytes;
+    // Fichiers groupés : nombre, pièces indexées, taille totale et octets de pièces supprimées depuis
+    private long packFiles;
+    private long packedPieces;
+    private long packBytes;
+    private long packDeadBytes;
+    // Pièces regroupées dont le fichier séparé n'est pas encore supprimé
+    private long packPendingLooseFiles;
+    // Pièces dont le fichier est introuvable
+    private List<Long> missingFilePieceIds;
+}
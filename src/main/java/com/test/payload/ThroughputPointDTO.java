@@ -0,0 +1,18 @@
+package com.test.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class ThroughputPointDTO {
+    private LocalDateTime bucketStart;
+    private long pieceCount;
+    private long byteCount;
+}
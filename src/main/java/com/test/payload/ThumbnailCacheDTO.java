@@ -0,0 +1,26 @@
+package com.test.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class ThumbnailCacheDTO {
+    // Dérivés présents dans le cache disque
+    private int files;
+    private long bytes;
+    private long maxBytes;
+    // Depuis le démarrage
+    private long hits;
+    private long renders;
+    // Demandes ayant attendu un rendu déjà en cours
+    private long coalesced;
+    private long evictions;
+    // Pool de décodage
+    private int activeRenders;
+    private int queuedRenders;
+}
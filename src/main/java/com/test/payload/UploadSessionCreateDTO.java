@@ -0,0 +1,24 @@
+package com.test.payload;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class UploadSessionCreateDTO {
+    @NotBlank(message = "Le nom du fichier est obligatoire")
+    private String fileName;
+
+    @NotBlank(message = "Le type du fichier est obligatoire")
+    private String contentType;
+
+    // Taille totale annoncée, en octets
+    @Positive(message = "La taille du fichier doit être positive")
+    private long size;
+}
@@ -0,0 +1,25 @@
+package com.test.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class UploadSessionDTO {
+    private String uploadId;
+    private Long documentId;
+    private String fileName;
+    private String contentType;
+    private long size;
+    // Position du prochain morceau attendu
+    private long offset;
+    private long maxChunkSize;
+    private boolean complete;
+    private LocalDateTime expiresAt;
+}
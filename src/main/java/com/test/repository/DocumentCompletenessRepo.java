@@ -0,0 +1,83 @@
+package com.test.repository;
+
+import com.test.model.DocumentCompleteness;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface DocumentCompletenessRepo extends JpaRepository<DocumentCompleteness, Long> {
+    Optional<DocumentCompleteness> findByDocumentId(Long documentId);
+
+    // Verrou de la ligne jusqu'à la fin de la transaction, sans charger l'entité
+    @Query(value = "SELECT document_id FROM document_completeness WHERE document_id = :documentId FOR UPDATE",
+            nativeQuery = true)
+    List<Long> lockByDocumentId(@Param("documentId") Long documentId);
+
+    // Retire le contenu des manquants de façon atomique (aucune lecture préalable).
+    // Les requêtes natives déclarent la table touchée : sinon Hibernate vide tout le cache de second niveau
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "document_completeness"))
+    @Query(value = """
+            UPDATE document_completeness
+            SET missing_content_ids = array_remove(missing_content_ids, :contentId),
+                captured_required_count = captured_required_count + 1,
+                updated_at = now()
+            WHERE document_id = :documentId
+              AND :contentId = ANY(missing_content_ids)
+            """, nativeQuery = true)
+    int markCaptured(@Param("documentId") Long documentId, @Param("contentId") Long contentId);
+
+    // Remet le contenu dans les manquants si plus aucune pièce du document ne le couvre
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "document_completeness"))
+    @Query(value = """
+            UPDATE document_completeness
+            SET missing_content_ids = array_append(missing_content_ids, :contentId),
+                captured_required_count = captured_required_count - 1,
+                updated_at = now()
+            WHERE document_id = :documentId
+              AND :contentId = ANY(required_content_ids)
+              AND NOT (:contentId = ANY(missing_content_ids))
+              AND NOT EXISTS (SELECT 1 FROM pieces p
+                              WHERE p.document_id = :documentId AND p.content_id = :contentId)
+            """, nativeQuery = true)
+    int markMissing(@Param("documentId") Long documentId, @Param("contentId") Long contentId);
+
+    // Recalcul ensembliste pour tous les documents d'un dossier (changement des contenus obligatoires)
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "document_completeness"))
+    @Query(value = """
+            WITH req AS (
+                SELECT COALESCE(array_agg(fc.id ORDER BY fc.id), '{}') AS ids
+                FROM folder_contents fc
+                JOIN folder_structure_link l ON l.content_id = fc.id
+                WHERE l.folder_id = :folderId AND fc.required = true
+            )
+            UPDATE document_completeness dc
+            SET required_content_ids = req.ids,
+                required_count = cardinality(req.ids),
+                missing_content_ids = COALESCE((SELECT array_agg(x ORDER BY x) FROM unnest(req.ids) x
+                                                WHERE NOT EXISTS (SELECT 1 FROM pieces p
+                                                                  WHERE p.document_id = dc.document_id
+                                                                    AND p.content_id = x)), '{}'),
+                captured_required_count = (SELECT count(*) FROM unnest(req.ids) x
+                                           WHERE EXISTS (SELECT 1 FROM pieces p
+                                                         WHERE p.document_id = dc.document_id
+                                                           AND p.content_id = x)),
+                updated_at = now()
+            FROM req
+            WHERE dc.folder_id = :folderId
+            """, nativeQuery = true)
+    int recomputeForFolder(@Param("folderId") Long folderId);
+
+    @Modifying
+    @Query("DELETE FROM DocumentCompleteness dc WHERE dc.documentId = :documentId")
+    void deleteByDocumentId(@Param("documentId") Long documentId);
+}
@@ -2,9 +2,17 @@ package com.test.repository;
 
 import com.test.enums.DocumentStatus;
 import com.test.model.Document;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 public interface DocumentRepo extends JpaRepository<Document, Long> {
     List<Document> findByTitleContainingIgnoreCaseAndStatus(String title, DocumentStatus status);
@@ -14,4 +22,32 @@ public interface DocumentRepo extends JpaRepository<Document, Long> {
     List<Document> findByStatus(DocumentStatus status);
 
     long countByStatus(DocumentStatus documentStatus);
+
+    @Query("SELECT d.status FROM Document d WHERE d.id = :id")
+    Optional<DocumentStatus> findStatusById(@Param("id") Long id);
+
+    // Transition conditionnelle : n'affecte la ligne que si le statut n'a pas changé depuis la lecture
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Document d SET d.status = :to, d.version = d.version + 1, d.updatedAt = :now " +
+            "WHERE d.id = :id AND d.status = :from")
+    int transitionStatus(@Param("id") Long id,
+                         @Param("from") DocumentStatus from,
+                         @Param("to") DocumentStatus to,
+                         @Param("now") LocalDateTime now);
+
+    // Validation conditionnelle : statut inchangé et aucun contenu obligatoire manquant au moment de l'écriture.
+    // La ligne de complétude est verrouillée en partage : une suppression de pièce en cours est attendue
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "documents"))
+    @Query(value = """
+            UPDATE documents d
+            SET status = 'VALIDE', version = d.version + 1, updated_at = :now
+            WHERE d.id = :id AND d.status = :from
+              AND EXISTS (SELECT 1 FROM document_completeness dc
+                          WHERE dc.document_id = d.id AND cardinality(dc.missing_content_ids) = 0
+                          FOR SHARE)
+            """, nativeQuery = true)
+    int validateIfComplete(@Param("id") Long id,
+                           @Param("from") String from,
+                           @Param("now") LocalDateTime now);
 }
@@ -0,0 +1,15 @@
+package com.test.repository;
+
+import com.test.enums.StatScope;
+import com.test.model.DocumentStatCounter;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface DocumentStatCounterRepo extends JpaRepository<DocumentStatCounter, Long> {
+    List<DocumentStatCounter> findByScopeAndScopeId(StatScope scope, Long scopeId);
+
+    List<DocumentStatCounter> findByScope(StatScope scope);
+
+    boolean existsByScope(StatScope scope);
+}
@@ -0,0 +1,22 @@
+package com.test.repository;
+
+import com.test.enums.DocumentStatus;
+import com.test.model.DocumentSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface DocumentSummaryRepo extends JpaRepository<DocumentSummary, Long> {
+
+    // Filtres facultatifs : un statut ou un dossier null ne filtre pas ; titlePattern est un motif LIKE en minuscules
+    @Query("SELECT s FROM DocumentSummary s " +
+            "WHERE lower(s.title) LIKE :titlePattern " +
+            "AND (:status IS NULL OR s.status = :status) " +
+            "AND (:folderId IS NULL OR s.folderId = :folderId) " +
+            "ORDER BY s.documentId")
+    List<DocumentSummary> search(@Param("titlePattern") String titlePattern,
+                                 @Param("status") DocumentStatus status,
+                                 @Param("folderId") Long folderId);
+}
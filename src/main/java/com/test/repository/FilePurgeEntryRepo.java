@@ -0,0 +1,26 @@
+package com.test.repository;
+
+import com.test.model.FilePurgeEntry;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+public interface FilePurgeEntryRepo extends JpaRepository<FilePurgeEntry, Long> {
+
+    // Mise en file des fichiers de toutes les pièces d'un document, avant la suppression en cascade
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "file_purge_queue"))
+    @Query(value = """
+            INSERT INTO file_purge_queue (file_path, reason, attempts, created_at, updated_at)
+            SELECT p.file_path, 'DOCUMENT_DELETED', 0, now(), now()
+            FROM pieces p
+            WHERE p.document_id = :documentId
+            """, nativeQuery = true)
+    int enqueueForDocument(@Param("documentId") Long documentId);
+
+    long countByAttemptsLessThan(int attempts);
+}
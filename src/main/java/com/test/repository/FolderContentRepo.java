@@ -2,16 +2,27 @@ package com.test.repository;
 
 import com.test.model.FolderContent;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.persistence.QueryHint;
 import jakarta.validation.constraints.Size;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 
 public interface FolderContentRepo extends JpaRepository<FolderContent, Long> {
-    @Query("SELECT fc FROM FolderContent fc JOIN fc.folders f WHERE f.id = :folderId AND fc.required = true")
-    List<FolderContent> findRequiredContentsByFolderId(@Param("folderId") Long folderId);
+    // Résultat mis en cache (identifiants), invalidé à chaque écriture sur les contenus ou les liaisons
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "reference-queries")
+    })
+    @Query("SELECT fc.id FROM FolderContent fc JOIN fc.folders f WHERE f.id = :folderId AND fc.required = true ORDER BY fc.id")
+    List<Long> findRequiredContentIdsByFolderId(@Param("folderId") Long folderId);
+
+    @Query("SELECT f.id FROM FolderContent fc JOIN fc.folders f WHERE fc.id = :contentId")
+    List<Long> findFolderIdsByContentId(@Param("contentId") Long contentId);
 
     boolean existsByName(String name);
 }
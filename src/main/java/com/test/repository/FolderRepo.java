@@ -1,14 +1,31 @@
 package com.test.repository;
 
+import com.test.enums.ArchivalProfile;
 import com.test.model.Folder;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.persistence.QueryHint;
 import jakarta.validation.constraints.Size;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface FolderRepo extends JpaRepository<Folder, Long> {
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "reference-queries")
+    })
     List<Folder> findByPlanIdAndParentFolderIsNull(Long planId);
 
     boolean existsByName(String name);
+
+    @Query("SELECT f.plan.id FROM Folder f WHERE f.id = :folderId")
+    Optional<Long> findPlanIdById(@Param("folderId") Long folderId);
+
+    @Query("SELECT f.plan.archivalProfile FROM Folder f WHERE f.id = :folderId")
+    Optional<ArchivalProfile> findPlanArchivalProfileById(@Param("folderId") Long folderId);
 }
@@ -1,7 +1,30 @@
 package com.test.repository;
 
 import com.test.model.Piece;
+import com.test.payload.PieceFileDTO;
+import com.test.payload.PieceResponseDTO;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
 
 public interface PieceRepo extends JpaRepository<Piece, Long> {
+    Optional<Piece> findByIdAndDocumentId(Long id, Long documentId);
+
+    long countByDocumentId(Long documentId);
+
+    @Query("SELECT new com.test.payload.PieceFileDTO(p.id, p.fileName, p.fileSize, p.fileType, p.updatedAt) " +
+            "FROM Piece p WHERE p.filePath = :filePath")
+    Optional<PieceFileDTO> findFileByFilePath(@Param("filePath") String filePath);
+
+    @Query("SELECT DISTINCT p.content.id FROM Piece p WHERE p.document.id = :documentId")
+    List<Long> findCapturedContentIds(@Param("documentId") Long documentId);
+
+    // Projection des pièces d'un document avec leur contenu, en une seule requête
+    @Query("SELECT new com.test.payload.PieceResponseDTO(p.id, p.fileName, p.fileSize, p.fileType, p.pieceUrl, " +
+            "p.qrCodeData, c.id, c.name, c.required, p.createdAt) " +
+            "FROM Piece p JOIN p.content c WHERE p.document.id = :documentId ORDER BY p.id")
+    List<PieceResponseDTO> findDetailsByDocumentId(@Param("documentId") Long documentId);
 }
@@ -0,0 +1,29 @@
+package com.test.repository;
+
+import com.test.model.UploadSession;
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface UploadSessionRepo extends JpaRepository<UploadSession, Long> {
+
+    Optional<UploadSession> findByUploadIdAndDocumentId(String uploadId, Long documentId);
+
+    List<UploadSession> findTop100ByExpiresAtBeforeOrderByExpiresAt(LocalDateTime now);
+
+    // Avance conditionnelle : sans effet si la position a changé depuis la lecture (autre instance, autre requête)
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE UploadSession s SET s.receivedBytes = :received, s.expiresAt = :expiresAt " +
+            "WHERE s.uploadId = :uploadId AND s.receivedBytes = :offset")
+    int advance(@Param("uploadId") String uploadId,
+                @Param("offset") long offset,
+                @Param("received") long received,
+                @Param("expiresAt") LocalDateTime expiresAt);
+}
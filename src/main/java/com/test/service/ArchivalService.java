@@ -0,0 +1,362 @@
+package com.test.service;
+
+import com.google.zxing.NotFoundException;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+import com.test.enums.ArchivalProfile;
+import com.test.enums.DocumentEventType;
+import com.test.enums.FileType;
+import com.test.event.DocumentEvent;
+import com.test.model.FolderContent;
+import com.test.repository.FolderRepo;
+import com.test.storage.StorageBackend;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recompression d'archivage des images capturées (niveaux de gris ou noir et blanc), en arrière-plan.
+ * L'image recompressée est écrite sous un nouveau nom, puis la pièce bascule dessus dans une transaction
+ * qui met l'ancien fichier en file de purge, supprimé après un délai de grâce
+ * (project.purge.recompressed-grace) : un fichier servi n'est jamais modifié sur place.
+ * Les pièces en attente sont reprises périodiquement, y compris après un redémarrage.
+ */
+@Slf4j
+@Service
+public class ArchivalService {
+
+    // Pièce toujours sur le fichier d'origine : la bascule est ignorée si elle a changé entre-temps
+    private static final String SWITCH_SQL = """
+            UPDATE pieces SET file_path = ?, piece_url = ?, file_size = ?, file_type = ?,
+                              archived_at = now(), updated_at = now()
+            WHERE id = ? AND file_path = ? AND archived_at IS NULL
+            """;
+
+    private static final String PENDING_SQL = """
+            SELECT id FROM pieces
+            WHERE archival_profile IS NOT NULL AND archived_at IS NULL AND created_at < ?
+            ORDER BY id
+            LIMIT ?
+            """;
+
+    private final FolderRepo folderRepo;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final FilePurgeService filePurgeService;
+    private final FileMetadataService fileMetadataService;
+    private final ThumbnailService thumbnailService;
+    private final StorageBackend storage;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ExecutorService workers;
+
+    // Pièces soumises au pool et pas encore traitées
+    private final Set<Long> scheduled = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong recompressed = new AtomicLong();
+    private final AtomicLong savedBytes = new AtomicLong();
+
+    @Value("${project.document}")
+    private String storagePath;
+
+    // Grand côté d'une page A4 à 300 dpi
+    @Value("${project.archival.max-dimension:3508}")
+    private int maxDimension;
+
+    @Value("${project.archival.jpeg-quality:0.7}")
+    private float jpegQuality;
+
+    @Value("${project.archival.batch-size:100}")
+    private int batchSize;
+
+    // Les pièces plus récentes sont normalement déjà soumises par la capture
+    @Value("${project.archival.pending-grace:PT2M}")
+    private Duration pendingGrace;
+
+    public ArchivalService(FolderRepo folderRepo,
+                           JdbcTemplate jdbcTemplate,
+                           TransactionTemplate transactionTemplate,
+                           FilePurgeService filePurgeService,
+                           FileMetadataService fileMetadataService,
+                           ThumbnailService thumbnailService,
+                           StorageBackend storage,
+                           ApplicationEventPublisher eventPublisher,
+                           @Value("${project.archival.workers:1}") int workerCount) {
+        this.folderRepo = folderRepo;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.filePurgeService = filePurgeService;
+        this.fileMetadataService = fileMetadataService;
+        this.thumbnailService = thumbnailService;
+        this.storage = storage;
+        this.eventPublisher = eventPublisher;
+        this.workers = Executors.newFixedThreadPool(workerCount);
+    }
+
+
+    // ============== SOUMISSION ==============
+
+    /**
+     * Profil du contenu, à défaut celui du plan du dossier ; aucun pour les PDF.
+     */
+    public ArchivalProfile profileFor(FolderContent content, Long folderId, FileType fileType) {
+        if (fileType == FileType.PDF) {
+            return null;
+        }
+        if (content.getArchivalProfile() != null) {
+            return content.getArchivalProfile();
+        }
+        return folderId != null ? folderRepo.findPlanArchivalProfileById(folderId).orElse(null) : null;
+    }
+
+    // Appelé après la validation de la capture
+    public void submit(Long pieceId) {
+        if (!scheduled.add(pieceId)) {
+            return;
+        }
+        try {
+            workers.execute(() -> {
+                try {
+                    process(pieceId);
+                } catch (Exception e) {
+                    // La pièce reste en attente et sera reprise par le prochain passage
+                    log.error("Recompression impossible de la pièce {}: {}", pieceId, e.getMessage());
+                } finally {
+                    scheduled.remove(pieceId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            scheduled.remove(pieceId);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${project.archival.interval:PT5M}",
+            initialDelayString = "${project.archival.initial-delay:PT1M}")
+    public void resumePending() {
+        List<Long> pending = jdbcTemplate.queryForList(PENDING_SQL, Long.class,
+                Timestamp.from(Instant.now().minus(pendingGrace)), batchSize);
+        if (!pending.isEmpty()) {
+            log.info("Reprise de la recompression de {} pièce(s)", pending.size());
+            pending.forEach(this::submit);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+
+    // ============== RECOMPRESSION ==============
+
+    private void process(Long pieceId) throws IOException {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList("""
+                SELECT p.file_path, p.piece_url, p.file_size, p.archival_profile, p.document_id,
+                       CAST(d.metadata ->> 'folderId' AS bigint) AS folder_id
+                FROM pieces p JOIN documents d ON d.id = p.document_id
+                WHERE p.id = ? AND p.archival_profile IS NOT NULL AND p.archived_at IS NULL
+                """, pieceId);
+        if (rows.isEmpty()) {
+            return;
+        }
+        Map<String, Object> row = rows.getFirst();
+        String filePath = (String) row.get("file_path");
+        long originalSize = ((Number) row.get("file_size")).longValue();
+        ArchivalProfile profile = ArchivalProfile.valueOf((String) row.get("archival_profile"));
+
+        BufferedImage image = read(filePath);
+        if (image == null) {
+            log.warn("Pièce {}: image illisible ou absente, recompression abandonnée", pieceId);
+            markArchived(pieceId);
+            return;
+        }
+
+        long start = System.nanoTime();
+        String extension = profile == ArchivalProfile.BITONAL_PNG ? ".png" : ".jpg";
+        String filename = UUID.randomUUID() + extension;
+        FileType fileType = profile == ArchivalProfile.BITONAL_PNG ? FileType.IMAGE_PNG : FileType.IMAGE_JPG;
+        // Rendu dans un fichier temporaire local, confié au stockage seulement s'il apporte un gain
+        Path temp = Files.createTempFile("archival-", extension);
+        long size;
+        try {
+            BufferedImage reduced = reduce(image);
+            if (profile == ArchivalProfile.BITONAL_PNG) {
+                write(bitonal(reduced), "png", null, temp);
+            } else {
+                write(grayscale(reduced), "jpeg", jpegQuality, temp);
+            }
+
+            size = Files.size(temp);
+            // Aucun gain : le fichier d'origine est conservé
+            if (size >= originalSize) {
+                markArchived(pieceId);
+                log.info("Pièce {}: recompression {} sans gain ({} -> {} octets), original conservé",
+                        pieceId, profile, originalSize, size);
+                return;
+            }
+            // Contenu écrit dans le stockage avant que la pièce ne pointe dessus
+            storage.put(filename, temp, fileType.getMimeType());
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        String pieceUrl = (String) row.get("piece_url");
+        String newUrl = pieceUrl == null ? null : pieceUrl.substring(0, pieceUrl.lastIndexOf('/') + 1) + filename;
+        String newPath = storagePath + filename;
+        Long documentId = ((Number) row.get("document_id")).longValue();
+        Long folderId = row.get("folder_id") != null ? ((Number) row.get("folder_id")).longValue() : null;
+
+        Boolean switched = transactionTemplate.execute(status -> {
+            int updated = jdbcTemplate.update(SWITCH_SQL, newPath, newUrl, size, fileType.name(),
+                    pieceId, filePath);
+            if (updated == 0) {
+                return false;
+            }
+            filePurgeService.enqueue(filePath, FilePurgeService.REASON_RECOMPRESSED);
+            eventPublisher.publishEvent(new DocumentEvent(DocumentEventType.PIECE_UPDATED, documentId, folderId,
+                    Map.of("pieceId", pieceId, "pieceUrl", String.valueOf(newUrl), "fileSize", size)));
+            return true;
+        });
+
+        if (!Boolean.TRUE.equals(switched)) {
+            // Pièce supprimée ou déjà traitée pendant la recompression
+            storage.delete(filename);
+            return;
+        }
+
+        fileMetadataService.evict(filePath);
+        thumbnailService.evictSource(filePath);
+        recompressed.incrementAndGet();
+        savedBytes.addAndGet(originalSize - size);
+        log.info("Pièce {}: recompression {} en {} ms, {} -> {} octets", pieceId, profile,
+                (System.nanoTime() - start) / 1_000_000, originalSize, size);
+    }
+
+    // Fichier absent ou corrompu : jamais retenté ; stockage indisponible : reprise au passage suivant
+    private BufferedImage read(String filePath) throws IOException {
+        InputStream in;
+        try {
+            in = storage.get(StorageBackend.keyOf(filePath));
+        } catch (NoSuchFileException | IllegalArgumentException e) {
+            return null;
+        }
+        try (in) {
+            return ImageIO.read(in);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void markArchived(Long pieceId) {
+        jdbcTemplate.update("UPDATE pieces SET archived_at = now() WHERE id = ? AND archived_at IS NULL", pieceId);
+    }
+
+    // Réduction au format d'archivage, jamais d'agrandissement
+    private BufferedImage reduce(BufferedImage image) {
+        int longest = Math.max(image.getWidth(), image.getHeight());
+        if (longest <= maxDimension) {
+            return image;
+        }
+        double ratio = (double) maxDimension / longest;
+        int width = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+        BufferedImage reduced = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = reduced.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, Color.WHITE, null);
+        } finally {
+            graphics.dispose();
+        }
+        return reduced;
+    }
+
+    private static BufferedImage grayscale(BufferedImage image) {
+        BufferedImage gray = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = gray.createGraphics();
+        try {
+            graphics.drawImage(image, 0, 0, Color.WHITE, null);
+        } finally {
+            graphics.dispose();
+        }
+        return gray;
+    }
+
+    /**
+     * Seuillage local, celui utilisé pour la lecture des QR codes : un éclairage inégal de la page
+     * ne la noircit pas par zones.
+     */
+    private static BufferedImage bitonal(BufferedImage image) {
+        BitMatrix matrix;
+        try {
+            matrix = new HybridBinarizer(new BufferedImageLuminanceSource(image)).getBlackMatrix();
+        } catch (NotFoundException e) {
+            throw new IllegalArgumentException("Seuillage impossible de l'image", e);
+        }
+        BufferedImage bitonal = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_BINARY);
+        WritableRaster raster = bitonal.getRaster();
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                raster.setSample(x, y, 0, matrix.get(x, y) ? 0 : 1);
+            }
+        }
+        return bitonal;
+    }
+
+    private static void write(BufferedImage image, String format, Float quality, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format).next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(target.toFile())) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (quality != null && param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(quality);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    public long getRecompressedCount() {
+        return recompressed.get();
+    }
+
+    public long getSavedBytes() {
+        return savedBytes.get();
+    }
+}
@@ -0,0 +1,488 @@
+package com.test.service;
+
+import com.test.enums.JobState;
+import com.test.payload.ArchiveExportDTO;
+import com.test.payload.ArchiveExportRequestDTO;
+import com.test.payload.ArchiveSegmentDTO;
+import com.test.storage.StorageBackend;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.core.JacksonException;
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.json.JsonMapper;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Export d'archivage (conservation légale) de tous les documents validés d'un dossier,
+ * sous-dossiers compris, ou d'un plan. Les documents sont lus par curseur dans l'ordre des identifiants
+ * et écrits dans des segments ZIP de taille bornée. Un point de reprise est enregistré à chaque
+ * segment terminé : après un arrêt, l'export repart du dernier document archivé.
+ */
+@Slf4j
+@Service
+public class ArchiveExportService {
+
+    private static final int FETCH_SIZE = 500;
+    private static final String CHECKPOINT_FILE = "checkpoint.json";
+
+    // Documents validés du sous-arbre, au-delà du point de reprise, avec leurs pièces
+    private static final String DOCUMENTS_SQL = """
+            WITH RECURSIVE subtree AS (
+                SELECT f.id FROM folders f WHERE %s
+                UNION
+                SELECT c.id FROM folders c JOIN subtree s ON c.parent_folder_id = s.id
+            )
+            SELECT d.id, d.title, d.description, d.status, CAST(d.metadata AS text) AS metadata,
+                   d.created_at, d.updated_at,
+                   p.id AS piece_id, p.file_name, p.file_path, p.file_size, p.file_type, p.qr_code_data,
+                   p.created_at AS piece_created_at,
+                   fc.id AS content_id, fc.name AS content_name, fc.required
+            FROM documents d
+            LEFT JOIN pieces p ON p.document_id = d.id
+            LEFT JOIN folder_contents fc ON fc.id = p.content_id
+            WHERE d.status = 'VALIDE'
+              AND CAST(d.metadata ->> 'folderId' AS bigint) IN (SELECT id FROM subtree)
+              AND d.id > ?
+            ORDER BY d.id, fc.name, p.id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ReportService reportService;
+    private final DocumentExportService documentExportService;
+    private final JsonMapper jsonMapper;
+
+    private final Map<String, ArchiveExportDTO> jobs = new ConcurrentHashMap<>();
+    private final ExecutorService runners;
+    private final ExecutorService readers;
+
+    @Value("${project.export.dir:exports/}")
+    private String exportDir;
+
+    @Value("${project.export.max-segment-bytes:1073741824}")
+    private long defaultMaxSegmentBytes;
+
+    // Nombre de documents lus en avance (CRC calculés) pendant l'écriture du document courant
+    @Value("${project.export.read-ahead:8}")
+    private int readAhead;
+
+    public ArchiveExportService(DataSource dataSource,
+                                PlatformTransactionManager transactionManager,
+                                ReportService reportService,
+                                DocumentExportService documentExportService,
+                                JsonMapper jsonMapper,
+                                @Value("${project.export.workers:2}") int workerCount,
+                                @Value("${project.export.read-parallelism:4}") int readParallelism) {
+        // Le curseur PostgreSQL n'est utilisé qu'avec un fetch size et hors autocommit
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.reportService = reportService;
+        this.documentExportService = documentExportService;
+        this.jsonMapper = jsonMapper;
+        this.runners = Executors.newFixedThreadPool(workerCount);
+        this.readers = Executors.newFixedThreadPool(readParallelism);
+    }
+
+
+    // ============== GESTION DES EXPORTS ==============
+
+    public ArchiveExportDTO start(ArchiveExportRequestDTO request) {
+        reportService.checkScope(request.getFolderId(), request.getPlanId());
+        if (request.getMaxSegmentBytes() != null && request.getMaxSegmentBytes() <= 0) {
+            throw new IllegalArgumentException("La taille maximale d'un segment doit être positive");
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        ArchiveExportDTO job = ArchiveExportDTO.builder()
+                .id(UUID.randomUUID().toString())
+                .folderId(request.getFolderId())
+                .planId(request.getPlanId())
+                .maxSegmentBytes(request.getMaxSegmentBytes() != null ? request.getMaxSegmentBytes() : defaultMaxSegmentBytes)
+                .state(JobState.PENDING)
+                .lastDocumentId(0L)
+                .segments(new ArrayList<>())
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+
+        saveCheckpoint(job);
+        jobs.put(job.getId(), job);
+        submit(job);
+        return snapshot(job);
+    }
+
+    // Reprise d'un export interrompu ou en échec depuis son dernier point de reprise
+    public ArchiveExportDTO resume(String jobId) {
+        ArchiveExportDTO job = findJob(jobId);
+        synchronized (job) {
+            if (job.getState() == JobState.COMPLETED) {
+                throw new IllegalStateException("L'export est déjà terminé");
+            }
+            if (job.getState() == JobState.RUNNING || job.getState() == JobState.PENDING) {
+                throw new IllegalStateException("L'export est déjà en cours");
+            }
+            job.setState(JobState.PENDING);
+            job.setError(null);
+        }
+        submit(job);
+        return snapshot(job);
+    }
+
+    public ArchiveExportDTO getJob(String jobId) {
+        return snapshot(findJob(jobId));
+    }
+
+    public List<ArchiveExportDTO> getJobs() {
+        return jobs.values().stream()
+                .map(this::snapshot)
+                .sorted(Comparator.comparing(ArchiveExportDTO::getCreatedAt).reversed())
+                .toList();
+    }
+
+    // Chemin d'un segment terminé, pour le téléchargement
+    public Path getSegment(String jobId, String segmentName) {
+        ArchiveExportDTO job = findJob(jobId);
+        boolean known;
+        synchronized (job) {
+            known = job.getSegments().stream().anyMatch(s -> s.getName().equals(segmentName));
+        }
+        if (!known) {
+            throw new EntityNotFoundException("Segment non trouvé");
+        }
+        return jobDir(jobId).resolve(segmentName);
+    }
+
+    /**
+     * Au démarrage, les exports sont rechargés depuis leurs points de reprise ;
+     * ceux qui étaient en cours lors de l'arrêt reprennent automatiquement.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedExports() {
+        Path root = Paths.get(exportDir);
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path dir : dirs) {
+                Path checkpoint = dir.resolve(CHECKPOINT_FILE);
+                if (!Files.exists(checkpoint)) {
+                    continue;
+                }
+                ArchiveExportDTO job = jsonMapper.readValue(checkpoint.toFile(), ArchiveExportDTO.class);
+                jobs.put(job.getId(), job);
+                if (job.getState() == JobState.PENDING || job.getState() == JobState.RUNNING) {
+                    log.info("Reprise de l'export {} après le document {}", job.getId(), job.getLastDocumentId());
+                    job.setState(JobState.PENDING);
+                    submit(job);
+                }
+            }
+        } catch (IOException | JacksonException e) {
+            log.error("Impossible de relire les points de reprise des exports", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        runners.shutdownNow();
+        readers.shutdownNow();
+    }
+
+
+    // ============== EXÉCUTION ==============
+
+    private void submit(ArchiveExportDTO job) {
+        runners.execute(() -> run(job));
+    }
+
+    private void run(ArchiveExportDTO job) {
+        synchronized (job) {
+            job.setState(JobState.RUNNING);
+            job.setUpdatedAt(LocalDateTime.now());
+        }
+        saveCheckpoint(job);
+
+        try (SegmentWriter writer = new SegmentWriter(job)) {
+            writer.discardPartialSegments();
+
+            String root = job.getFolderId() != null ? "f.id = ?" : "f.plan_id = ? AND f.parent_folder_id IS NULL";
+            Long scopeId = job.getFolderId() != null ? job.getFolderId() : job.getPlanId();
+            DocumentRowReader reader = new DocumentRowReader(writer);
+
+            readOnlyTransaction.executeWithoutResult(status ->
+                    jdbcTemplate.query(DOCUMENTS_SQL.formatted(root), reader, scopeId, job.getLastDocumentId()));
+            reader.finish();
+            writer.closeSegment();
+
+            synchronized (job) {
+                job.setState(JobState.COMPLETED);
+                job.setUpdatedAt(LocalDateTime.now());
+            }
+            saveCheckpoint(job);
+            log.info("Export {} terminé: {} document(s) en {} segment(s)",
+                    job.getId(), job.getDocumentsExported(), job.getSegments().size());
+        } catch (Exception e) {
+            Throwable cause = (e instanceof UncheckedIOException || e instanceof CompletionException) && e.getCause() != null
+                    ? e.getCause() : e;
+            log.error("Echec de l'export {}, reprise possible après le document {}", job.getId(), job.getLastDocumentId(), cause);
+            synchronized (job) {
+                job.setState(JobState.FAILED);
+                job.setError(cause.getMessage());
+                job.setUpdatedAt(LocalDateTime.now());
+            }
+            saveCheckpoint(job);
+        }
+    }
+
+    // Lecture anticipée : les CRC des pièces sont calculés en parallèle, en nombre borné
+    private CompletableFuture<PreparedDocument> prepare(DocumentExportService.DocumentExport export) {
+        return CompletableFuture.supplyAsync(() -> {
+            Map<Long, Long> crcs = new HashMap<>();
+            for (DocumentExportService.ExportedPiece piece : export.pieces()) {
+                try {
+                    crcs.put(piece.id(), documentExportService.crc32(piece.key()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Fichier illisible pour la pièce " + piece.id() + ": " + piece.key(), e);
+                }
+            }
+            return new PreparedDocument(export, crcs);
+        }, readers);
+    }
+
+
+    // ============== POINTS DE REPRISE ==============
+
+    // Ecriture atomique : un arrêt pendant l'écriture laisse le point de reprise précédent intact
+    private void saveCheckpoint(ArchiveExportDTO job) {
+        try {
+            Path dir = jobDir(job.getId());
+            Files.createDirectories(dir);
+            Path tmp = dir.resolve(CHECKPOINT_FILE + ".tmp");
+            Files.write(tmp, jsonMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(snapshot(job)));
+            Files.move(tmp, dir.resolve(CHECKPOINT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossible d'enregistrer le point de reprise de l'export " + job.getId(), e);
+        }
+    }
+
+    private ArchiveExportDTO findJob(String jobId) {
+        ArchiveExportDTO job = jobs.get(jobId);
+        if (job == null) {
+            throw new EntityNotFoundException("Export non trouvé");
+        }
+        return job;
+    }
+
+    private Path jobDir(String jobId) {
+        return Paths.get(exportDir).resolve(jobId);
+    }
+
+    private ArchiveExportDTO snapshot(ArchiveExportDTO job) {
+        synchronized (job) {
+            return job.toBuilder().segments(List.copyOf(job.getSegments())).build();
+        }
+    }
+
+    private static String segmentName(int index) {
+        return String.format("segment-%05d.zip", index);
+    }
+
+
+    /**
+     * Segment ZIP en cours d'écriture. Un segment est fermé dès qu'il atteint la taille visée ;
+     * un document n'est jamais coupé entre deux segments.
+     */
+    private class SegmentWriter implements AutoCloseable {
+        private final ArchiveExportDTO job;
+        private FileChannel channel;
+        private StoredZipWriter zip;
+        private ArchiveSegmentDTO current;
+        private long pieces;
+
+        SegmentWriter(ArchiveExportDTO job) {
+            this.job = job;
+        }
+
+        // Segments commencés après le dernier point de reprise : ils seront réécrits
+        void discardPartialSegments() throws IOException {
+            Path dir = jobDir(job.getId());
+            Files.createDirectories(dir);
+            int completed = job.getSegments().size();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "segment-*.zip")) {
+                for (Path file : files) {
+                    int index = Integer.parseInt(file.getFileName().toString().replaceAll("\\D", ""));
+                    if (index > completed) {
+                        Files.delete(file);
+                    }
+                }
+            }
+        }
+
+        void write(PreparedDocument document) throws IOException {
+            if (zip == null) {
+                openSegment();
+            }
+            DocumentExportService.DocumentExport export = document.export();
+            String prefix = export.id() + "-" + DocumentExportService.entryName(export.title()) + "/";
+            documentExportService.writeDocument(zip, prefix, export, document.crcs());
+
+            if (current.getFirstDocumentId() == null) {
+                current.setFirstDocumentId(export.id());
+            }
+            current.setLastDocumentId(export.id());
+            current.setDocuments(current.getDocuments() + 1);
+            pieces += export.pieces().size();
+
+            if (zip.getPosition() >= job.getMaxSegmentBytes()) {
+                closeSegment();
+            }
+        }
+
+        void closeSegment() throws IOException {
+            if (zip == null) {
+                return;
+            }
+            zip.finish();
+            channel.force(true);
+            channel.close();
+            current.setSize(zip.getPosition());
+
+            synchronized (job) {
+                job.getSegments().add(current);
+                job.setLastDocumentId(current.getLastDocumentId());
+                job.setDocumentsExported(job.getDocumentsExported() + current.getDocuments());
+                job.setPiecesExported(job.getPiecesExported() + pieces);
+                job.setBytesWritten(job.getBytesWritten() + current.getSize());
+                job.setUpdatedAt(LocalDateTime.now());
+            }
+            saveCheckpoint(job);
+            log.info("Export {}: segment {} terminé ({} document(s), {} octets)",
+                    job.getId(), current.getName(), current.getDocuments(), current.getSize());
+
+            zip = null;
+            channel = null;
+            current = null;
+            pieces = 0;
+        }
+
+        private void openSegment() throws IOException {
+            String name = segmentName(job.getSegments().size() + 1);
+            channel = FileChannel.open(jobDir(job.getId()).resolve(name),
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            zip = new StoredZipWriter(channel);
+            current = ArchiveSegmentDTO.builder().name(name).build();
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Segment inachevé en cas d'échec : il sera supprimé à la reprise
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Regroupe les lignes du curseur par document (elles arrivent triées) et alimente
+     * une fenêtre bornée de documents en cours de lecture ; l'écriture suit l'ordre des identifiants.
+     */
+    private class DocumentRowReader implements RowCallbackHandler {
+        private final SegmentWriter writer;
+        private final Deque<CompletableFuture<PreparedDocument>> window = new ArrayDeque<>();
+        private DocumentExportService.DocumentExport current;
+
+        DocumentRowReader(SegmentWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long documentId = rs.getLong("id");
+            if (current == null || current.id() != documentId) {
+                enqueue(current);
+                current = new DocumentExportService.DocumentExport(documentId, rs.getString("title"),
+                        rs.getString("description"), rs.getString("status"), readMetadata(rs.getString("metadata")),
+                        toLocalDateTime(rs.getTimestamp("created_at")), toLocalDateTime(rs.getTimestamp("updated_at")),
+                        new ArrayList<>());
+            }
+
+            long pieceId = rs.getLong("piece_id");
+            if (!rs.wasNull()) {
+                current.pieces().add(new DocumentExportService.ExportedPiece(pieceId, rs.getString("file_name"),
+                        StorageBackend.keyOf(rs.getString("file_path")), rs.getLong("file_size"), rs.getString("file_type"),
+                        rs.getString("qr_code_data"), toLocalDateTime(rs.getTimestamp("piece_created_at")),
+                        rs.getLong("content_id"), rs.getString("content_name"), rs.getBoolean("required")));
+            }
+        }
+
+        void finish() throws IOException {
+            enqueue(current);
+            current = null;
+            while (!window.isEmpty()) {
+                writer.write(window.poll().join());
+            }
+        }
+
+        private void enqueue(DocumentExportService.DocumentExport export) {
+            if (export == null) {
+                return;
+            }
+            window.add(prepare(export));
+            try {
+                while (window.size() > readAhead) {
+                    writer.write(window.poll().join());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private Map<String, Object> readMetadata(String json) {
+            return json != null ? jsonMapper.readValue(json, new TypeReference<>() {}) : Map.of();
+        }
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+
+    private record PreparedDocument(DocumentExportService.DocumentExport export, Map<Long, Long> crcs) {
+    }
+}
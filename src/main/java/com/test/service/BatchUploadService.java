@@ -0,0 +1,348 @@
+package com.test.service;
+
+import com.test.enums.DocumentStatus;
+import com.test.exception.OverloadedException;
+import com.test.model.Document;
+import com.test.model.Piece;
+import com.test.payload.BatchUploadResultDTO;
+import com.test.repository.DocumentRepo;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tomcat.util.http.fileupload.FileItemIterator;
+import org.apache.tomcat.util.http.fileupload.FileItemStream;
+import org.apache.tomcat.util.http.fileupload.FileUpload;
+import org.apache.tomcat.util.http.fileupload.servlet.ServletRequestContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Envoi de pièces par lot lu au fil de l'eau : chaque partie du corps multipart est écrite dans le répertoire
+ * de transit dès sa réception puis confiée à la chaîne de capture pendant que les suivantes arrivent.
+ * Le résultat de chaque fichier est renvoyé dès qu'il est connu, une ligne JSON par fichier.
+ * Le corps est lu avec l'analyseur multipart de Tomcat ; le résolveur multipart de Spring l'ignore (WebMvcConfig).
+ */
+@Slf4j
+@Service
+public class BatchUploadService {
+
+    public static final String FILES_FIELD = "files";
+
+    private static final String STREAM_PATH_SUFFIX = "/pieces/batch/stream";
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    // Attente de l'arrêt de la lecture lorsque la requête se termine avant elle
+    private static final long READER_STOP_TIMEOUT_SECONDS = 5;
+
+    // Délai asynchrone désactivé, remplacé par la date limite du lot
+    private static final long NO_TIMEOUT = -1L;
+
+    private final DocumentRepo documentRepo;
+    private final DocumentService documentService;
+    private final JsonMapper jsonMapper;
+    private final Path stagingDir;
+
+    // Lecture des corps de requête, bloquée sur le réseau : un fil virtuel par lot
+    private final ExecutorService readers = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Chaîne de capture, partagée par tous les lots ; le décodage reste borné par DecodeAdmissionService
+    private final ExecutorService workers;
+
+    @Value("${project.upload.max-file-size:10MB}")
+    private DataSize maxFileSize;
+
+    @Value("${project.upload.batch.max-request-size:200MB}")
+    private DataSize maxRequestSize;
+
+    @Value("${project.upload.batch.max-files:100}")
+    private int maxFiles;
+
+    // Fichiers reçus en attente ou en cours de traitement par lot : au-delà, la lecture du corps attend
+    @Value("${project.upload.batch.parallelism:4}")
+    private int parallelism;
+
+    // Durée maximale de lecture du lot, vérifiée entre deux lectures : la requête n'a pas de délai asynchrone
+    // pour ne jamais se terminer pendant la lecture, un client muet est arrêté par le délai de lecture du connecteur
+    @Value("${project.upload.batch.timeout:PT10M}")
+    private Duration timeout;
+
+    public BatchUploadService(DocumentRepo documentRepo,
+                              DocumentService documentService,
+                              JsonMapper jsonMapper,
+                              @Value("${project.upload.staging-dir:uploads/}") String stagingDir,
+                              @Value("${project.upload.batch.workers:4}") int workerCount) throws IOException {
+        this.documentRepo = documentRepo;
+        this.documentService = documentService;
+        this.jsonMapper = jsonMapper;
+        this.stagingDir = Paths.get(stagingDir).toAbsolutePath().normalize();
+        Files.createDirectories(this.stagingDir);
+        this.workers = Executors.newFixedThreadPool(workerCount);
+    }
+
+    /**
+     * Vérifie la requête et le document puis lance la lecture du lot ; les erreurs levées ici donnent encore
+     * un code HTTP, celles des fichiers sont rapportées dans leur ligne de résultat.
+     */
+    public ResponseBodyEmitter upload(Long documentId, HttpServletRequest request) {
+        String contentType = request.getContentType();
+        if (contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith(MediaType.MULTIPART_FORM_DATA_VALUE)) {
+            throw new IllegalArgumentException("Requête multipart/form-data attendue");
+        }
+        if (request.getContentLengthLong() > maxRequestSize.toBytes()) {
+            throw new IllegalArgumentException("Lot trop volumineux (max " + maxRequestSize.toMegabytes() + "MB)");
+        }
+        Document document = documentRepo.findById(documentId)
+                .orElseThrow(() -> new EntityNotFoundException("Document non trouvé"));
+        if (document.getStatus() == DocumentStatus.VALIDE) {
+            throw new IllegalStateException("Impossible d'ajouter des pièces à un document validé");
+        }
+
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(NO_TIMEOUT);
+        Batch batch = new Batch(documentId, emitter, System.nanoTime() + timeout.toNanos());
+        emitter.onError(e -> batch.cancel());
+        readers.execute(() -> batch.run(request));
+        return emitter;
+    }
+
+    // Requête dont le corps est lu par ce service et non par le résolveur multipart
+    public static boolean isStreamingUpload(HttpServletRequest request) {
+        return "POST".equals(request.getMethod()) && request.getRequestURI().endsWith(STREAM_PATH_SUFFIX);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        readers.shutdownNow();
+        workers.shutdownNow();
+    }
+
+
+    // ============== LOT ==============
+
+    private class Batch {
+        private final Long documentId;
+        private final ResponseBodyEmitter emitter;
+        private final long deadline;
+        private final Semaphore inFlight = new Semaphore(parallelism);
+        private final List<CompletableFuture<Void>> pending = new ArrayList<>();
+        private final AtomicInteger failed = new AtomicInteger();
+        // Fin de la lecture de la requête, seul usage de HttpServletRequest
+        private final CountDownLatch readDone = new CountDownLatch(1);
+        private volatile Thread reader;
+        // Client parti : plus rien n'est lu ni traité
+        private volatile boolean cancelled;
+
+        Batch(Long documentId, ResponseBodyEmitter emitter, long deadline) {
+            this.documentId = documentId;
+            this.emitter = emitter;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Appelé par le conteneur avant de terminer la requête sur erreur (client parti) : la lecture, qui échoue
+         * alors elle aussi, est attendue pour que la requête recyclée ensuite ne soit plus jamais lue.
+         */
+        void cancel() {
+            cancelled = true;
+            Thread current = reader;
+            if (current != null) {
+                current.interrupt();
+            }
+            try {
+                if (!readDone.await(READER_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    log.warn("Lecture du lot pour le document {} toujours en cours à la fin de la requête", documentId);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void run(HttpServletRequest request) {
+            reader = Thread.currentThread();
+            int count = 0;
+            try {
+                count = read(request);
+            } finally {
+                readDone.countDown();
+            }
+
+            CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).join();
+            log.info("Lot de {} fichier(s) pour le document {} traité, {} en échec{}",
+                    count, documentId, failed.get(), cancelled ? " (interrompu)" : "");
+            if (!cancelled) {
+                emitter.complete();
+            }
+        }
+
+        // Lit les parties et soumet chaque fichier reçu ; retourne le nombre de fichiers
+        private int read(HttpServletRequest request) {
+            int count = 0;
+            if (cancelled) {
+                return count;
+            }
+            try {
+                FileUpload upload = new FileUpload();
+                upload.setSizeMax(maxRequestSize.toBytes());
+                upload.setHeaderEncoding(StandardCharsets.UTF_8.name());
+
+                FileItemIterator items = upload.getItemIterator(new ServletRequestContext(request));
+                while (!cancelled && items.hasNext()) {
+                    checkDeadline();
+                    FileItemStream item = items.next();
+                    // Comme pour l'envoi par lot classique, seules les parties "files" sont des pièces
+                    if (item.isFormField() || !FILES_FIELD.equals(item.getFieldName())) {
+                        continue;
+                    }
+                    int index = count++;
+                    if (index >= maxFiles) {
+                        send(failure(index, item.getName(), HttpStatus.BAD_REQUEST,
+                                "Nombre maximal de fichiers par lot atteint (" + maxFiles + ")"));
+                        continue;
+                    }
+                    Path staged = stage(item);
+                    String fileName = item.getName();
+                    String contentType = item.getContentType();
+                    try {
+                        inFlight.acquire();
+                    } catch (InterruptedException e) {
+                        Files.deleteIfExists(staged);
+                        throw e;
+                    }
+                    pending.add(CompletableFuture
+                            .runAsync(() -> process(index, fileName, contentType, staged), workers)
+                            .whenComplete((result, e) -> inFlight.release()));
+                }
+                if (count == 0 && !cancelled) {
+                    send(failure(null, null, HttpStatus.BAD_REQUEST, "Aucun fichier reçu"));
+                }
+            } catch (InterruptedException e) {
+                cancelled = true;
+            } catch (Exception e) {
+                // Corps tronqué, trop volumineux, mal formé ou délai dépassé :
+                // les fichiers déjà reçus sont traités malgré tout
+                log.warn("Lecture du lot pour le document {} interrompue après {} fichier(s): {}",
+                        documentId, count, e.getMessage());
+                send(failure(null, null, HttpStatus.BAD_REQUEST, "Lecture du lot interrompue: " + e.getMessage()));
+            }
+            return count;
+        }
+
+        // Copie bornée à la taille maximale plus un octet : le refus reste celui de la chaîne de capture,
+        // la fin de la partie est sautée à la fermeture. Sur erreur la partie n'est pas fermée, ce qui la lirait
+        // jusqu'au bout : la lecture s'arrête là et le conteneur se charge du reste du corps.
+        private Path stage(FileItemStream item) throws IOException {
+            Path staged = stagingDir.resolve(UUID.randomUUID() + ".part");
+            long limit = maxFileSize.toBytes() + 1;
+            InputStream in = item.openStream();
+            try (OutputStream out = Files.newOutputStream(staged)) {
+                byte[] buffer = new byte[COPY_BUFFER_SIZE];
+                long copied = 0;
+                int read;
+                while (copied < limit
+                        && (read = in.read(buffer, 0, (int) Math.min(buffer.length, limit - copied))) != -1) {
+                    out.write(buffer, 0, read);
+                    copied += read;
+                    checkDeadline();
+                }
+            } catch (IOException e) {
+                Files.deleteIfExists(staged);
+                throw e;
+            }
+            in.close();
+            return staged;
+        }
+
+        private void checkDeadline() throws IOException {
+            if (System.nanoTime() - deadline > 0) {
+                throw new IOException("délai de " + timeout.toSeconds() + "s dépassé");
+            }
+        }
+
+        private void process(int index, String fileName, String contentType, Path staged) {
+            try {
+                // Sans client pour recevoir le résultat, la pièce n'est pas créée : un nouvel envoi la créera
+                if (cancelled) {
+                    return;
+                }
+                Piece piece = documentService.uploadAndClassifyPiece(documentId,
+                        new StagedMultipartFile(staged, fileName, contentType));
+                send(BatchUploadResultDTO.builder()
+                        .index(index)
+                        .fileName(fileName)
+                        .status(HttpStatus.CREATED.value())
+                        .piece(documentService.toDTO(piece))
+                        .build());
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                send(failure(index, fileName, statusOf(e), e.getMessage()));
+            } finally {
+                // Fichier de transit encore en place : pièce refusée ou stockage par copie
+                try {
+                    Files.deleteIfExists(staged);
+                } catch (IOException e) {
+                    log.warn("Fichier de transit {} non supprimé: {}", staged, e.getMessage());
+                }
+            }
+        }
+
+        private void send(BatchUploadResultDTO result) {
+            if (cancelled) {
+                return;
+            }
+            byte[] line = (jsonMapper.writeValueAsString(result) + "\n").getBytes(StandardCharsets.UTF_8);
+            try {
+                emitter.send(line, MediaType.APPLICATION_NDJSON);
+            } catch (IOException | IllegalStateException e) {
+                // Client parti : le conteneur signale l'erreur et cancel() arrête la lecture
+                log.warn("Résultats du lot pour le document {} non transmis: {}", documentId, e.getMessage());
+                cancelled = true;
+            }
+        }
+    }
+
+    private static BatchUploadResultDTO failure(Integer index, String fileName, HttpStatus status, String error) {
+        return BatchUploadResultDTO.builder()
+                .index(index)
+                .fileName(fileName)
+                .status(status.value())
+                .error(error)
+                .build();
+    }
+
+    // Codes de GLobalExceptionHandler et de l'envoi isolé
+    private static HttpStatus statusOf(Exception e) {
+        return switch (e) {
+            case OverloadedException overloaded -> HttpStatus.TOO_MANY_REQUESTS;
+            case EntityNotFoundException notFound -> HttpStatus.NOT_FOUND;
+            case IllegalArgumentException invalid -> HttpStatus.BAD_REQUEST;
+            case IllegalStateException conflict -> HttpStatus.CONFLICT;
+            default -> HttpStatus.INTERNAL_SERVER_ERROR;
+        };
+    }
+}
@@ -0,0 +1,364 @@
+package com.test.service;
+
+import com.test.enums.BulkAction;
+import com.test.enums.DocumentEventType;
+import com.test.enums.DocumentStatus;
+import com.test.enums.JobState;
+import com.test.event.DocumentEvent;
+import com.test.payload.BulkJobDTO;
+import com.test.payload.BulkJobFailureDTO;
+import com.test.payload.BulkJobRequestDTO;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Changements de statut et validations en masse.
+ * Les documents correspondant au filtre sont traités par lots sur un pool de workers,
+ * chaque lot dans sa propre transaction et en une seule requête UPDATE conditionnelle.
+ * Les travaux sont conservés en mémoire le temps de consulter leur avancement.
+ */
+@Slf4j
+@Service
+public class BulkJobService {
+
+    private static final int MAX_REPORTED_FAILURES = 1000;
+    private static final int MAX_RETAINED_JOBS = 100;
+
+    // Verrouille les lignes du lot dans un ordre fixe puis applique la transition ;
+    // l'ancien statut est renvoyé pour les compteurs et les événements
+    private static final String TRANSITION_SQL = """
+            WITH prev AS (
+                SELECT d.id, d.status, CAST(d.metadata ->> 'folderId' AS bigint) AS folder_id
+                FROM documents d
+                WHERE d.id = ANY(?) AND d.status <> ? %s
+                ORDER BY d.id
+                FOR UPDATE OF d
+            )
+            UPDATE documents d
+            SET status = ?, version = COALESCE(d.version, 0) + 1, updated_at = now()
+            FROM prev
+            WHERE d.id = prev.id
+            RETURNING d.id, prev.status AS previous_status, prev.folder_id
+            """;
+
+    // FOR SHARE : attend une suppression de pièce en cours (ligne de complétude FOR UPDATE) et relit son résultat
+    private static final String COMPLETE_FILTER = """
+            AND EXISTS (SELECT 1 FROM document_completeness dc
+                        WHERE dc.document_id = d.id AND cardinality(dc.missing_content_ids) = 0
+                        FOR SHARE)
+            """;
+
+    // Motif d'échec des documents non modifiés par le lot
+    private static final String OUTCOME_SQL = """
+            SELECT d.id, d.status, cardinality(dc.missing_content_ids) AS missing
+            FROM documents d
+            LEFT JOIN document_completeness dc ON dc.document_id = d.id
+            WHERE d.id = ANY(?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final DocumentCompletenessService completenessService;
+    private final DocumentStatisticsService statisticsService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final JsonMapper jsonMapper;
+
+    private final Map<String, BulkJob> jobs = new ConcurrentHashMap<>();
+    private final ExecutorService workers;
+
+    @Value("${project.bulk.chunk-size:500}")
+    private int chunkSize;
+
+    public BulkJobService(JdbcTemplate jdbcTemplate,
+                          TransactionTemplate transactionTemplate,
+                          DocumentCompletenessService completenessService,
+                          DocumentStatisticsService statisticsService,
+                          ApplicationEventPublisher eventPublisher,
+                          JsonMapper jsonMapper,
+                          @Value("${project.bulk.workers:4}") int workerCount) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.completenessService = completenessService;
+        this.statisticsService = statisticsService;
+        this.eventPublisher = eventPublisher;
+        this.jsonMapper = jsonMapper;
+        this.workers = Executors.newFixedThreadPool(workerCount);
+    }
+
+
+    // ============== SOUMISSION ==============
+
+    public BulkJobDTO submit(BulkJobRequestDTO request) {
+        if (request.getAction() == BulkAction.SET_STATUS && request.getTargetStatus() == null) {
+            throw new IllegalArgumentException("Le statut cible est obligatoire pour SET_STATUS");
+        }
+        if (request.getAction() == BulkAction.VALIDATE && request.getTargetStatus() != null
+                && request.getTargetStatus() != DocumentStatus.VALIDE) {
+            throw new IllegalArgumentException("La validation en masse a toujours VALIDE pour statut cible");
+        }
+
+        DocumentStatus target = request.getAction() == BulkAction.VALIDATE
+                ? DocumentStatus.VALIDE
+                : request.getTargetStatus();
+        BulkJob job = new BulkJob(UUID.randomUUID().toString(), request.getAction(), target);
+
+        evictFinishedJobs();
+        jobs.put(job.id, job);
+        log.info("Travail en masse {} soumis: {}", job.id, request);
+
+        // La sélection elle-même peut être longue : elle est faite par le pool
+        CompletableFuture.runAsync(() -> run(job, request), workers);
+        return job.toDTO();
+    }
+
+    public BulkJobDTO getJob(String jobId) {
+        BulkJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new EntityNotFoundException("Travail en masse non trouvé");
+        }
+        return job.toDTO();
+    }
+
+    public List<BulkJobDTO> getJobs() {
+        return jobs.values().stream()
+                .sorted(Comparator.comparing((BulkJob job) -> job.createdAt).reversed())
+                .map(BulkJob::toDTO)
+                .toList();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+
+    // ============== EXÉCUTION ==============
+
+    private void run(BulkJob job, BulkJobRequestDTO request) {
+        try {
+            List<Long> ids = selectDocumentIds(request);
+            job.total.set(ids.size());
+            job.state = JobState.RUNNING;
+
+            List<CompletableFuture<Void>> chunks = new ArrayList<>();
+            for (int from = 0; from < ids.size(); from += chunkSize) {
+                List<Long> chunk = ids.subList(from, Math.min(from + chunkSize, ids.size()));
+                chunks.add(CompletableFuture.runAsync(() -> processChunk(job, chunk), workers));
+            }
+
+            CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new))
+                    .whenComplete((ignored, error) -> finish(job, error));
+        } catch (RuntimeException e) {
+            finish(job, e);
+        }
+    }
+
+    private void finish(BulkJob job, Throwable error) {
+        job.finishedAt = LocalDateTime.now();
+        if (error != null) {
+            log.error("Echec du travail en masse {}", job.id, error);
+            job.error = error.getMessage();
+            job.state = JobState.FAILED;
+        } else {
+            log.info("Travail en masse {} terminé: {} succès, {} ignoré(s), {} échec(s)",
+                    job.id, job.succeeded.get(), job.skipped.get(), job.failed.get());
+            job.state = JobState.COMPLETED;
+        }
+    }
+
+    private List<Long> selectDocumentIds(BulkJobRequestDTO request) {
+        StringBuilder sql = new StringBuilder("SELECT d.id FROM documents d WHERE 1 = 1");
+        List<Object> args = new ArrayList<>();
+
+        if (request.getFolderId() != null) {
+            sql.append(" AND CAST(d.metadata ->> 'folderId' AS bigint) = ?");
+            args.add(request.getFolderId());
+        }
+        if (request.getStatus() != null) {
+            sql.append(" AND d.status = ?");
+            args.add(request.getStatus().name());
+        }
+        if (request.getMetadata() != null && !request.getMetadata().isEmpty()) {
+            // Inclusion JSON : chaque couple clé/valeur demandé doit être présent dans les métadonnées
+            sql.append(" AND d.metadata @> CAST(? AS jsonb)");
+            args.add(toJson(request.getMetadata()));
+        }
+        sql.append(" ORDER BY d.id");
+
+        return jdbcTemplate.queryForList(sql.toString(), Long.class, args.toArray());
+    }
+
+    private void processChunk(BulkJob job, List<Long> ids) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> applyChunk(job, ids));
+        } catch (RuntimeException e) {
+            // Le lot est annulé en entier : chacun de ses documents est signalé en échec
+            log.warn("Echec d'un lot du travail en masse {}: {}", job.id, e.getMessage());
+            ids.forEach(id -> job.fail(id, "Echec du lot: " + e.getMessage()));
+        } finally {
+            job.processed.addAndGet(ids.size());
+        }
+    }
+
+    private void applyChunk(BulkJob job, List<Long> ids) {
+        Long[] idArray = ids.toArray(Long[]::new);
+
+        if (job.action == BulkAction.VALIDATE) {
+            // Documents antérieurs au suivi de complétude : l'état est reconstruit avant la validation
+            jdbcTemplate.queryForList("""
+                            SELECT d.id FROM documents d
+                            WHERE d.id = ANY(?)
+                              AND NOT EXISTS (SELECT 1 FROM document_completeness dc WHERE dc.document_id = d.id)
+                            """, Long.class, (Object) idArray)
+                    .forEach(completenessService::rebuild);
+        }
+
+        String sql = TRANSITION_SQL.formatted(job.action == BulkAction.VALIDATE ? COMPLETE_FILTER : "");
+        List<DocumentStatisticsService.StatusChange> changes = new ArrayList<>();
+        Set<Long> updated = new HashSet<>();
+
+        jdbcTemplate.query(sql, rs -> {
+            long id = rs.getLong("id");
+            long folderIdValue = rs.getLong("folder_id");
+            Long folderId = rs.wasNull() ? null : folderIdValue;
+            DocumentStatus from = DocumentStatus.valueOf(rs.getString("previous_status"));
+
+            updated.add(id);
+            changes.add(new DocumentStatisticsService.StatusChange(id, folderId, from, job.target));
+            eventPublisher.publishEvent(new DocumentEvent(DocumentEventType.STATUS_CHANGED, id, folderId,
+                    Map.of("from", from, "to", job.target, "bulkJobId", job.id)));
+        }, idArray, job.target.name(), job.target.name());
+
+        statisticsService.recordStatusChanges(changes);
+        job.succeeded.addAndGet(updated.size());
+
+        if (updated.size() < ids.size()) {
+            recordOutcomes(job, ids, updated);
+        }
+    }
+
+    private void recordOutcomes(BulkJob job, List<Long> ids, Set<Long> updated) {
+        Long[] remaining = ids.stream().filter(id -> !updated.contains(id)).toArray(Long[]::new);
+        Map<Long, String> reasons = new HashMap<>();
+
+        jdbcTemplate.query(OUTCOME_SQL, rs -> {
+            long id = rs.getLong("id");
+            DocumentStatus status = DocumentStatus.valueOf(rs.getString("status"));
+            int missing = rs.getInt("missing");
+
+            if (status == job.target) {
+                reasons.put(id, null);
+            } else if (job.action == BulkAction.VALIDATE && missing > 0) {
+                reasons.put(id, "Certaines pièces obligatoires manquent (" + missing + ")");
+            } else {
+                reasons.put(id, "Le statut du document a été modifié par une autre requête");
+            }
+        }, (Object) remaining);
+
+        for (Long id : remaining) {
+            if (!reasons.containsKey(id)) {
+                job.fail(id, "Document non trouvé");
+            } else if (reasons.get(id) == null) {
+                job.skipped.incrementAndGet();
+            } else {
+                job.fail(id, reasons.get(id));
+            }
+        }
+    }
+
+    private String toJson(Map<String, Object> metadata) {
+        try {
+            return jsonMapper.writeValueAsString(metadata);
+        } catch (JacksonException e) {
+            throw new IllegalArgumentException("Filtre de métadonnées invalide");
+        }
+    }
+
+    // Seuls les travaux terminés les plus anciens sont oubliés
+    private void evictFinishedJobs() {
+        if (jobs.size() < MAX_RETAINED_JOBS) {
+            return;
+        }
+        jobs.values().stream()
+                .filter(job -> job.state == JobState.COMPLETED || job.state == JobState.FAILED)
+                .sorted(Comparator.comparing((BulkJob job) -> job.createdAt))
+                .limit(jobs.size() - MAX_RETAINED_JOBS + 1L)
+                .forEach(job -> jobs.remove(job.id));
+    }
+
+
+    private static class BulkJob {
+        private final String id;
+        private final BulkAction action;
+        private final DocumentStatus target;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong succeeded = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final List<BulkJobFailureDTO> failures = Collections.synchronizedList(new ArrayList<>());
+        private volatile JobState state = JobState.PENDING;
+        private volatile String error;
+        private volatile LocalDateTime finishedAt;
+
+        BulkJob(String id, BulkAction action, DocumentStatus target) {
+            this.id = id;
+            this.action = action;
+            this.target = target;
+        }
+
+        // Le nombre d'échecs est toujours exact, seul le détail est plafonné
+        void fail(Long documentId, String reason) {
+            if (failed.incrementAndGet() <= MAX_REPORTED_FAILURES) {
+                failures.add(new BulkJobFailureDTO(documentId, reason));
+            }
+        }
+
+        BulkJobDTO toDTO() {
+            List<BulkJobFailureDTO> failureList;
+            synchronized (failures) {
+                failureList = List.copyOf(failures);
+            }
+            return BulkJobDTO.builder()
+                    .id(id)
+                    .action(action)
+                    .targetStatus(target)
+                    .state(state)
+                    .total(total.get())
+                    .processed(processed.get())
+                    .succeeded(succeeded.get())
+                    .skipped(skipped.get())
+                    .failed(failed.get())
+                    .failures(failureList)
+                    .error(error)
+                    .createdAt(createdAt)
+                    .finishedAt(finishedAt)
+                    .build();
+        }
+    }
+}
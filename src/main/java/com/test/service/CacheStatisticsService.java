@@ -0,0 +1,79 @@
+package com.test.service;
+
+import com.test.payload.CacheRegionStatisticsDTO;
+import com.test.payload.CacheStatisticsDTO;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Taux de succès du cache de second niveau Hibernate (plans, dossiers, contenus)
+ * et du cache des requêtes, à partir des statistiques de la SessionFactory.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class CacheStatisticsService {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+
+    public CacheStatisticsDTO getStatistics() {
+        Statistics statistics = statistics();
+
+        List<CacheRegionStatisticsDTO> regions = Arrays.stream(statistics.getSecondLevelCacheRegionNames())
+                .sorted()
+                .map(name -> toRegionDTO(name, statistics.getCacheRegionStatistics(name)))
+                .toList();
+
+        return CacheStatisticsDTO.builder()
+                .statisticsEnabled(statistics.isStatisticsEnabled())
+                .secondLevelHits(statistics.getSecondLevelCacheHitCount())
+                .secondLevelMisses(statistics.getSecondLevelCacheMissCount())
+                .secondLevelPuts(statistics.getSecondLevelCachePutCount())
+                .secondLevelHitRatio(ratio(statistics.getSecondLevelCacheHitCount(), statistics.getSecondLevelCacheMissCount()))
+                .queryHits(statistics.getQueryCacheHitCount())
+                .queryMisses(statistics.getQueryCacheMissCount())
+                .queryPuts(statistics.getQueryCachePutCount())
+                .queryHitRatio(ratio(statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount()))
+                .preparedStatements(statistics.getPrepareStatementCount())
+                .regions(regions)
+                .build();
+    }
+
+    // Remise à zéro des compteurs, pour mesurer une période donnée
+    public void reset() {
+        statistics().clear();
+        log.info("Statistiques du cache de second niveau remises à zéro");
+    }
+
+
+    private Statistics statistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    private static CacheRegionStatisticsDTO toRegionDTO(String region, CacheRegionStatistics statistics) {
+        if (statistics == null) {
+            return CacheRegionStatisticsDTO.builder().region(region).build();
+        }
+        return CacheRegionStatisticsDTO.builder()
+                .region(region)
+                .hits(statistics.getHitCount())
+                .misses(statistics.getMissCount())
+                .puts(statistics.getPutCount())
+                .hitRatio(ratio(statistics.getHitCount(), statistics.getMissCount()))
+                .build();
+    }
+
+    private static Double ratio(long hits, long misses) {
+        long total = hits + misses;
+        return total == 0 ? null : (double) hits / total;
+    }
+}
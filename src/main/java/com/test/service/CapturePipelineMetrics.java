@@ -0,0 +1,85 @@
+package com.test.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Mesures de la chaîne de capture, exposées par /actuator/prometheus :
+ * durée de chaque étape (histogramme), échecs par motif, tailles des fichiers et dimensions des images.
+ */
+@Service
+public class CapturePipelineMetrics {
+
+    public static final String STAGE_VALIDATE = "validate";
+    public static final String STAGE_READ_IMAGE = "read_image";
+    public static final String STAGE_DECODE_QR = "decode_qr";
+    public static final String STAGE_CONTENT_LOOKUP = "content_lookup";
+    public static final String STAGE_STORE_FILE = "store_file";
+    public static final String STAGE_DB_INSERT = "db_insert";
+
+    public static final String FAILURE_EMPTY_FILE = "empty_file";
+    public static final String FAILURE_FILE_TYPE = "file_type";
+    public static final String FAILURE_FILE_TOO_LARGE = "file_too_large";
+    public static final String FAILURE_IMAGE_INVALID = "image_invalid";
+    public static final String FAILURE_QR_NOT_FOUND = "qr_not_found";
+    public static final String FAILURE_QR_INVALID = "qr_invalid";
+    public static final String FAILURE_CONTENT_UNKNOWN = "content_unknown";
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> stages = new ConcurrentHashMap<>();
+    private final Map<String, Counter> failures = new ConcurrentHashMap<>();
+    private final DistributionSummary uploadSize;
+    private final DistributionSummary imageWidth;
+    private final DistributionSummary imageHeight;
+
+    public CapturePipelineMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.uploadSize = DistributionSummary.builder("capture.upload.size")
+                .description("Taille des fichiers reçus")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.imageWidth = DistributionSummary.builder("capture.image.width")
+                .description("Largeur des images décodées")
+                .baseUnit("pixels")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.imageHeight = DistributionSummary.builder("capture.image.height")
+                .description("Hauteur des images décodées")
+                .baseUnit("pixels")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+
+    // Minuteur d'une étape, créé une seule fois par nom
+    public Timer stage(String stage) {
+        return stages.computeIfAbsent(stage, name -> Timer.builder("capture.stage")
+                .description("Durée des étapes de la chaîne de capture")
+                .tag("stage", name)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    public void failure(String reason) {
+        failures.computeIfAbsent(reason, name -> Counter.builder("capture.failures")
+                .description("Captures refusées, par motif")
+                .tag("reason", name)
+                .register(registry)).increment();
+    }
+
+    public void recordUpload(long size) {
+        uploadSize.record(size);
+    }
+
+    public void recordImage(int width, int height) {
+        imageWidth.record(width);
+        imageHeight.record(height);
+    }
+}
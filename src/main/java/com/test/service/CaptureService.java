@@ -1,27 +1,20 @@
 package com.test.service;
 
-import com.google.zxing.*;
-import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
-import com.google.zxing.common.HybridBinarizer;
 import com.test.enums.FileType;
 import com.test.model.Document;
 import com.test.model.FolderContent;
 import com.test.model.Piece;
 import com.test.repository.FolderContentRepo;
-import com.test.repository.PieceRepo;
+import com.test.storage.StorageBackend;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.List;
 import java.util.UUID;
 
@@ -30,9 +23,18 @@ import java.util.UUID;
 @Service
 public class CaptureService {
 
-    public static final long MAX_FILE_SIZE = 10_000_000;
-    private final PieceRepo pieceRepo;
+    public static final List<String> ACCEPTED_TYPES =
+            List.of("image/png", "image/jpeg", "image/jpg", "image/webp", "application/pdf");
+
     private final FolderContentRepo contentRepo;
+    private final DecodeAdmissionService decodeAdmission;
+    private final CapturePipelineMetrics metrics;
+    private final QrCodeDecoder decoder;
+    private final StorageBackend storage;
+
+    // Envoi en une requête ; les envois reprenables ont leur propre limite
+    @Value("${project.upload.max-file-size:10MB}")
+    private DataSize maxFileSize;
 
     @Value("${project.document}")
     private String storagePath;
@@ -41,18 +43,25 @@ public class CaptureService {
     private String baseUrl;
 
     public Piece processUploadedFile(MultipartFile file, Document document) throws Exception {
+        return processUploadedFile(file, document, maxFileSize.toBytes());
+    }
+
+    public Piece processUploadedFile(MultipartFile file, Document document, long maxSize) throws Exception {
         log.info("Debut du processus d'upload du fichier {}", file.getOriginalFilename());
 
         // Valider le fichier reçu
-        validateFile(file);
+        metrics.stage(CapturePipelineMetrics.STAGE_VALIDATE).record(() -> validateFile(file, maxSize));
+        metrics.recordUpload(file.getSize());
         log.info("Validation du fichier reussi");
 
-        // Lire l'image récupérée
-        BufferedImage bufferedImage = readImage(file);
-        log.info("Lecture de l'image");
-
-        // Lire le QR Code depuis l'image
-        String qrContent = decodeQrCode(bufferedImage);
+        // Lire l'image récupérée puis le QR Code, sous contrôle d'admission : étapes coûteuses en CPU
+        String qrContent = decodeAdmission.call(() -> {
+            BufferedImage bufferedImage = metrics.stage(CapturePipelineMetrics.STAGE_READ_IMAGE)
+                    .recordCallable(() -> readImage(file));
+            log.info("Lecture de l'image");
+            return metrics.stage(CapturePipelineMetrics.STAGE_DECODE_QR)
+                    .recordCallable(() -> decodeQrCode(bufferedImage));
+        });
         log.info("Lecture du QR Code sur l'image");
 
         // Extraire l'ID du contenu depuis le QR Code
@@ -61,8 +70,12 @@ public class CaptureService {
         log.info("Extraction du contenu du QR Code sur l'image");
 
         // Identifier le type de contenu
-        FolderContent content = contentRepo.findById(contentId)
-                .orElseThrow(() -> new RuntimeException("Type de document inconnu pour l'ID: " + contentId));
+        FolderContent content = metrics.stage(CapturePipelineMetrics.STAGE_CONTENT_LOOKUP)
+                .record(() -> contentRepo.findById(contentId))
+                .orElseThrow(() -> {
+                    metrics.failure(CapturePipelineMetrics.FAILURE_CONTENT_UNKNOWN);
+                    return new RuntimeException("Type de document inconnu pour l'ID: " + contentId);
+                });
         log.info("Identification du type de contenu");
 
         // Génération du nom de fichier sûr
@@ -70,7 +83,10 @@ public class CaptureService {
         log.info("Generation du nom du fichier");
 
         // Stockage du fichier
-        storeFile(file, safeFilename);
+        metrics.stage(CapturePipelineMetrics.STAGE_STORE_FILE).recordCallable(() -> {
+            storeFile(file, safeFilename);
+            return null;
+        });
         log.info("Sauvegarde du fichier");
 
         // Déterminer le type de fichier
@@ -88,8 +104,9 @@ public class CaptureService {
                 .fileType(fileType)
                 .build();
 
-        log.info("Creation et sauvergarde de la piece");
-        return this.pieceRepo.save(piece);
+        // La sauvegarde est faite par l'appelant, dans la même transaction que la mise à jour du document
+        log.info("Creation de la piece");
+        return piece;
     }
 
 
@@ -99,61 +116,52 @@ public class CaptureService {
      * Verification de fichier non reconnu par le systeme.
      * Verification de taille de fichier superieure a la tailla maximale acceptee.
      */
-    private void validateFile(MultipartFile file) {
+    private void validateFile(MultipartFile file, long maxSize) {
         if (file.isEmpty()) {
+            metrics.failure(CapturePipelineMetrics.FAILURE_EMPTY_FILE);
             throw new IllegalArgumentException("Fichier vide");
         }
 
         String contentType = file.getContentType();
-        if (contentType == null || !List.of("image/png", "image/jpeg", "image/jpg", "image/webp", "application/pdf")
-                .contains(contentType)) {
+        if (contentType == null || !ACCEPTED_TYPES.contains(contentType)) {
+            metrics.failure(CapturePipelineMetrics.FAILURE_FILE_TYPE);
             throw new IllegalArgumentException("Type de fichier non autorisé: " + contentType);
         }
 
-        if (file.getSize() > MAX_FILE_SIZE) {
-            throw new IllegalArgumentException("Fichier trop volumineux (max 10MB)");
+        if (file.getSize() > maxSize) {
+            metrics.failure(CapturePipelineMetrics.FAILURE_FILE_TOO_LARGE);
+            throw new IllegalArgumentException("Fichier trop volumineux (max " + DataSize.ofBytes(maxSize).toMegabytes() + "MB)");
         }
     }
 
     private BufferedImage readImage(MultipartFile file) throws Exception {
         try (InputStream is = file.getInputStream()) {
-            BufferedImage image = ImageIO.read(is);
+            BufferedImage image = decoder.readImage(is);
             if (image == null) {
+                metrics.failure(CapturePipelineMetrics.FAILURE_IMAGE_INVALID);
                 throw new IllegalArgumentException("Fichier image invalide ou corrompu");
             }
+            metrics.recordImage(image.getWidth(), image.getHeight());
             return image;
         }
     }
 
-    private String decodeQrCode(BufferedImage image) throws Exception {
-        LuminanceSource source = new BufferedImageLuminanceSource(image);
-        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source));
-
-        Result result;
-        try {
-            result = new MultiFormatReader().decode(bitmap);
-        } catch (NotFoundException e) {
+    private String decodeQrCode(BufferedImage image) {
+        String text = decoder.decode(image);
+        if (text == null) {
+            metrics.failure(CapturePipelineMetrics.FAILURE_QR_NOT_FOUND);
             throw new IllegalArgumentException("QR Code introuvable sur l'image. Assurez-vous que l'étiquette est visible.");
         }
-
-        return result.getText();
+        return text;
     }
 
-    /**
-     * Extrait l'ID du contenu depuis le QR Code
-     * Format attendu : "CONTENT:123" ou juste "123"
-     */
     private Long extractContentId(String qrContent) {
-        try {
-            // Si le format est "CONTENT:123"
-            if (qrContent.startsWith("CONTENT:")) {
-                return Long.parseLong(qrContent.substring(8));
-            }
-            // Sinon, tenter de parser directement
-            return Long.parseLong(qrContent);
-        } catch (NumberFormatException e) {
+        Long contentId = decoder.extractContentId(qrContent);
+        if (contentId == null) {
+            metrics.failure(CapturePipelineMetrics.FAILURE_QR_INVALID);
             throw new IllegalArgumentException("QR Code invalide. Format attendu: 'CONTENT:{id}' ou '{id}'");
         }
+        return contentId;
     }
 
     private FileType determineFileType(String contentType) {
@@ -183,18 +191,13 @@ public class CaptureService {
     }
 
     private void storeFile(MultipartFile file, String filename) throws Exception {
-        Path targetDir = Paths.get(storagePath).toAbsolutePath().normalize();
-        Files.createDirectories(targetDir);
-
-        Path targetFile = targetDir.resolve(filename).normalize();
-
-        // Sécurité : Vérifier que le fichier est bien dans le répertoire cible
-        if (!targetFile.startsWith(targetDir)) {
-            throw new SecurityException("Tentative de path traversal détectée");
+        // Un fichier déjà sur disque (envoi reprenable) est déplacé plutôt que recopié
+        if (file instanceof StagedMultipartFile staged) {
+            storage.put(filename, staged.getFile(), file.getContentType());
+            return;
         }
-
-        try (InputStream inputStream = file.getInputStream()) {
-            Files.copy(inputStream, targetFile, StandardCopyOption.REPLACE_EXISTING);
+        try (InputStream is = file.getInputStream()) {
+            storage.put(filename, is, file.getContentType());
         }
     }
 
@@ -4,9 +4,11 @@ import com.test.model.ClassificationPlan;
 import com.test.model.Folder;
 import com.test.model.FolderContent;
 import com.test.payload.ClassificationPlanDTO;
+import com.test.payload.ClassificationPlanResponseDTO;
 import com.test.payload.FolderContentDTO;
 import com.test.payload.FolderDTO;
 import com.test.payload.FolderNodeDTO;
+import com.test.payload.FolderResponseDTO;
 import com.test.repository.ClassificationRepo;
 import com.test.repository.FolderContentRepo;
 import com.test.repository.FolderRepo;
@@ -29,11 +31,12 @@ public class ClassificationService {
     private final FolderRepo folderRepo;
     private final FolderContentRepo  folderContentRepo;
     private final QRCodeService qrCodeService;
+    private final DocumentCompletenessService completenessService;
 
 
     // ============== GESTION DES PLANS ==============
     // Methode de creation des plans
-    public ClassificationPlan createPlan(ClassificationPlanDTO classificationPlanDTO) {
+    public ClassificationPlanResponseDTO createPlan(ClassificationPlanDTO classificationPlanDTO) {
         log.info("Debut de la creation du plan {}", classificationPlanDTO);
 
         // Vérifier si un plan avec ce nom existe déjà
@@ -45,34 +48,36 @@ public class ClassificationService {
         ClassificationPlan classificationPlan = ClassificationPlan.builder()
                 .name(classificationPlanDTO.getName())
                 .description(classificationPlanDTO.getDescription())
+                .archivalProfile(classificationPlanDTO.getArchivalProfile())
                 .active(true)
                 .build();
 
         log.info("Sauvegarde et fin de la creation du plan {}", classificationPlan);
-        return  classificationRepo.save(classificationPlan);
+        return toPlanDTO(classificationRepo.save(classificationPlan));
     }
 
     // Methode de recuperation de tous les plans
-    public List<ClassificationPlan> getAllPlans() {
-        return classificationRepo.findAll();
+    public List<ClassificationPlanResponseDTO> getAllPlans() {
+        return classificationRepo.findAll().stream()
+                .map(this::toPlanDTO)
+                .collect(Collectors.toList());
     }
 
     // Methode de recuperation d'un plan par identifiant
-    public ClassificationPlan getPlanById(Long id) {
-        return classificationRepo.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException("Plan de classification non trouvé"));
+    public ClassificationPlanResponseDTO getPlanById(Long id) {
+        return toPlanDTO(findPlan(id));
     }
 
     // Methode de suppression d'un plan par identifiant
     public void deletePlan(Long id) {
-        ClassificationPlan plan = getPlanById(id);
+        ClassificationPlan plan = findPlan(id);
         classificationRepo.delete(plan);
     }
 
 
     // ============== GESTION DES DOSSIERS (Elements constitutifs) ==============
     // Methode de creation d'un contenu
-    public FolderContent createContent(FolderContentDTO folderContentDTO) {
+    public FolderContentDTO createContent(FolderContentDTO folderContentDTO) {
         log.info("Debut de la creation du contenu {}", folderContentDTO);
 
         // Vérifier si un folderContent avec ce nom existe déjà
@@ -85,6 +90,7 @@ public class ClassificationService {
                 .name(folderContentDTO.getName())
                 .description(folderContentDTO.getDescription())
                 .required(folderContentDTO.isRequired())
+                .archivalProfile(folderContentDTO.getArchivalProfile())
                 .build();
 
         // Sauvegarder d'abord pour obtenir l'ID
@@ -95,37 +101,49 @@ public class ClassificationService {
         // On ne peut pas le stocker comme byte[], donc on stocke juste l'identifiant
         folderContent.setQrCode("CONTENT:" + folderContent.getId());
 
-        return  folderContentRepo.save(folderContent);
+        return toContentDTO(folderContentRepo.save(folderContent));
     }
 
-    public FolderContent getContentById(Long id) {
-        return folderContentRepo.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException("Contenu non trouvé"));
+    public FolderContentDTO getContentById(Long id) {
+        return toContentDTO(findContent(id));
     }
 
-    public FolderContent updateContent(Long id, FolderContentDTO dto) {
-        FolderContent content = getContentById(id);
+    public FolderContentDTO updateContent(Long id, FolderContentDTO dto) {
+        FolderContent content = findContent(id);
+        boolean requiredChanged = content.isRequired() != dto.isRequired();
         content.setName(dto.getName());
         content.setDescription(dto.getDescription());
         content.setRequired(dto.isRequired());
-        return folderContentRepo.save(content);
+        content.setArchivalProfile(dto.getArchivalProfile());
+        FolderContent saved = folderContentRepo.saveAndFlush(content);
+
+        // Le caractère obligatoire a changé : la complétude des documents concernés doit suivre
+        if (requiredChanged) {
+            completenessService.recomputeForContent(id);
+        }
+        return toContentDTO(saved);
     }
 
     public void deleteContent(Long id) {
-        FolderContent content = getContentById(id);
+        FolderContent content = findContent(id);
+        List<Long> folderIds = folderContentRepo.findFolderIdsByContentId(id);
         folderContentRepo.delete(content);
+        folderContentRepo.flush();
+        folderIds.forEach(completenessService::recomputeForFolder);
     }
 
-    public List<FolderContent> getFolderContents(Long folderId) {
-        Folder folder = getFolderById(folderId);
-        return folder.getContents();
+    public List<FolderContentDTO> getFolderContents(Long folderId) {
+        Folder folder = findFolder(folderId);
+        return folder.getContents().stream()
+                .map(this::toContentDTO)
+                .collect(Collectors.toList());
     }
 
 
 
     // ============== GESTION DES DOSSIERS ==============
 
-    public Folder createFolder(FolderDTO folderDTO) {
+    public FolderResponseDTO createFolder(FolderDTO folderDTO) {
         log.info("Debut de la creation du dossier {}", folderDTO);
 
         // Vérifier si un folder avec ce nom existe déjà
@@ -160,24 +178,23 @@ public class ClassificationService {
         }
 
         log.info("Fin et sauvegarde du dossier {}", folder);
-        return  folderRepo.save(folder);
+        return toFolderDTO(folderRepo.save(folder));
     }
 
 
-    public Folder getFolderById(Long id) {
-        return folderRepo.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException("Dossier non trouvé"));
+    public FolderResponseDTO getFolderById(Long id) {
+        return toFolderDTO(findFolder(id));
     }
 
-    public Folder updateFolder(Long id, FolderDTO dto) {
-        Folder folder = getFolderById(id);
+    public FolderResponseDTO updateFolder(Long id, FolderDTO dto) {
+        Folder folder = findFolder(id);
         folder.setName(dto.getName());
         folder.setDescription(dto.getDescription());
-        return folderRepo.save(folder);
+        return toFolderDTO(folderRepo.save(folder));
     }
 
     public void deleteFolder(Long id) {
-        Folder folder = getFolderById(id);
+        Folder folder = findFolder(id);
         folderRepo.delete(folder);
     }
 
@@ -203,14 +220,20 @@ public class ClassificationService {
         folder.getContents().add(content);
 
         log.info("Fin et sauvegarde de la liaison du contenu à un dossier");
-        folderRepo.save(folder);
+        folderRepo.saveAndFlush(folder);
+        if (content.isRequired()) {
+            completenessService.recomputeForFolder(folderId);
+        }
     }
 
     public void unlinkContentFromFolder(Long folderId, Long contentId) {
-        Folder folder = getFolderById(folderId);
-        FolderContent content = getContentById(contentId);
+        Folder folder = findFolder(folderId);
+        FolderContent content = findContent(contentId);
         folder.getContents().remove(content);
-        folderRepo.save(folder);
+        folderRepo.saveAndFlush(folder);
+        if (content.isRequired()) {
+            completenessService.recomputeForFolder(folderId);
+        }
     }
 
 
@@ -234,13 +257,7 @@ public class ClassificationService {
                 .name(folder.getName())
                 .description(folder.getDescription())
                 .contents(folder.getContents().stream()
-                        .map(c -> FolderContentDTO.builder()
-                                .id(c.getId())
-                                .name(c.getName())
-                                .description(c.getDescription())
-                                .required(c.isRequired())
-                                .qrCode(c.getQrCode())
-                                .build())
+                        .map(this::toContentDTO)
                         .collect(Collectors.toList()))
                 // Appel récursif pour les sous-dossiers
                 .children(folder.getSubFolders().stream()
@@ -248,4 +265,64 @@ public class ClassificationService {
                         .collect(Collectors.toList()))
                 .build();
     }
+
+
+    // ============== LECTURE DES ENTITÉS ==============
+
+    private ClassificationPlan findPlan(Long id) {
+        return classificationRepo.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException("Plan de classification non trouvé"));
+    }
+
+    private Folder findFolder(Long id) {
+        return folderRepo.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException("Dossier non trouvé"));
+    }
+
+    private FolderContent findContent(Long id) {
+        return folderContentRepo.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException("Contenu non trouvé"));
+    }
+
+
+    // ============== CONVERSION EN DTO ==============
+    // Les réponses ne portent jamais les collections paresseuses (dossiers d'un plan, pièces d'un contenu)
+
+    private ClassificationPlanResponseDTO toPlanDTO(ClassificationPlan plan) {
+        return ClassificationPlanResponseDTO.builder()
+                .id(plan.getId())
+                .name(plan.getName())
+                .description(plan.getDescription())
+                .active(plan.isActive())
+                .archivalProfile(plan.getArchivalProfile())
+                .createdAt(plan.getCreatedAt())
+                .updatedAt(plan.getUpdatedAt())
+                .build();
+    }
+
+    private FolderResponseDTO toFolderDTO(Folder folder) {
+        return FolderResponseDTO.builder()
+                .id(folder.getId())
+                .name(folder.getName())
+                .description(folder.getDescription())
+                .planId(folder.getPlan() != null ? folder.getPlan().getId() : null)
+                .parentFolderId(folder.getParentFolder() != null ? folder.getParentFolder().getId() : null)
+                .contents(folder.getContents() == null ? List.of() : folder.getContents().stream()
+                        .map(this::toContentDTO)
+                        .collect(Collectors.toList()))
+                .createdAt(folder.getCreatedAt())
+                .updatedAt(folder.getUpdatedAt())
+                .build();
+    }
+
+    private FolderContentDTO toContentDTO(FolderContent content) {
+        return FolderContentDTO.builder()
+                .id(content.getId())
+                .name(content.getName())
+                .description(content.getDescription())
+                .required(content.isRequired())
+                .qrCode(content.getQrCode())
+                .archivalProfile(content.getArchivalProfile())
+                .build();
+    }
 }
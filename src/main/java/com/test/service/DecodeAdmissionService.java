@@ -0,0 +1,133 @@
+package com.test.service;
+
+import com.test.exception.OverloadedException;
+import com.test.payload.DecodeLoadDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Contrôle d'admission des étapes coûteuses en CPU (décodage des images, lecture des QR codes).
+ * Au plus un décodage par cœur ; les requêtes suivantes attendent dans une file bornée, au-delà elles sont
+ * refusées immédiatement (429), comme celles dont l'attente dépasse le délai maximal.
+ * Les threads du serveur restent ainsi disponibles pour les requêtes légères.
+ */
+@Slf4j
+@Service
+public class DecodeAdmissionService {
+
+    private final int maxConcurrent;
+    private final int queueCapacity;
+    private final Duration maxWait;
+    private final Duration retryAfter;
+    private final Semaphore permits;
+
+    // Décodages en cours et en attente
+    private final AtomicInteger admitted = new AtomicInteger();
+
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final Timer waitTimer;
+    private final Counter rejectedCounter;
+
+    public DecodeAdmissionService(MeterRegistry registry,
+                                  @Value("${project.decode.max-concurrent:0}") int maxConcurrent,
+                                  @Value("${project.decode.queue-capacity:0}") int queueCapacity,
+                                  @Value("${project.decode.max-wait:PT5S}") Duration maxWait,
+                                  @Value("${project.decode.retry-after:PT2S}") Duration retryAfter) {
+        this.maxConcurrent = maxConcurrent > 0 ? maxConcurrent : Runtime.getRuntime().availableProcessors();
+        // Par défaut, deux vagues de décodage en attente au plus
+        this.queueCapacity = queueCapacity > 0 ? queueCapacity : this.maxConcurrent * 2;
+        this.maxWait = maxWait;
+        this.retryAfter = retryAfter;
+        // Équitable : les requêtes entrent dans l'ordre d'arrivée
+        this.permits = new Semaphore(this.maxConcurrent, true);
+        log.info("Décodage limité à {} traitement(s) simultané(s), {} en attente", this.maxConcurrent, this.queueCapacity);
+
+        Gauge.builder("capture.decode.active", this, DecodeAdmissionService::getActive)
+                .description("Décodages en cours")
+                .register(registry);
+        Gauge.builder("capture.decode.queued", this, DecodeAdmissionService::getQueued)
+                .description("Décodages en attente d'une place")
+                .register(registry);
+        this.waitTimer = Timer.builder("capture.decode.wait")
+                .description("Attente avant le décodage")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.rejectedCounter = Counter.builder("capture.decode.rejected")
+                .description("Décodages refusés faute de capacité")
+                .register(registry);
+    }
+
+
+    public <T> T call(Callable<T> task) throws Exception {
+        if (admitted.incrementAndGet() > maxConcurrent + queueCapacity) {
+            admitted.decrementAndGet();
+            throw reject("File de décodage pleine");
+        }
+        try {
+            long start = System.nanoTime();
+            if (!permits.tryAcquire(maxWait.toNanos(), TimeUnit.NANOSECONDS)) {
+                throw reject("Attente de décodage trop longue");
+            }
+            try {
+                long waited = System.nanoTime() - start;
+                waitNanos.addAndGet(waited);
+                maxWaitNanos.accumulateAndGet(waited, Math::max);
+                waitTimer.record(waited, TimeUnit.NANOSECONDS);
+                return task.call();
+            } finally {
+                permits.release();
+                completed.incrementAndGet();
+            }
+        } finally {
+            admitted.decrementAndGet();
+        }
+    }
+
+    private OverloadedException reject(String reason) {
+        long count = rejected.incrementAndGet();
+        rejectedCounter.increment();
+        // Un journal par centaine de refus : une rafale ne noie pas les journaux
+        if (count % 100 == 1) {
+            log.warn("Décodage refusé ({}): {} refus depuis le démarrage", reason, count);
+        }
+        return new OverloadedException("Serveur occupé, réessayez dans quelques secondes", retryAfter);
+    }
+
+
+    public int getActive() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    public int getQueued() {
+        return permits.getQueueLength();
+    }
+
+    public DecodeLoadDTO getLoad() {
+        long done = completed.get();
+        return DecodeLoadDTO.builder()
+                .maxConcurrent(maxConcurrent)
+                .queueCapacity(queueCapacity)
+                .active(getActive())
+                .queued(getQueued())
+                .completed(done)
+                .rejected(rejected.get())
+                .averageWaitMs(done == 0 ? 0 : waitNanos.get() / 1_000_000.0 / done)
+                .maxWaitMs(maxWaitNanos.get() / 1_000_000.0)
+                .build();
+    }
+}
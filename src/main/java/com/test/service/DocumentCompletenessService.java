@@ -0,0 +1,160 @@
+package com.test.service;
+
+import com.test.model.Document;
+import com.test.model.DocumentCompleteness;
+import com.test.model.FolderContent;
+import com.test.payload.DocumentCompletenessDTO;
+import com.test.repository.DocumentCompletenessRepo;
+import com.test.repository.DocumentRepo;
+import com.test.repository.FolderContentRepo;
+import com.test.repository.PieceRepo;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Maintient l'état de complétude des documents de façon incrémentale.
+ * Chaque ajout ou suppression de pièce met à jour une seule ligne par requête atomique,
+ * la validation et le suivi de la capture n'ont plus qu'à lire cette ligne.
+ */
+@Slf4j
+@Transactional
+@RequiredArgsConstructor
+@Service
+public class DocumentCompletenessService {
+
+    private final DocumentCompletenessRepo completenessRepo;
+    private final DocumentRepo documentRepo;
+    private final FolderContentRepo folderContentRepo;
+    private final PieceRepo pieceRepo;
+    private final DocumentSummaryService summaryService;
+
+
+    // Initialisation à la création du document : tous les contenus obligatoires manquent
+    public DocumentCompleteness initialize(Document document, Long folderId) {
+        List<Long> requiredIds = folderContentRepo.findRequiredContentIdsByFolderId(folderId);
+
+        DocumentCompleteness completeness = DocumentCompleteness.builder()
+                .documentId(document.getId())
+                .folderId(folderId)
+                .requiredContentIds(new ArrayList<>(requiredIds))
+                .missingContentIds(new ArrayList<>(requiredIds))
+                .requiredCount(requiredIds.size())
+                .capturedRequiredCount(0)
+                .build();
+
+        return completenessRepo.save(completeness);
+    }
+
+    public DocumentCompleteness getCompleteness(Long documentId) {
+        return completenessRepo.findByDocumentId(documentId)
+                .orElseGet(() -> rebuild(documentId));
+    }
+
+    public DocumentCompletenessDTO getCompletenessDTO(Long documentId) {
+        return toDTO(getCompleteness(documentId));
+    }
+
+    /**
+     * Verrouille la complétude du document avant un ajout ou une suppression de pièce : les modifications
+     * des pièces d'un même document se succèdent, et chaque vérification « plus aucune pièce pour ce contenu »
+     * voit les suppressions déjà validées.
+     */
+    public void lock(Long documentId) {
+        completenessRepo.lockByDocumentId(documentId);
+    }
+
+    public void onPieceAdded(Long documentId, Long contentId) {
+        if (completenessRepo.markCaptured(documentId, contentId) == 0) {
+            // Contenu facultatif, déjà couvert, ou document antérieur au suivi de complétude
+            completenessRepo.findByDocumentId(documentId)
+                    .orElseGet(() -> rebuild(documentId));
+        }
+    }
+
+    public void onPieceRemoved(Long documentId, Long contentId) {
+        completenessRepo.markMissing(documentId, contentId);
+    }
+
+    public void onDocumentDeleted(Long documentId) {
+        completenessRepo.deleteByDocumentId(documentId);
+    }
+
+    // Les contenus obligatoires d'un dossier ont changé : recalcul pour tous ses documents
+    public void recomputeForFolder(Long folderId) {
+        int updated = completenessRepo.recomputeForFolder(folderId);
+        summaryService.onFolderChanged(folderId);
+        log.info("Recalcul de la complétude de {} document(s) du dossier {}", updated, folderId);
+    }
+
+    public void recomputeForContent(Long contentId) {
+        folderContentRepo.findFolderIdsByContentId(contentId)
+                .forEach(this::recomputeForFolder);
+    }
+
+    /**
+     * Reconstruit l'état de complétude d'un document à partir des pièces existantes.
+     * Utilisé pour les documents créés avant la mise en place du suivi.
+     */
+    public DocumentCompleteness rebuild(Long documentId) {
+        Document document = documentRepo.findById(documentId)
+                .orElseThrow(() -> new EntityNotFoundException("Document non trouvé"));
+        Long folderId = resolveFolderId(document);
+
+        List<Long> requiredIds = folderContentRepo.findRequiredContentIdsByFolderId(folderId);
+        Set<Long> capturedIds = new HashSet<>(pieceRepo.findCapturedContentIds(documentId));
+
+        List<Long> missingIds = requiredIds.stream()
+                .filter(id -> !capturedIds.contains(id))
+                .collect(Collectors.toCollection(ArrayList::new));
+
+        DocumentCompleteness completeness = completenessRepo.findByDocumentId(documentId)
+                .orElseGet(() -> DocumentCompleteness.builder().documentId(documentId).build());
+        completeness.setFolderId(folderId);
+        completeness.setRequiredContentIds(new ArrayList<>(requiredIds));
+        completeness.setMissingContentIds(missingIds);
+        completeness.setRequiredCount(requiredIds.size());
+        completeness.setCapturedRequiredCount(requiredIds.size() - missingIds.size());
+
+        return completenessRepo.save(completeness);
+    }
+
+    // Noms des contenus manquants, chargés uniquement lorsque le document est incomplet
+    public List<String> getMissingContentNames(DocumentCompleteness completeness) {
+        if (completeness.isComplete()) {
+            return List.of();
+        }
+        return folderContentRepo.findAllById(completeness.getMissingContentIds()).stream()
+                .map(FolderContent::getName)
+                .collect(Collectors.toList());
+    }
+
+    private static Long resolveFolderId(Document document) {
+        // Récupérer l'ID du dossier depuis les métadonnées
+        Long folderId = document.getFolderId();
+        if (folderId == null) {
+            throw new IllegalStateException("L'ID du dossier est manquant dans les métadonnées");
+        }
+        return folderId;
+    }
+
+    private DocumentCompletenessDTO toDTO(DocumentCompleteness completeness) {
+        return DocumentCompletenessDTO.builder()
+                .documentId(completeness.getDocumentId())
+                .folderId(completeness.getFolderId())
+                .requiredCount(completeness.getRequiredCount())
+                .capturedRequiredCount(completeness.getCapturedRequiredCount())
+                .missingContentIds(completeness.getMissingContentIds())
+                .complete(completeness.isComplete())
+                .updatedAt(completeness.getUpdatedAt())
+                .build();
+    }
+}
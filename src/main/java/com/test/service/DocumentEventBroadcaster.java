@@ -0,0 +1,180 @@
+package com.test.service;
+
+import com.test.event.DocumentEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Diffusion Server-Sent Events des événements de document, par document et par dossier.
+ * Les connexions inactives ne retiennent aucun thread (requêtes asynchrones) ; chaque abonné
+ * possède sa file d'envoi vidée par un thread virtuel, un client lent ne bloque donc pas les autres.
+ */
+@Slf4j
+@Service
+public class DocumentEventBroadcaster {
+
+    private final Map<Long, Set<Subscriber>> documentSubscribers = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Subscriber>> folderSubscribers = new ConcurrentHashMap<>();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Value("${project.events.timeout:PT30M}")
+    private Duration timeout;
+
+    // Événements en attente par abonné ; au-delà, le client lent est déconnecté et se reconnecte
+    @Value("${project.events.queue-capacity:256}")
+    private int queueCapacity;
+
+
+    public SseEmitter subscribeToDocument(Long documentId) {
+        return subscribe(documentSubscribers, documentId);
+    }
+
+    public SseEmitter subscribeToFolder(Long folderId) {
+        return subscribe(folderSubscribers, folderId);
+    }
+
+    // Publication après validation de la transaction : les clients ne voient jamais un état annulé
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onDocumentEvent(DocumentEvent event) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("type", event.type());
+        data.put("documentId", event.documentId());
+        data.put("folderId", event.folderId());
+        data.put("occurredAt", event.occurredAt());
+        data.putAll(event.payload());
+
+        dispatch(documentSubscribers.get(event.documentId()), event, data);
+        if (event.folderId() != null) {
+            dispatch(folderSubscribers.get(event.folderId()), event, data);
+        }
+    }
+
+    // Commentaire SSE périodique : maintient les proxys ouverts et détecte les connexions mortes
+    @Scheduled(fixedDelayString = "${project.events.heartbeat:PT25S}")
+    public void heartbeat() {
+        documentSubscribers.values().forEach(subscribers -> subscribers.forEach(Subscriber::heartbeat));
+        folderSubscribers.values().forEach(subscribers -> subscribers.forEach(Subscriber::heartbeat));
+    }
+
+    public int getSubscriberCount() {
+        return documentSubscribers.values().stream().mapToInt(Set::size).sum()
+                + folderSubscribers.values().stream().mapToInt(Set::size).sum();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        documentSubscribers.values().forEach(subscribers -> subscribers.forEach(s -> s.emitter.complete()));
+        folderSubscribers.values().forEach(subscribers -> subscribers.forEach(s -> s.emitter.complete()));
+        senders.shutdown();
+    }
+
+
+    private SseEmitter subscribe(Map<Long, Set<Subscriber>> registry, Long key) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscriber subscriber = new Subscriber(emitter);
+
+        registry.compute(key, (k, set) -> {
+            Set<Subscriber> subscribers = set != null ? set : ConcurrentHashMap.<Subscriber>newKeySet();
+            subscribers.add(subscriber);
+            return subscribers;
+        });
+
+        Runnable remove = () -> registry.computeIfPresent(key, (k, set) -> {
+            set.remove(subscriber);
+            return set.isEmpty() ? null : set;
+        });
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(e -> remove.run());
+
+        return emitter;
+    }
+
+    private void dispatch(Set<Subscriber> subscribers, DocumentEvent event, Map<String, Object> data) {
+        if (subscribers == null) {
+            return;
+        }
+        // Un SseEventBuilder ne peut être envoyé qu'une fois : il est construit pour chaque abonné
+        Supplier<SseEmitter.SseEventBuilder> sse = () -> SseEmitter.event()
+                .name(event.type().name())
+                .data(data, MediaType.APPLICATION_JSON);
+        subscribers.forEach(subscriber -> subscriber.enqueue(sse));
+    }
+
+
+    private class Subscriber {
+        private final SseEmitter emitter;
+        private final Queue<Supplier<SseEmitter.SseEventBuilder>> queue = new ArrayBlockingQueue<>(queueCapacity);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean overflowed = new AtomicBoolean();
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void enqueue(Supplier<SseEmitter.SseEventBuilder> event) {
+            if (overflowed.get()) {
+                return;
+            }
+            if (!queue.offer(event)) {
+                overflow();
+                return;
+            }
+            if (draining.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        void heartbeat() {
+            enqueue(() -> SseEmitter.event().comment("ping"));
+        }
+
+        // File pleine : les événements suivants ne sont plus retenus. La connexion est fermée depuis un thread
+        // d'envoi, un envoi en cours vers un client bloqué ne retenant pas l'appelant
+        private void overflow() {
+            if (overflowed.compareAndSet(false, true)) {
+                log.warn("Abonné SSE trop lent, {} événement(s) en attente : déconnexion", queue.size());
+                queue.clear();
+                senders.execute(emitter::complete);
+            }
+        }
+
+        // Un seul thread vide la file à la fois : l'ordre des événements est conservé
+        private void drain() {
+            do {
+                Supplier<SseEmitter.SseEventBuilder> event;
+                while ((event = queue.poll()) != null) {
+                    try {
+                        emitter.send(event.get());
+                    } catch (IOException | IllegalStateException e) {
+                        log.debug("Abonné SSE déconnecté: {}", e.getMessage());
+                        queue.clear();
+                        emitter.completeWithError(e);
+                        return;
+                    }
+                }
+                draining.set(false);
+            } while (!queue.isEmpty() && draining.compareAndSet(false, true));
+        }
+    }
+}
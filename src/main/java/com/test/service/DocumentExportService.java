@@ -0,0 +1,210 @@
+package com.test.service;
+
+import com.test.model.Document;
+import com.test.repository.DocumentRepo;
+import com.test.storage.StorageBackend;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Export d'un document sous forme d'archive ZIP : une entrée par pièce, rangée dans un répertoire
+ * portant le nom du contenu, et un manifest.json décrivant le document et ses pièces.
+ * Les fichiers sont copiés tels quels (entrées STORED), sans passer par le tas pour le stockage local ;
+ * les objets d'un stockage distant sont copiés en flux.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class DocumentExportService {
+
+    private static final String PIECES_SQL = """
+            SELECT p.id, p.file_name, p.file_path, p.file_size, p.file_type, p.qr_code_data, p.created_at,
+                   fc.id AS content_id, fc.name AS content_name, fc.required
+            FROM pieces p
+            JOIN folder_contents fc ON fc.id = p.content_id
+            WHERE p.document_id = ?
+            ORDER BY fc.name, p.id
+            """;
+
+    private final DocumentRepo documentRepo;
+    private final JdbcTemplate jdbcTemplate;
+    private final StorageBackend storage;
+    private final JsonMapper jsonMapper;
+
+
+    /**
+     * Charge le document et ses pièces et vérifie la présence des fichiers,
+     * avant l'ouverture du flux afin de pouvoir répondre 404/409.
+     */
+    public DocumentExport prepareExport(Long documentId) {
+        Document document = documentRepo.findById(documentId)
+                .orElseThrow(() -> new EntityNotFoundException("Document non trouvé"));
+
+        DocumentExport export = new DocumentExport(document.getId(), document.getTitle(), document.getDescription(),
+                document.getStatus().name(), document.getMetadata(), document.getCreatedAt(), document.getUpdatedAt(),
+                findPieces(documentId));
+
+        for (ExportedPiece piece : export.pieces()) {
+            if (!readable(piece.key())) {
+                throw new IllegalStateException("Fichier manquant pour la pièce " + piece.id() + ": " + piece.fileName());
+            }
+        }
+        return export;
+    }
+
+    public void writeExport(DocumentExport export, OutputStream out) throws IOException {
+        StoredZipWriter zip = new StoredZipWriter(Channels.newChannel(out));
+        writeDocument(zip, "", export);
+        zip.finish();
+        out.flush();
+        log.info("Export du document {} terminé: {} pièce(s), {} octets", export.id(), export.pieces().size(), zip.getPosition());
+    }
+
+    public void writeDocument(StoredZipWriter zip, String prefix, DocumentExport export) throws IOException {
+        writeDocument(zip, prefix, export, Map.of());
+    }
+
+    // Ajoute les pièces puis le manifeste du document sous le préfixe donné ; crcs : CRC déjà calculés par pièce
+    public void writeDocument(StoredZipWriter zip, String prefix, DocumentExport export,
+                              Map<Long, Long> crcs) throws IOException {
+        List<Map<String, Object>> pieces = new ArrayList<>();
+        for (ExportedPiece piece : export.pieces()) {
+            String entryName = prefix + entryName(piece.contentName()) + "/" + entryName(piece.fileName());
+            long crc = addPiece(zip, entryName, piece.key(), crcs.getOrDefault(piece.id(), -1L));
+            pieces.add(manifestEntry(piece, entryName, crc));
+        }
+        zip.addBytes(prefix + "manifest.json", jsonMapper.writerWithDefaultPrettyPrinter()
+                .writeValueAsBytes(manifest(export, pieces)));
+    }
+
+    public List<ExportedPiece> findPieces(Long documentId) {
+        return jdbcTemplate.query(PIECES_SQL, (rs, rowNum) -> new ExportedPiece(
+                rs.getLong("id"),
+                rs.getString("file_name"),
+                StorageBackend.keyOf(rs.getString("file_path")),
+                rs.getLong("file_size"),
+                rs.getString("file_type"),
+                rs.getString("qr_code_data"),
+                toLocalDateTime(rs.getTimestamp("created_at")),
+                rs.getLong("content_id"),
+                rs.getString("content_name"),
+                rs.getBoolean("required")), documentId);
+    }
+
+    /**
+     * Fichier local écrit dans l'archive par FileChannel.transferTo, tranche projetée en mémoire d'un fichier
+     * groupé, ou objet distant lu en flux : taille et CRC d'abord (ce dernier par une première lecture, sauf
+     * s'il est déjà calculé), puis le contenu relu à la suite de l'en-tête.
+     */
+    public long addPiece(StoredZipWriter zip, String entryName, String key, long knownCrc) throws IOException {
+        Optional<Path> file = storage.localPath(key);
+        if (file.isPresent()) {
+            return zip.addFile(entryName, file.get(), knownCrc);
+        }
+        Optional<ByteBuffer> mapped = storage.mapped(key);
+        if (mapped.isPresent()) {
+            return zip.addBuffer(entryName, mapped.get(), knownCrc);
+        }
+        long size = storage.stat(key).orElseThrow(() -> new NoSuchFileException(key)).size();
+        long crc = knownCrc >= 0 ? knownCrc : crc32(key);
+        try (InputStream in = storage.get(key)) {
+            return zip.addStream(entryName, in, size, crc);
+        }
+    }
+
+    public long crc32(String key) throws IOException {
+        Optional<Path> file = storage.localPath(key);
+        if (file.isPresent()) {
+            return StoredZipWriter.crc32(file.get());
+        }
+        Optional<ByteBuffer> mapped = storage.mapped(key);
+        if (mapped.isPresent()) {
+            return StoredZipWriter.crc32(mapped.get());
+        }
+        try (InputStream in = storage.get(key)) {
+            return StoredZipWriter.crc32(in);
+        }
+    }
+
+    private boolean readable(String key) {
+        try {
+            Optional<Path> file = storage.localPath(key);
+            return file.isPresent() ? Files.isReadable(file.get()) : storage.exists(key);
+        } catch (IOException e) {
+            log.warn("Fichier illisible {}: {}", key, e.getMessage());
+            return false;
+        }
+    }
+
+    // Les séparateurs et caractères de contrôle sont neutralisés dans les noms d'entrées
+    public static String entryName(String value) {
+        String name = value == null || value.isBlank() ? "sans-nom" : value.trim();
+        return name.replaceAll("[\\\\/:*?\"<>|\\p{Cntrl}]", "_");
+    }
+
+
+    private Map<String, Object> manifest(DocumentExport export, List<Map<String, Object>> pieces) {
+        Map<String, Object> manifest = new LinkedHashMap<>();
+        manifest.put("documentId", export.id());
+        manifest.put("title", export.title());
+        manifest.put("description", export.description());
+        manifest.put("status", export.status());
+        manifest.put("metadata", export.metadata());
+        manifest.put("createdAt", export.createdAt());
+        manifest.put("updatedAt", export.updatedAt());
+        manifest.put("exportedAt", LocalDateTime.now());
+        manifest.put("pieces", pieces);
+        return manifest;
+    }
+
+    private Map<String, Object> manifestEntry(ExportedPiece piece, String entryName, long crc) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("id", piece.id());
+        entry.put("fileName", piece.fileName());
+        entry.put("path", entryName);
+        entry.put("fileSize", piece.fileSize());
+        entry.put("fileType", piece.fileType());
+        entry.put("crc32", String.format("%08x", crc));
+        entry.put("qrCodeData", piece.qrCodeData());
+        entry.put("contentId", piece.contentId());
+        entry.put("contentName", piece.contentName());
+        entry.put("required", piece.required());
+        entry.put("createdAt", piece.createdAt());
+        return entry;
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+
+
+    public record DocumentExport(Long id, String title, String description, String status,
+                                 Map<String, Object> metadata, LocalDateTime createdAt, LocalDateTime updatedAt,
+                                 List<ExportedPiece> pieces) {
+    }
+
+    public record ExportedPiece(Long id, String fileName, String key, long fileSize, String fileType,
+                                String qrCodeData, LocalDateTime createdAt,
+                                Long contentId, String contentName, boolean required) {
+    }
+}
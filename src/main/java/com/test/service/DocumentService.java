@@ -1,24 +1,28 @@
 package com.test.service;
 
+import com.test.enums.DocumentEventType;
 import com.test.enums.DocumentStatus;
+import com.test.event.DocumentEvent;
 import com.test.model.Document;
+import com.test.model.DocumentCompleteness;
 import com.test.model.Folder;
-import com.test.model.FolderContent;
 import com.test.model.Piece;
 import com.test.payload.*;
 import com.test.repository.DocumentRepo;
-import com.test.repository.FolderContentRepo;
 import com.test.repository.FolderRepo;
 import com.test.repository.PieceRepo;
+import io.micrometer.core.instrument.Timer;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Slf4j
 @RequiredArgsConstructor
@@ -28,11 +32,20 @@ public class DocumentService {
     private final DocumentRepo documentRepo;
     private final CaptureService captureService;
     private final FolderRepo folderRepo;
-    private final FolderContentRepo folderContentRepo;
     private final PieceRepo pieceRepo;
-
-
-    public Document createDocument(DocumentCreateDTO payload) {
+    private final DocumentCompletenessService completenessService;
+    private final DocumentStatisticsService statisticsService;
+    private final IngestionMetricsService ingestionMetricsService;
+    private final FilePurgeService filePurgeService;
+    private final DocumentSummaryService summaryService;
+    private final FileMetadataService fileMetadataService;
+    private final ArchivalService archivalService;
+    private final CapturePipelineMetrics captureMetrics;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+
+    public DocumentDetailDTO createDocument(DocumentCreateDTO payload) {
         log.info("Debut de la creation du document {}", payload);
 
         // Valider que le dossier existe
@@ -64,11 +77,23 @@ public class DocumentService {
                 .build();
 
         log.info("Sauvegarde et fin de la creation du document");
-        return this.documentRepo.save(document);
+        Document created = transactionTemplate.execute(status -> {
+            Document saved = this.documentRepo.save(document);
+            completenessService.initialize(saved, folder.getId());
+            statisticsService.recordDocumentCreated(saved);
+            publish(DocumentEventType.DOCUMENT_CREATED, saved, Map.of("title", saved.getTitle()));
+            return saved;
+        });
+        return toDetailDTO(created, List.of());
     }
 
 
     public Piece uploadAndClassifyPiece(Long documentId, MultipartFile file) throws Exception {
+        return uploadAndClassifyPiece(documentId, file, null);
+    }
+
+    // maxSize : limite de taille propre à l'envoi reprenable ; null pour la limite des envois en une requête
+    public Piece uploadAndClassifyPiece(Long documentId, MultipartFile file, Long maxSize) throws Exception {
         log.info("Debut de l'upload et de la classification des pieces");
 
         // Verifier si le document existe
@@ -84,16 +109,51 @@ public class DocumentService {
 
         // Appeler le service pour traiter le QR Code et enregistrer le fichier
         log.info("Traitement du QR code et de la sauvegarde des pieces");
-        Piece piece = this.captureService.processUploadedFile(file, document);
+        Piece piece = maxSize == null
+                ? this.captureService.processUploadedFile(file, document)
+                : this.captureService.processUploadedFile(file, document, maxSize);
+
+        // Sauvegarde de la pièce, mise à jour de la complétude et du statut dans une même transaction
+        Timer.Sample insert = Timer.start();
+        Piece saved = transactionTemplate.execute(status -> {
+            completenessService.lock(documentId);
+            // Document validé depuis la vérification ci-dessus : la validation verrouille la même ligne de
+            // complétude, le statut relu après ce verrou ne change plus. Le fichier déjà stocké est laissé
+            // au rapprochement des fichiers orphelins.
+            if (documentRepo.findStatusById(documentId).orElse(null) == DocumentStatus.VALIDE) {
+                throw new IllegalStateException("Impossible d'ajouter des pièces à un document validé");
+            }
+            piece.setArchivalProfile(archivalService.profileFor(piece.getContent(), document.getFolderId(),
+                    piece.getFileType()));
+            Piece savedPiece = pieceRepo.save(piece);
+            completenessService.onPieceAdded(documentId, savedPiece.getContent().getId());
+            statisticsService.recordPieces(document, 1);
+            publish(DocumentEventType.PIECE_ADDED, document, Map.of(
+                    "pieceId", savedPiece.getId(),
+                    "contentId", savedPiece.getContent().getId(),
+                    "contentName", savedPiece.getContent().getName(),
+                    "fileSize", savedPiece.getFileSize()));
+            publishCompleteness(document);
+
+            // Mettre le document en cours ; sans effet si un autre upload l'a déjà fait
+            if (document.getStatus() == DocumentStatus.BROUILLON) {
+                transitionStatus(documentId, document.getFolderId(), DocumentStatus.BROUILLON, DocumentStatus.EN_COURS);
+            }
+            return savedPiece;
+        });
+        insert.stop(captureMetrics.stage(CapturePipelineMetrics.STAGE_DB_INSERT));
+        log.info("Modification du status des documents et fin du processus");
 
-        // Mettre le document en cours
-        if (document.getStatus() == DocumentStatus.BROUILLON) {
-            document.setStatus(DocumentStatus.EN_COURS);
-            documentRepo.save(document);
+        fileMetadataService.register(saved);
+        // Recompression d'archivage en arrière-plan, une fois la pièce visible des autres transactions
+        if (saved.getArchivalProfile() != null) {
+            archivalService.submit(saved.getId());
         }
-        log.info("Modification du status des documents et fin du processus");
 
-        return piece;
+        ingestionMetricsService.recordPiece(document.getFolderId(),
+                saved.getContent().getId(), saved.getFileSize(), saved.getCreatedAt());
+
+        return saved;
     }
 
 
@@ -104,48 +164,42 @@ public class DocumentService {
 
 
     /**
-     * Valider un document en vérifiant que toutes les pièces obligatoires sont présentes
+     * Détail d'un document en deux requêtes : la ligne du document, puis la projection
+     * des pièces jointes à leur contenu, quel que soit le nombre de pièces.
      */
-    public DocumentValidationResponseDTO validateDocument(Long id) {
-        Document doc = this.documentRepo.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException("Document non trouvé"));
-
-        // Récupérer l'ID du dossier depuis les métadonnées
-        Object folderIdObj = doc.getMetadata().get("folderId");
-        if (folderIdObj == null) {
-            throw new IllegalStateException("L'ID du dossier est manquant dans les métadonnées");
-        }
-
-        Long folderId = Long.valueOf(folderIdObj.toString());
-
-        // IDs des contenus déjà capturés
-        Set<Long> capturedContentIds = doc.getPieces().stream()
-                .map(p -> p.getContent().getId())
-                .collect(Collectors.toSet());
+    public DocumentDetailDTO getDocumentDetail(Long id) {
+        Document document = getDocumentForValidation(id);
+        return toDetailDTO(document, pieceRepo.findDetailsByDocumentId(id));
+    }
 
-        // Récupérer les contenus obligatoires pour ce dossier
-        List<FolderContent> requiredContents = folderContentRepo.findRequiredContentsByFolderId(folderId);
 
-        List<FolderContent> missingContents = requiredContents.stream()
-                .filter(fc -> !capturedContentIds.contains(fc.getId()))
-                .collect(Collectors.toList());
+    /**
+     * Valider un document en vérifiant que toutes les pièces obligatoires sont présentes.
+     * La complétude est lue depuis l'état maintenu à chaque capture, sans recharger les pièces.
+     */
+    public DocumentValidationResponseDTO validateDocument(Long id) {
+        DocumentCompleteness completeness = completenessService.getCompleteness(id);
 
         // Si des pièces obligatoires manquent
-        if (!missingContents.isEmpty()) {
-            List<String> missingNames = missingContents.stream()
-                    .map(FolderContent::getName)
-                    .collect(Collectors.toList());
-
-            return DocumentValidationResponseDTO.builder()
-                    .success(false)
-                    .message("Certaines pièces obligatoires manquent")
-                    .missingContents(missingNames)
-                    .build();
+        if (!completeness.isComplete()) {
+            return incomplete(completeness);
         }
 
-        // Validation réussie
-        doc.setStatus(DocumentStatus.VALIDE);
-        documentRepo.save(doc);
+        // Transition conditionnelle depuis le statut courant, la complétude étant revérifiée par la requête elle-même
+        DocumentStatus current = documentRepo.findStatusById(id)
+                .orElseThrow(() -> new EntityNotFoundException("Document non trouvé"));
+        if (current != DocumentStatus.VALIDE) {
+            boolean validated = Boolean.TRUE.equals(transactionTemplate.execute(status ->
+                    validateIfComplete(id, completeness.getFolderId(), current)));
+            if (!validated) {
+                // Une pièce obligatoire supprimée entre-temps, sinon un statut modifié par une autre requête
+                DocumentCompleteness latest = completenessService.getCompleteness(id);
+                if (!latest.isComplete()) {
+                    return incomplete(latest);
+                }
+                throw new IllegalStateException("Le statut du document a été modifié par une autre requête, veuillez réessayer");
+            }
+        }
 
         return DocumentValidationResponseDTO.builder()
                 .success(true)
@@ -153,20 +207,25 @@ public class DocumentService {
                 .build();
     }
 
-    public List<Document> searchDocuments(String title, DocumentStatus status) {
-        // Implémentation basique de recherche
-        if (title != null && status != null) {
-            return documentRepo.findByTitleContainingIgnoreCaseAndStatus(title, status);
-        } else if (title != null) {
-            return documentRepo.findByTitleContainingIgnoreCase(title);
-        } else if (status != null) {
-            return documentRepo.findByStatus(status);
-        }
-        return documentRepo.findAll();
+    private DocumentValidationResponseDTO incomplete(DocumentCompleteness completeness) {
+        return DocumentValidationResponseDTO.builder()
+                .success(false)
+                .message("Certaines pièces obligatoires manquent")
+                .missingContents(completenessService.getMissingContentNames(completeness))
+                .build();
+    }
+
+    public DocumentCompletenessDTO getDocumentCompleteness(Long id) {
+        return completenessService.getCompletenessDTO(id);
+    }
+
+    // Liste et recherche lues uniquement dans la table des résumés
+    public List<DocumentSummaryDTO> searchDocuments(String title, DocumentStatus status, Long folderId) {
+        return summaryService.search(title, status, folderId);
     }
 
 
-    public Document updateDocument(Long id, DocumentUpdateDTO dto) {
+    public DocumentDetailDTO updateDocument(Long id, DocumentUpdateDTO dto) {
         Document document = getDocumentForValidation(id);
 
         if (dto.getTitle() != null) {
@@ -176,49 +235,164 @@ public class DocumentService {
             document.setDescription(dto.getDescription());
         }
         if (dto.getMetadata() != null) {
-            document.setMetadata(dto.getMetadata());
+            document.setMetadata(replaceMetadata(document, dto.getMetadata()));
+        }
+
+        Document saved = documentRepo.save(document);
+        publish(DocumentEventType.DOCUMENT_UPDATED, saved, Map.of("title", saved.getTitle()));
+        return toDetailDTO(saved, pieceRepo.findDetailsByDocumentId(id));
+    }
+
+    /**
+     * Le dossier fixe les contenus obligatoires suivis par la complétude et les compteurs du document :
+     * il est conservé par un remplacement des métadonnées et ne peut pas y être changé.
+     */
+    private static Map<String, Object> replaceMetadata(Document document, Map<String, Object> replacement) {
+        Long folderId = document.getFolderId();
+        Object requested = replacement.get("folderId");
+        if (requested != null && !requested.toString().equals(String.valueOf(folderId))) {
+            throw new IllegalArgumentException("Le dossier d'un document ne peut pas être modifié");
         }
 
-        return documentRepo.save(document);
+        Map<String, Object> metadata = new HashMap<>(replacement);
+        if (folderId != null) {
+            metadata.put("folderId", folderId);
+            Object folderName = document.getMetadata().get("folderName");
+            if (folderName != null) {
+                metadata.put("folderName", folderName);
+            }
+        }
+        return metadata;
     }
 
-    public Document updateDocumentStatus(Long id, DocumentStatus status) {
+    public DocumentDetailDTO updateDocumentStatus(Long id, DocumentStatus status) {
         Document document = getDocumentForValidation(id);
-        document.setStatus(status);
-        return documentRepo.save(document);
+        DocumentStatus previous = document.getStatus();
+        if (previous == status) {
+            return toDetailDTO(document, pieceRepo.findDetailsByDocumentId(id));
+        }
+
+        boolean updated = Boolean.TRUE.equals(transactionTemplate.execute(tx ->
+                transitionStatus(id, document.getFolderId(), previous, status)));
+        if (!updated) {
+            throw new IllegalStateException("Le statut du document a été modifié par une autre requête, veuillez réessayer");
+        }
+        return getDocumentDetail(id);
+    }
+
+    private DocumentDetailDTO toDetailDTO(Document document, List<PieceResponseDTO> pieces) {
+        return DocumentDetailDTO.builder()
+                .id(document.getId())
+                .title(document.getTitle())
+                .description(document.getDescription())
+                .status(document.getStatus())
+                .metadata(document.getMetadata())
+                .pieces(pieces)
+                .createdAt(document.getCreatedAt())
+                .updatedAt(document.getUpdatedAt())
+                .build();
+    }
+
+    // Réponse d'une pièce créée ; même forme que la projection PieceRepo.findDetailsByDocumentId
+    public PieceResponseDTO toDTO(Piece piece) {
+        return PieceResponseDTO.builder()
+                .id(piece.getId())
+                .fileName(piece.getFileName())
+                .fileSize(piece.getFileSize())
+                .fileType(piece.getFileType())
+                .pieceUrl(piece.getPieceUrl())
+                .qrCodeData(piece.getQrCodeData())
+                .contentId(piece.getContent().getId())
+                .contentName(piece.getContent().getName())
+                .isRequired(piece.getContent().isRequired())
+                .createdAt(piece.getCreatedAt())
+                .build();
+    }
+
+    /**
+     * Transition de statut en une seule requête UPDATE ... WHERE status = :from, dans la transaction de l'appelant.
+     * Aucun verrou ni réécriture complète du document ; retourne false si le statut a changé entre-temps.
+     */
+    private boolean transitionStatus(Long documentId, Long folderId, DocumentStatus from, DocumentStatus to) {
+        if (from == to || documentRepo.transitionStatus(documentId, from, to, LocalDateTime.now()) == 0) {
+            return false;
+        }
+        onStatusChanged(documentId, folderId, from, to);
+        return true;
+    }
+
+    // Passage à VALIDE dans la même requête que la vérification de complétude
+    private boolean validateIfComplete(Long documentId, Long folderId, DocumentStatus from) {
+        if (documentRepo.validateIfComplete(documentId, from.name(), LocalDateTime.now()) == 0) {
+            return false;
+        }
+        onStatusChanged(documentId, folderId, from, DocumentStatus.VALIDE);
+        return true;
+    }
+
+    private void onStatusChanged(Long documentId, Long folderId, DocumentStatus from, DocumentStatus to) {
+        statisticsService.recordStatusChange(documentId, folderId, from, to);
+        publish(DocumentEventType.STATUS_CHANGED, documentId, folderId, Map.of("from", from, "to", to));
+    }
+
+    // Les événements sont diffusés après validation de la transaction courante
+    private void publish(DocumentEventType type, Document document, Map<String, Object> payload) {
+        publish(type, document.getId(), document.getFolderId(), payload);
+    }
+
+    private void publish(DocumentEventType type, Long documentId, Long folderId, Map<String, Object> payload) {
+        eventPublisher.publishEvent(new DocumentEvent(type, documentId, folderId, payload));
+    }
+
+    private void publishCompleteness(Document document) {
+        DocumentCompletenessDTO completeness = completenessService.getCompletenessDTO(document.getId());
+        publish(DocumentEventType.COMPLETENESS_CHANGED, document, Map.of(
+                "requiredCount", completeness.getRequiredCount(),
+                "capturedRequiredCount", completeness.getCapturedRequiredCount(),
+                "missingContentIds", completeness.getMissingContentIds(),
+                "complete", completeness.isComplete()));
     }
 
 
     public void deleteDocument(Long id) {
         Document document = getDocumentForValidation(id);
-        documentRepo.delete(document);
+        transactionTemplate.executeWithoutResult(status -> {
+            long pieceCount = pieceRepo.countByDocumentId(id);
+            completenessService.onDocumentDeleted(id);
+            // Les fichiers sont mis en file avant la suppression en cascade des pièces
+            filePurgeService.enqueueForDocument(id);
+            documentRepo.delete(document);
+            statisticsService.recordDocumentDeleted(document, pieceCount);
+            publish(DocumentEventType.DOCUMENT_DELETED, document, Map.of());
+        });
     }
 
 
     public void deletePiece(Long documentId, Long pieceId) {
-        Document document = getDocumentForValidation(documentId);
-        Piece piece = document.getPieces().stream()
-                .filter(p -> p.getId().equals(pieceId))
-                .findFirst()
-                .orElseThrow(() -> new EntityNotFoundException("Pièce non trouvée"));
-
-        document.getPieces().remove(piece);
-        documentRepo.save(document);
-    }
-
-    public DocumentStatsDTO getDocumentStatistics() {
-        long total = documentRepo.count();
-        long enCours = documentRepo.countByStatus(DocumentStatus.EN_COURS);
-        long valides = documentRepo.countByStatus(DocumentStatus.VALIDE);
-        long brouillon = documentRepo.countByStatus(DocumentStatus.BROUILLON);
-        long totalPieces = pieceRepo.count();
-
-        return DocumentStatsDTO.builder()
-                .totalDocuments(total)
-                .documentsEnCours(enCours)
-                .documentsValides(valides)
-                .documentsBrouillon(brouillon)
-                .totalPieces(totalPieces)
-                .build();
+        transactionTemplate.executeWithoutResult(status -> {
+            completenessService.lock(documentId);
+            Piece piece = pieceRepo.findByIdAndDocumentId(pieceId, documentId)
+                    .orElseThrow(() -> new EntityNotFoundException("Pièce non trouvée"));
+            Long contentId = piece.getContent().getId();
+
+            Document document = piece.getDocument();
+
+            pieceRepo.delete(piece);
+            pieceRepo.flush();
+            filePurgeService.enqueue(piece.getFilePath(), FilePurgeService.REASON_PIECE_DELETED);
+            completenessService.onPieceRemoved(documentId, contentId);
+            statisticsService.recordPieces(document, -1);
+            publish(DocumentEventType.PIECE_REMOVED, document, Map.of("pieceId", pieceId, "contentId", contentId));
+            publishCompleteness(document);
+        });
+    }
+
+    public long rebuildSummaries() {
+        return summaryService.rebuild();
+    }
+
+    // Statistiques lues depuis les compteurs maintenus (globales, par dossier ou par plan)
+    public DocumentStatsDTO getDocumentStatistics(Long folderId, Long planId) {
+        return statisticsService.getStatistics(folderId, planId);
     }
 }
@@ -0,0 +1,297 @@
+package com.test.service;
+
+import com.test.enums.DocumentStatus;
+import com.test.enums.StatScope;
+import com.test.model.Document;
+import com.test.model.DocumentStatCounter;
+import com.test.payload.DocumentStatsDTO;
+import com.test.repository.DocumentStatCounterRepo;
+import com.test.repository.FolderRepo;
+import jakarta.annotation.PostConstruct;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Statistiques des documents servies depuis des compteurs maintenus de façon transactionnelle.
+ * Chaque changement applique ses deltas aux portées globale, dossier et plan en un seul lot JDBC,
+ * sur la tranche de son document : les captures de documents différents ne s'attendent pas sur la ligne globale.
+ * Une réconciliation par GROUP BY recalcule l'ensemble des compteurs en une requête.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class DocumentStatisticsService {
+
+    public static final String METRIC_DOCUMENTS = "DOCUMENTS";
+    public static final String METRIC_PIECES = "PIECES";
+    private static final long GLOBAL_SCOPE_ID = 0L;
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO document_stat_counters (scope, scope_id, metric, shard, counter_value, created_at, updated_at)
+            VALUES (?, ?, ?, ?, ?, now(), now())
+            ON CONFLICT (scope, scope_id, metric, shard)
+            DO UPDATE SET counter_value = document_stat_counters.counter_value + EXCLUDED.counter_value,
+                          updated_at = now()
+            """;
+
+    private static final String RECONCILE_SQL = """
+            SELECT CAST(d.metadata ->> 'folderId' AS bigint) AS folder_id, f.plan_id, d.status,
+                   count(*) AS documents, COALESCE(sum(pc.cnt), 0) AS pieces
+            FROM documents d
+            LEFT JOIN folders f ON f.id = CAST(d.metadata ->> 'folderId' AS bigint)
+            LEFT JOIN (SELECT document_id, count(*) AS cnt FROM pieces GROUP BY document_id) pc
+                   ON pc.document_id = d.id
+            GROUP BY 1, 2, 3
+            """;
+
+    // Contrainte d'unicité sans tranche des bases créées avant le découpage
+    private static final String LEGACY_UNIQUE_SQL = """
+            SELECT c.conname FROM pg_constraint c
+            WHERE c.conrelid = 'document_stat_counters'::regclass AND c.contype = 'u'
+              AND (SELECT array_agg(a.attname::text ORDER BY a.attname)
+                   FROM unnest(c.conkey) k
+                   JOIN pg_attribute a ON a.attrelid = c.conrelid AND a.attnum = k) = ARRAY['metric', 'scope', 'scope_id']
+            """;
+
+    private static final int RECONCILED_SHARD = 0;
+
+    private final DocumentStatCounterRepo counterRepo;
+    private final FolderRepo folderRepo;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${project.stats.shards:16}")
+    private int shards;
+
+
+    // ============== MISE À JOUR DES COMPTEURS ==============
+
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void recordDocumentCreated(Document document) {
+        Long folderId = document.getFolderId();
+        Long planId = planIdOf(folderId);
+        int shard = shardOf(document.getId());
+        Map<CounterKey, Long> deltas = new TreeMap<>();
+        add(deltas, shard, planId, folderId, METRIC_DOCUMENTS, 1);
+        add(deltas, shard, planId, folderId, document.getStatus().name(), 1);
+        apply(deltas);
+    }
+
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void recordStatusChange(Long documentId, Long folderId, DocumentStatus from, DocumentStatus to) {
+        recordStatusChanges(List.of(new StatusChange(documentId, folderId, from, to)));
+    }
+
+    // Transitions d'un lot : les deltas sont cumulés et appliqués en un seul passage
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void recordStatusChanges(Collection<StatusChange> changes) {
+        Map<Long, Long> planIds = new HashMap<>();
+        Map<CounterKey, Long> deltas = new TreeMap<>();
+        for (StatusChange change : changes) {
+            if (change.from() == change.to()) {
+                continue;
+            }
+            Long planId = change.folderId() != null
+                    ? planIds.computeIfAbsent(change.folderId(), id -> planIdOf(id))
+                    : null;
+            int shard = shardOf(change.documentId());
+            add(deltas, shard, planId, change.folderId(), change.from().name(), -1);
+            add(deltas, shard, planId, change.folderId(), change.to().name(), 1);
+        }
+        apply(deltas);
+    }
+
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void recordPieces(Document document, long delta) {
+        Long folderId = document.getFolderId();
+        Long planId = planIdOf(folderId);
+        Map<CounterKey, Long> deltas = new TreeMap<>();
+        add(deltas, shardOf(document.getId()), planId, folderId, METRIC_PIECES, delta);
+        apply(deltas);
+    }
+
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void recordDocumentDeleted(Document document, long pieceCount) {
+        Long folderId = document.getFolderId();
+        Long planId = planIdOf(folderId);
+        int shard = shardOf(document.getId());
+        Map<CounterKey, Long> deltas = new TreeMap<>();
+        add(deltas, shard, planId, folderId, METRIC_DOCUMENTS, -1);
+        add(deltas, shard, planId, folderId, document.getStatus().name(), -1);
+        add(deltas, shard, planId, folderId, METRIC_PIECES, -pieceCount);
+        apply(deltas);
+    }
+
+
+    // ============== LECTURE ==============
+
+    public DocumentStatsDTO getStatistics(Long folderId, Long planId) {
+        if (folderId != null && planId != null) {
+            throw new IllegalArgumentException("Indiquez soit folderId, soit planId");
+        }
+        if (folderId != null) {
+            return toDTO(StatScope.FOLDER, folderId, counterRepo.findByScopeAndScopeId(StatScope.FOLDER, folderId));
+        }
+        if (planId != null) {
+            return toDTO(StatScope.PLAN, planId, counterRepo.findByScopeAndScopeId(StatScope.PLAN, planId));
+        }
+        return toDTO(StatScope.GLOBAL, GLOBAL_SCOPE_ID,
+                counterRepo.findByScopeAndScopeId(StatScope.GLOBAL, GLOBAL_SCOPE_ID));
+    }
+
+    // Ventilation par dossier ou par plan, en une seule lecture des compteurs
+    public List<DocumentStatsDTO> getBreakdown(StatScope scope) {
+        if (scope == StatScope.GLOBAL) {
+            return List.of(getStatistics(null, null));
+        }
+        return counterRepo.findByScope(scope).stream()
+                .collect(Collectors.groupingBy(DocumentStatCounter::getScopeId, TreeMap::new, Collectors.toList()))
+                .entrySet().stream()
+                .map(e -> toDTO(scope, e.getKey(), e.getValue()))
+                .collect(Collectors.toList());
+    }
+
+
+    // ============== RÉCONCILIATION ==============
+
+    // La contrainte avec tranche est créée par la mise à jour du schéma ; l'ancienne refuserait une deuxième tranche
+    @PostConstruct
+    public void dropLegacyUniqueConstraint() {
+        for (String name : jdbcTemplate.queryForList(LEGACY_UNIQUE_SQL, String.class)) {
+            jdbcTemplate.execute("ALTER TABLE document_stat_counters DROP CONSTRAINT \"" + name + "\"");
+            log.info("Contrainte d'unicité {} des compteurs remplacée par celle avec tranche", name);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initializeCounters() {
+        if (!counterRepo.existsByScope(StatScope.GLOBAL)) {
+            log.info("Aucun compteur statistique trouvé, calcul initial");
+            reconcile();
+        }
+    }
+
+    @Scheduled(cron = "${project.stats.reconcile-cron:0 0 3 * * *}")
+    public void scheduledReconcile() {
+        reconcile();
+    }
+
+    /**
+     * Recalcule tous les compteurs depuis les tables sources. Le verrou sur la table des compteurs
+     * fait patienter les écritures concurrentes le temps du recalcul, aucun delta n'est perdu.
+     */
+    public void reconcile() {
+        transactionTemplate.executeWithoutResult(status -> rewriteCounters());
+    }
+
+    private void rewriteCounters() {
+        jdbcTemplate.execute("LOCK TABLE document_stat_counters IN EXCLUSIVE MODE");
+
+        Map<CounterKey, Long> values = new TreeMap<>();
+        jdbcTemplate.query(RECONCILE_SQL, rs -> {
+            long folderIdValue = rs.getLong("folder_id");
+            Long folderId = rs.wasNull() ? null : folderIdValue;
+            long planIdValue = rs.getLong("plan_id");
+            Long planId = rs.wasNull() ? null : planIdValue;
+            String status = rs.getString("status");
+            long documents = rs.getLong("documents");
+            long pieces = rs.getLong("pieces");
+
+            add(values, RECONCILED_SHARD, planId, folderId, METRIC_DOCUMENTS, documents);
+            add(values, RECONCILED_SHARD, planId, folderId, status, documents);
+            add(values, RECONCILED_SHARD, planId, folderId, METRIC_PIECES, pieces);
+        });
+
+        jdbcTemplate.update("DELETE FROM document_stat_counters");
+        // Toujours une ligne globale, même vide, pour marquer l'initialisation
+        values.putIfAbsent(new CounterKey(StatScope.GLOBAL, GLOBAL_SCOPE_ID, METRIC_DOCUMENTS, RECONCILED_SHARD), 0L);
+        batchUpsert(values);
+        log.info("Réconciliation des statistiques terminée: {} compteurs", values.size());
+    }
+
+
+    // ============== UTILITAIRES ==============
+
+    // Ajoute la valeur aux portées globale, plan et dossier d'une ligne de réconciliation
+    private void add(Map<CounterKey, Long> values, int shard, Long planId, Long folderId, String metric, long value) {
+        values.merge(new CounterKey(StatScope.GLOBAL, GLOBAL_SCOPE_ID, metric, shard), value, Long::sum);
+        if (planId != null) {
+            values.merge(new CounterKey(StatScope.PLAN, planId, metric, shard), value, Long::sum);
+        }
+        if (folderId != null) {
+            values.merge(new CounterKey(StatScope.FOLDER, folderId, metric, shard), value, Long::sum);
+        }
+    }
+
+    private int shardOf(Long documentId) {
+        return documentId != null ? (int) Math.floorMod(documentId, (long) shards) : RECONCILED_SHARD;
+    }
+
+    private Long planIdOf(Long folderId) {
+        return folderId != null ? folderRepo.findPlanIdById(folderId).orElse(null) : null;
+    }
+
+    // Les deltas sont appliqués dans un ordre fixe pour éviter les interblocages entre transactions
+    private void apply(Map<CounterKey, Long> deltas) {
+        deltas.values().removeIf(delta -> delta == 0);
+        if (!deltas.isEmpty()) {
+            batchUpsert(deltas);
+        }
+    }
+
+    private void batchUpsert(Map<CounterKey, Long> values) {
+        List<Object[]> args = new ArrayList<>(values.size());
+        values.forEach((key, value) -> args.add(new Object[]{key.scope().name(), key.scopeId(), key.metric(),
+                key.shard(), value}));
+        jdbcTemplate.batchUpdate(UPSERT_SQL, args);
+    }
+
+    private DocumentStatsDTO toDTO(StatScope scope, Long scopeId, List<DocumentStatCounter> counters) {
+        // Somme des tranches de chaque métrique
+        Map<String, Long> values = counters.stream()
+                .collect(Collectors.toMap(DocumentStatCounter::getMetric, DocumentStatCounter::getCounterValue, Long::sum));
+
+        return DocumentStatsDTO.builder()
+                .scope(scope)
+                .scopeId(scopeId)
+                .totalDocuments(values.getOrDefault(METRIC_DOCUMENTS, 0L))
+                .documentsEnCours(values.getOrDefault(DocumentStatus.EN_COURS.name(), 0L))
+                .documentsValides(values.getOrDefault(DocumentStatus.VALIDE.name(), 0L))
+                .documentsBrouillon(values.getOrDefault(DocumentStatus.BROUILLON.name(), 0L))
+                .documentsRejetes(values.getOrDefault(DocumentStatus.REJETE.name(), 0L))
+                .totalPieces(values.getOrDefault(METRIC_PIECES, 0L))
+                .build();
+    }
+
+    public record StatusChange(Long documentId, Long folderId, DocumentStatus from, DocumentStatus to) {
+    }
+
+    private record CounterKey(StatScope scope, long scopeId, String metric, int shard) implements Comparable<CounterKey> {
+        private static final Comparator<CounterKey> ORDER = Comparator.comparing(CounterKey::scope)
+                .thenComparingLong(CounterKey::scopeId)
+                .thenComparing(CounterKey::metric)
+                .thenComparingInt(CounterKey::shard);
+
+        @Override
+        public int compareTo(CounterKey other) {
+            return ORDER.compare(this, other);
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package com.test.service;
+
+import com.test.enums.DocumentStatus;
+import com.test.event.DocumentEvent;
+import com.test.model.DocumentSummary;
+import com.test.payload.DocumentSummaryDTO;
+import com.test.repository.DocumentSummaryRepo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Maintient la table de lecture document_summary.
+ * Les événements de document publiés pendant une transaction sont regroupés, puis les résumés
+ * concernés sont recalculés depuis les tables sources en une requête, après la validation.
+ */
+@Slf4j
+@Service
+public class DocumentSummaryService {
+
+    private static final Object PENDING_KEY = new Object();
+
+    // Recalcul complet des lignes ciblées : idempotent, l'ordre d'arrivée des événements est sans effet
+    private static final String UPSERT_SQL = """
+            INSERT INTO document_summary (document_id, title, status, folder_id, piece_count, required_count,
+                                          missing_required_count, last_capture_at, metadata,
+                                          document_created_at, document_updated_at, created_at, updated_at)
+            SELECT d.id, d.title, d.status, CAST(d.metadata ->> 'folderId' AS bigint),
+                   p.piece_count, COALESCE(dc.required_count, 0), COALESCE(cardinality(dc.missing_content_ids), 0),
+                   p.last_capture_at,
+                   COALESCE((SELECT jsonb_object_agg(m.key, m.value) FROM jsonb_each(d.metadata) m
+                             WHERE m.key = ANY(?)), '{}'),
+                   d.created_at, d.updated_at, now(), now()
+            FROM documents d
+            LEFT JOIN document_completeness dc ON dc.document_id = d.id
+            CROSS JOIN LATERAL (SELECT count(*) AS piece_count, max(created_at) AS last_capture_at
+                                FROM pieces WHERE document_id = d.id) p
+            WHERE %s
+            ON CONFLICT (document_id) DO UPDATE SET
+                title = EXCLUDED.title,
+                status = EXCLUDED.status,
+                folder_id = EXCLUDED.folder_id,
+                piece_count = EXCLUDED.piece_count,
+                required_count = EXCLUDED.required_count,
+                missing_required_count = EXCLUDED.missing_required_count,
+                last_capture_at = EXCLUDED.last_capture_at,
+                metadata = EXCLUDED.metadata,
+                document_created_at = EXCLUDED.document_created_at,
+                document_updated_at = EXCLUDED.document_updated_at,
+                updated_at = now()
+            """;
+
+    /*
+     * Complétude des documents antérieurs à son suivi, construite à la demande ailleurs : sans elle l'upsert
+     * écrirait 0 contenu manquant. Même calcul que DocumentCompletenessService.rebuild, en une requête.
+     */
+    private static final String INITIALIZE_COMPLETENESS_SQL = """
+            INSERT INTO document_completeness (document_id, folder_id, required_content_ids, missing_content_ids,
+                                               required_count, captured_required_count, created_at, updated_at)
+            SELECT d.id, f.folder_id, req.ids, missing.ids,
+                   cardinality(req.ids), cardinality(req.ids) - cardinality(missing.ids), now(), now()
+            FROM documents d
+            CROSS JOIN LATERAL (SELECT CAST(d.metadata ->> 'folderId' AS bigint) AS folder_id) f
+            CROSS JOIN LATERAL (SELECT COALESCE(array_agg(fc.id ORDER BY fc.id), '{}') AS ids
+                                FROM folder_contents fc
+                                JOIN folder_structure_link l ON l.content_id = fc.id
+                                WHERE l.folder_id = f.folder_id AND fc.required = true) req
+            CROSS JOIN LATERAL (SELECT COALESCE(array_agg(x ORDER BY x), '{}') AS ids
+                                FROM unnest(req.ids) x
+                                WHERE NOT EXISTS (SELECT 1 FROM pieces p
+                                                  WHERE p.document_id = d.id AND p.content_id = x)) missing
+            WHERE (d.id = ANY(?) OR f.folder_id = ANY(?))
+              AND f.folder_id IS NOT NULL
+              AND NOT EXISTS (SELECT 1 FROM document_completeness dc WHERE dc.document_id = d.id)
+            ON CONFLICT (document_id) DO NOTHING
+            """;
+
+    private static final String BY_IDS = "d.id = ANY(?)";
+    private static final String BY_FOLDER = "CAST(d.metadata ->> 'folderId' AS bigint) = ?";
+
+    /*
+     * Verrou consultatif par document, pris dans l'ordre des identifiants et gardé jusqu'à la fin de la transaction.
+     * Sous READ COMMITTED, un recalcul dont l'instantané précède une validation plus récente attendrait le verrou
+     * de ligne puis écrirait ses valeurs périmées : pris dans une requête distincte, ce verrou garantit que
+     * l'upsert lit un instantané postérieur au recalcul concurrent.
+     */
+    private static final String LOCK_SQL = """
+            SELECT count(pg_advisory_xact_lock(s.id))
+            FROM (SELECT d.id FROM documents d
+                  WHERE d.id = ANY(?) OR CAST(d.metadata ->> 'folderId' AS bigint) = ANY(?)
+                  ORDER BY d.id) s
+            """;
+
+    private static final String DELETE_MISSING_SQL = """
+            DELETE FROM document_summary s
+            WHERE s.document_id = ANY(?)
+              AND NOT EXISTS (SELECT 1 FROM documents d WHERE d.id = s.document_id)
+            """;
+
+    private final DocumentSummaryRepo summaryRepo;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate requiresNew;
+
+    // Documents dont le recalcul a échoué après validation, repris périodiquement
+    private final Set<Long> retryDocumentIds = new ConcurrentSkipListSet<>();
+    private final Set<Long> retryFolderIds = new ConcurrentSkipListSet<>();
+
+    @Value("${project.summary.metadata-keys:folderName}")
+    private String[] metadataKeys;
+
+    @Value("${project.summary.rebuild-batch-size:1000}")
+    private int rebuildBatchSize;
+
+    public DocumentSummaryService(DocumentSummaryRepo summaryRepo,
+                                  JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager) {
+        this.summaryRepo = summaryRepo;
+        this.jdbcTemplate = jdbcTemplate;
+        // Après la validation, la transaction d'origine est terminée : les écritures ont leur propre transaction
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+
+    // ============== LECTURE ==============
+
+    public List<DocumentSummaryDTO> search(String title, DocumentStatus status, Long folderId) {
+        String titlePattern = title == null || title.isBlank() ? "%"
+                : "%" + title.toLowerCase().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        return summaryRepo.search(titlePattern, status, folderId).stream()
+                .map(this::toDTO)
+                .toList();
+    }
+
+
+    // ============== MISE À JOUR ==============
+
+    @EventListener
+    public void onDocumentEvent(DocumentEvent event) {
+        if (event.documentId() != null) {
+            schedule(Set.of(event.documentId()), Set.of());
+        }
+    }
+
+    // Les documents d'un dossier changent en bloc (contenus obligatoires modifiés)
+    public void onFolderChanged(Long folderId) {
+        schedule(Set.of(), Set.of(folderId));
+    }
+
+    /**
+     * Les changements d'une transaction sont regroupés et appliqués une seule fois après sa validation,
+     * abandonnés en cas d'annulation. Hors transaction, ils sont appliqués immédiatement.
+     */
+    private void schedule(Set<Long> documentIds, Set<Long> folderIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(documentIds, folderIds);
+            return;
+        }
+
+        Pending pending = (Pending) TransactionSynchronizationManager.getResource(PENDING_KEY);
+        if (pending == null) {
+            Pending created = new Pending();
+            TransactionSynchronizationManager.bindResource(PENDING_KEY, created);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(created.documentIds, created.folderIds);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(PENDING_KEY);
+                }
+            });
+            pending = created;
+        }
+        pending.documentIds.addAll(documentIds);
+        pending.folderIds.addAll(folderIds);
+    }
+
+    private void apply(Set<Long> documentIds, Set<Long> folderIds) {
+        try {
+            requiresNew.executeWithoutResult(status -> {
+                lock(documentIds, folderIds);
+                initializeCompleteness(documentIds.toArray(Long[]::new), folderIds.toArray(Long[]::new));
+                refreshDocuments(documentIds);
+                folderIds.forEach(this::refreshFolder);
+            });
+        } catch (RuntimeException e) {
+            log.error("Mise à jour des résumés impossible, nouvelle tentative planifiée: {}", e.getMessage());
+            retryDocumentIds.addAll(documentIds);
+            retryFolderIds.addAll(folderIds);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${project.summary.retry-interval:PT1M}")
+    public void retryFailed() {
+        if (retryDocumentIds.isEmpty() && retryFolderIds.isEmpty()) {
+            return;
+        }
+        Set<Long> documentIds = drain(retryDocumentIds);
+        Set<Long> folderIds = drain(retryFolderIds);
+        log.info("Reprise de la mise à jour de {} résumé(s) et {} dossier(s)", documentIds.size(), folderIds.size());
+        apply(documentIds, folderIds);
+    }
+
+    private void lock(Set<Long> documentIds, Set<Long> folderIds) {
+        jdbcTemplate.queryForObject(LOCK_SQL, Long.class, documentIds.toArray(Long[]::new), folderIds.toArray(Long[]::new));
+    }
+
+    private void initializeCompleteness(Long[] documentIds, Long[] folderIds) {
+        int initialized = jdbcTemplate.update(INITIALIZE_COMPLETENESS_SQL, documentIds, folderIds);
+        if (initialized > 0) {
+            log.info("Complétude construite pour {} document(s) antérieur(s) à son suivi", initialized);
+        }
+    }
+
+    private void refreshDocuments(Set<Long> documentIds) {
+        if (documentIds.isEmpty()) {
+            return;
+        }
+        Long[] ids = documentIds.toArray(Long[]::new);
+        jdbcTemplate.update(UPSERT_SQL.formatted(BY_IDS), metadataKeys, ids);
+        // Documents supprimés : leur résumé disparaît
+        jdbcTemplate.update(DELETE_MISSING_SQL, (Object) ids);
+    }
+
+    private void refreshFolder(Long folderId) {
+        int refreshed = jdbcTemplate.update(UPSERT_SQL.formatted(BY_FOLDER), metadataKeys, folderId);
+        log.info("Résumés du dossier {} recalculés: {} document(s)", folderId, refreshed);
+    }
+
+
+    // ============== RECONSTRUCTION ==============
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initializeSummaries() {
+        Boolean missing = jdbcTemplate.queryForObject("""
+                SELECT EXISTS (SELECT 1 FROM documents)
+                   AND NOT EXISTS (SELECT 1 FROM document_summary)
+                """, Boolean.class);
+        if (Boolean.TRUE.equals(missing)) {
+            log.info("Table des résumés vide, construction initiale");
+            rebuild();
+        }
+    }
+
+    /**
+     * Reconstruit tous les résumés depuis les tables sources, par lots d'identifiants,
+     * puis supprime les résumés des documents disparus. Retourne le nombre de résumés écrits.
+     */
+    public long rebuild() {
+        long cursor = 0;
+        long rebuilt = 0;
+        List<Long> ids;
+        do {
+            ids = jdbcTemplate.queryForList("SELECT id FROM documents WHERE id > ? ORDER BY id LIMIT ?",
+                    Long.class, cursor, rebuildBatchSize);
+            if (ids.isEmpty()) {
+                break;
+            }
+            Long[] batch = ids.toArray(Long[]::new);
+            rebuilt += requiresNew.execute(status -> {
+                initializeCompleteness(batch, new Long[0]);
+                return jdbcTemplate.update(UPSERT_SQL.formatted(BY_IDS), metadataKeys, batch);
+            });
+            cursor = ids.getLast();
+        } while (ids.size() == rebuildBatchSize);
+
+        int removed = jdbcTemplate.update("""
+                DELETE FROM document_summary s
+                WHERE NOT EXISTS (SELECT 1 FROM documents d WHERE d.id = s.document_id)
+                """);
+        log.info("Reconstruction des résumés terminée: {} écrit(s), {} supprimé(s)", rebuilt, removed);
+        return rebuilt;
+    }
+
+
+    private DocumentSummaryDTO toDTO(DocumentSummary summary) {
+        return DocumentSummaryDTO.builder()
+                .id(summary.getDocumentId())
+                .title(summary.getTitle())
+                .status(summary.getStatus())
+                .folderId(summary.getFolderId())
+                .pieceCount(summary.getPieceCount())
+                .requiredCount(summary.getRequiredCount())
+                .missingRequiredCount(summary.getMissingRequiredCount())
+                .lastCaptureAt(summary.getLastCaptureAt())
+                .metadata(summary.getMetadata())
+                .createdAt(summary.getDocumentCreatedAt())
+                .updatedAt(summary.getDocumentUpdatedAt())
+                .build();
+    }
+
+    private static Set<Long> drain(Set<Long> source) {
+        Set<Long> drained = new TreeSet<>();
+        for (Long id : new ArrayList<>(source)) {
+            if (source.remove(id)) {
+                drained.add(id);
+            }
+        }
+        return drained;
+    }
+
+
+    // Changements en attente de la transaction courante
+    private static class Pending {
+        private final Set<Long> documentIds = new TreeSet<>();
+        private final Set<Long> folderIds = new TreeSet<>();
+    }
+}
@@ -0,0 +1,127 @@
+package com.test.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.test.model.Piece;
+import com.test.payload.PieceFileDTO;
+import com.test.repository.PieceRepo;
+import com.test.storage.StorageBackend;
+import com.test.storage.StoredObject;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Optional;
+
+/**
+ * Métadonnées de service des fichiers (type, taille, date, ETag) par nom de fichier, dans un cache borné.
+ * Enregistrées à la capture, sinon chargées depuis la table des pièces au premier accès ;
+ * le type n'est déduit du nom que pour les fichiers sans pièce.
+ */
+@Slf4j
+@Service
+public class FileMetadataService {
+
+    private final PieceRepo pieceRepo;
+    private final StorageBackend storage;
+    private final String storagePath;
+    private final Cache<String, FileMetadata> cache;
+
+    public FileMetadataService(PieceRepo pieceRepo,
+                               StorageBackend storage,
+                               @Value("${project.document}") String storagePath,
+                               @Value("${project.files.metadata-cache-size:100000}") long maximumSize,
+                               @Value("${project.files.metadata-ttl:PT1H}") Duration ttl) {
+        this.pieceRepo = pieceRepo;
+        this.storage = storage;
+        this.storagePath = storagePath;
+        // Durée de vie bornée : un fichier modifié hors de l'application finit par être relu
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+
+    // Fichier absent du stockage : vide, rien n'est mis en cache
+    public Optional<FileMetadata> get(String filename) {
+        return Optional.ofNullable(cache.get(filename, this::load));
+    }
+
+    // Appelé à la capture, une fois la pièce enregistrée : le premier affichage ne touche ni la base ni le fichier
+    public void register(Piece piece) {
+        try {
+            String filename = StorageBackend.keyOf(piece.getFilePath());
+            Optional<StoredObject> object = storage.stat(filename);
+            if (object.isPresent()) {
+                cache.put(filename, fromPiece(piece.getId(), piece.getFileSize(), piece.getUpdatedAt(),
+                        piece.getFileType().getMimeType(), object.get()));
+            }
+        } catch (IOException e) {
+            log.warn("Métadonnées non enregistrées pour la pièce {}: {}", piece.getId(), e.getMessage());
+        }
+    }
+
+    public void evict(String filePath) {
+        cache.invalidate(StorageBackend.keyOf(filePath));
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+
+    private FileMetadata load(String filename) {
+        try {
+            Optional<StoredObject> object = storage.stat(filename);
+            if (object.isEmpty()) {
+                return null;
+            }
+
+            Optional<PieceFileDTO> piece = pieceRepo.findFileByFilePath(storagePath + filename);
+            if (piece.isPresent()) {
+                PieceFileDTO p = piece.get();
+                return fromPiece(p.getId(), p.getFileSize(), p.getUpdatedAt(), p.getFileType().getMimeType(), object.get());
+            }
+
+            // Fichier inconnu de la base : type déduit de l'extension
+            String contentType = MediaTypeFactory.getMediaType(filename)
+                    .orElse(MediaType.APPLICATION_OCTET_STREAM).toString();
+            return new FileMetadata(contentType, object.get().size(), object.get().lastModified(), fileEtag(object.get()));
+        } catch (IllegalArgumentException e) {
+            // Nom qui n'est pas une clé de stockage valide
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * ETag fort dérivé des métadonnées de la pièce (identifiant, taille, dernière modification).
+     * Pièce dont la taille ne correspond plus au fichier : dérivé des attributs du fichier.
+     */
+    private static FileMetadata fromPiece(Long id, Long fileSize, LocalDateTime updatedAt, String contentType,
+                                          StoredObject object) {
+        long length = object.size();
+        String etag = fileSize != null && fileSize == length && updatedAt != null
+                ? "\"p" + id + "-" + Long.toHexString(length) + "-"
+                  + Long.toHexString(updatedAt.toInstant(ZoneOffset.UTC).toEpochMilli()) + "\""
+                : fileEtag(object);
+        return new FileMetadata(contentType, length, object.lastModified(), etag);
+    }
+
+    private static String fileEtag(StoredObject object) {
+        return "\"f" + Long.toHexString(object.size()) + "-" + Long.toHexString(object.lastModified()) + "\"";
+    }
+
+
+    public record FileMetadata(String contentType, long size, long lastModified, String etag) {
+    }
+}
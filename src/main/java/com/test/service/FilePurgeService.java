@@ -0,0 +1,306 @@
+package com.test.service;
+
+import com.test.model.FilePurgeEntry;
+import com.test.payload.StorageStatusDTO;
+import com.test.repository.FilePurgeEntryRepo;
+import com.test.storage.StorageBackend;
+import com.test.storage.StoredObject;
+import jakarta.annotation.PreDestroy;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Suppression différée des fichiers physiques des pièces.
+ * Les suppressions de pièces et de documents mettent les chemins en file dans leur transaction ;
+ * la file est vidée par lots en arrière-plan, avec un débit de suppression plafonné.
+ * Un rapprochement incrémental détecte les fichiers sans pièce et les pièces sans fichier.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class FilePurgeService {
+
+    public static final String REASON_PIECE_DELETED = "PIECE_DELETED";
+    public static final String REASON_DOCUMENT_DELETED = "DOCUMENT_DELETED";
+    public static final String REASON_ORPHAN_FILE = "ORPHAN_FILE";
+    public static final String REASON_RECOMPRESSED = "RECOMPRESSED";
+
+    private static final String[] SLICES = "0123456789abcdef".split("");
+    private static final int MAX_REPORTED_MISSING = 1000;
+
+    /*
+     * Réservation des lignes de ce passage, validée aussitôt : not_before repoussé de la durée du bail, les autres
+     * instances les ignorent sans qu'aucun verrou ni connexion ne soit gardé pendant les suppressions. Un passage
+     * interrompu laisse expirer son bail, les lignes sont alors reprises.
+     */
+    private static final String CLAIM_SQL = """
+            UPDATE file_purge_queue q SET not_before = ?, updated_at = now()
+            FROM (SELECT id FROM file_purge_queue
+                  WHERE attempts < ? AND (not_before IS NULL OR not_before <= ?)
+                  ORDER BY id
+                  LIMIT ?
+                  FOR UPDATE SKIP LOCKED) c
+            WHERE q.id = c.id
+            RETURNING q.id, q.file_path,
+                      EXISTS (SELECT 1 FROM pieces p WHERE p.file_path = q.file_path) AS referenced
+            """;
+
+    // Échec : nouvelle tentative au passage suivant
+    private static final String FAILURE_SQL = """
+            UPDATE file_purge_queue SET attempts = attempts + 1, last_error = ?, not_before = NULL, updated_at = now()
+            WHERE id = ?
+            """;
+
+    // Fichiers candidats qui ne sont ni référencés par une pièce, ni déjà en file
+    private static final String ORPHANS_SQL = """
+            SELECT x.path FROM unnest(CAST(? AS text[])) AS x(path)
+            WHERE NOT EXISTS (SELECT 1 FROM pieces p WHERE p.file_path = x.path)
+              AND NOT EXISTS (SELECT 1 FROM file_purge_queue q WHERE q.file_path = x.path)
+            """;
+
+    private static final String ENQUEUE_SQL = """
+            INSERT INTO file_purge_queue (file_path, reason, attempts, created_at, updated_at)
+            VALUES (?, ?, 0, now(), now())
+            """;
+
+    private final FilePurgeEntryRepo purgeRepo;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final FileMetadataService fileMetadataService;
+    private final ThumbnailService thumbnailService;
+    private final StorageBackend storage;
+
+    private final AtomicLong purgedFiles = new AtomicLong();
+    private final AtomicLong orphanFilesQueued = new AtomicLong();
+    private final AtomicInteger nextSlice = new AtomicInteger();
+    private final AtomicLong pieceCursor = new AtomicLong();
+    private final Map<Long, String> missingFiles = new ConcurrentSkipListMap<>();
+    private volatile boolean stopping;
+
+    @Value("${project.document}")
+    private String storagePath;
+
+    @Value("${project.purge.batch-size:200}")
+    private int batchSize;
+
+    @Value("${project.purge.max-files-per-second:50}")
+    private int maxFilesPerSecond;
+
+    @Value("${project.purge.max-attempts:5}")
+    private int maxAttempts;
+
+    // Plus long qu'un passage : batch-size fichiers au débit max-files-per-second, plus les appels au stockage
+    @Value("${project.purge.claim-lease:PT5M}")
+    private Duration claimLease;
+
+    // Un fichier récent peut appartenir à une capture dont la transaction n'est pas encore validée
+    @Value("${project.purge.orphan-grace:PT1H}")
+    private Duration orphanGrace;
+
+    // Un original remplacé peut encore être servi par une réponse commencée avant la bascule
+    // ou pointé par un cache (métadonnées, miniatures) d'une autre instance
+    @Value("${project.purge.recompressed-grace:PT10M}")
+    private Duration recompressedGrace;
+
+    @Value("${project.purge.reconcile-batch-size:500}")
+    private int reconcileBatchSize;
+
+
+    // ============== MISE EN FILE ==============
+
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void enqueue(String filePath, String reason) {
+        purgeRepo.save(FilePurgeEntry.builder()
+                .filePath(filePath)
+                .reason(reason)
+                .notBefore(REASON_RECOMPRESSED.equals(reason) ? LocalDateTime.now().plus(recompressedGrace) : null)
+                .build());
+    }
+
+    @Transactional(Transactional.TxType.MANDATORY)
+    public int enqueueForDocument(Long documentId) {
+        return purgeRepo.enqueueForDocument(documentId);
+    }
+
+
+    // ============== PURGE ==============
+
+    @Scheduled(fixedDelayString = "${project.purge.interval:PT30S}")
+    public void drain() {
+        int claimed;
+        do {
+            claimed = drainBatch();
+        } while (claimed == batchSize && !stopping);
+    }
+
+    private int drainBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(CLAIM_SQL, Timestamp.valueOf(now.plus(claimLease)),
+                maxAttempts, Timestamp.valueOf(now), batchSize);
+        if (rows.isEmpty()) {
+            return 0;
+        }
+
+        // Suppressions et débit hors transaction : appels réseau sur un stockage distant
+        List<Long> done = new ArrayList<>();
+        List<Object[]> failures = new ArrayList<>();
+        long interval = 1_000_000_000L / Math.max(1, maxFilesPerSecond);
+        for (Map<String, Object> row : rows) {
+            Long id = ((Number) row.get("id")).longValue();
+            String filePath = (String) row.get("file_path");
+
+            // Chemin de nouveau utilisé par une pièce : seule l'entrée de file est retirée
+            if (Boolean.TRUE.equals(row.get("referenced"))) {
+                done.add(id);
+                continue;
+            }
+
+            long start = System.nanoTime();
+            try {
+                storage.delete(key(filePath));
+                fileMetadataService.evict(filePath);
+                thumbnailService.evictSource(filePath);
+                done.add(id);
+            } catch (IOException | SecurityException e) {
+                log.warn("Suppression impossible du fichier {}: {}", filePath, e.getMessage());
+                failures.add(new Object[]{String.valueOf(e.getMessage()), id});
+            }
+            // Débit plafonné pour ne pas concurrencer les lectures et écritures des requêtes
+            LockSupport.parkNanos(interval - (System.nanoTime() - start));
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!done.isEmpty()) {
+                jdbcTemplate.update("DELETE FROM file_purge_queue WHERE id = ANY(?)", (Object) done.toArray(Long[]::new));
+            }
+            if (!failures.isEmpty()) {
+                jdbcTemplate.batchUpdate(FAILURE_SQL, failures);
+            }
+        });
+        purgedFiles.addAndGet(done.size());
+        log.info("Purge des fichiers: {} entrée(s) traitée(s)", rows.size());
+        return rows.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopping = true;
+    }
+
+
+    // ============== RAPPROCHEMENT ==============
+
+    /**
+     * Chaque passage traite une tranche du répertoire (par premier caractère du nom)
+     * et un lot de pièces : la totalité du stockage est couverte en plusieurs passages courts.
+     */
+    @Scheduled(fixedDelayString = "${project.purge.reconcile-interval:PT5M}",
+            initialDelayString = "${project.purge.reconcile-initial-delay:PT2M}")
+    public void reconcile() {
+        reconcileFiles();
+        reconcilePieces();
+    }
+
+    private void reconcileFiles() {
+        String slice = SLICES[Math.floorMod(nextSlice.getAndIncrement(), SLICES.length)];
+        long cutoff = Instant.now().minus(orphanGrace).toEpochMilli();
+        List<String> candidates;
+        try (Stream<StoredObject> objects = storage.list(slice)) {
+            candidates = objects
+                    .filter(object -> object.lastModified() < cutoff)
+                    .map(object -> storagePath + object.key())
+                    .toList();
+        } catch (IOException | RuntimeException e) {
+            // Erreurs du stockage distant levées pendant le parcours paginé comprises
+            log.error("Lecture impossible du stockage (tranche {})", slice, e);
+            return;
+        }
+
+        int queued = 0;
+        for (int from = 0; from < candidates.size(); from += reconcileBatchSize) {
+            String[] batch = candidates.subList(from, Math.min(from + reconcileBatchSize, candidates.size()))
+                    .toArray(String[]::new);
+            List<Object[]> orphans = jdbcTemplate.queryForList(ORPHANS_SQL, String.class, (Object) batch).stream()
+                    .map(path -> new Object[]{path, REASON_ORPHAN_FILE})
+                    .toList();
+            if (!orphans.isEmpty()) {
+                jdbcTemplate.batchUpdate(ENQUEUE_SQL, orphans);
+                queued += orphans.size();
+            }
+        }
+        orphanFilesQueued.addAndGet(queued);
+        if (queued > 0) {
+            log.info("Rapprochement du stockage (tranche {}): {} fichier(s) orphelin(s) mis en file", slice, queued);
+        }
+    }
+
+    // Pièces dont le fichier a disparu : signalées, jamais supprimées automatiquement
+    private void reconcilePieces() {
+        long cursor = pieceCursor.get();
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT id, file_path FROM pieces WHERE id > ? ORDER BY id LIMIT ?", cursor, reconcileBatchSize);
+
+        for (Map<String, Object> row : rows) {
+            Long id = ((Number) row.get("id")).longValue();
+            String filePath = (String) row.get("file_path");
+            boolean exists;
+            try {
+                exists = storage.exists(StorageBackend.keyOf(filePath));
+            } catch (IOException | IllegalArgumentException e) {
+                log.warn("Présence du fichier {} non vérifiable: {}", filePath, e.getMessage());
+                continue;
+            }
+            if (exists) {
+                missingFiles.remove(id);
+            } else if (missingFiles.size() < MAX_REPORTED_MISSING && missingFiles.put(id, filePath) == null) {
+                log.warn("Fichier manquant pour la pièce {}: {}", id, filePath);
+            }
+        }
+
+        // Fin de la table atteinte : le prochain passage recommence au début
+        pieceCursor.set(rows.size() < reconcileBatchSize ? 0 : ((Number) rows.getLast().get("id")).longValue());
+    }
+
+    public StorageStatusDTO getStatus() {
+        return StorageStatusDTO.builder()
+                .backend(storage.type())
+                .pendingFiles(purgeRepo.countByAttemptsLessThan(maxAttempts))
+                .failedFiles(purgeRepo.count() - purgeRepo.countByAttemptsLessThan(maxAttempts))
+                .purgedFiles(purgedFiles.get())
+                .orphanFilesQueued(orphanFilesQueued.get())
+                .missingFilePieceIds(List.copyOf(missingFiles.keySet()))
+                .build();
+    }
+
+    // Les chemins hors du répertoire de stockage ne sont jamais supprimés
+    private String key(String filePath) {
+        Path root = Paths.get(storagePath).toAbsolutePath().normalize();
+        Path file = Paths.get(filePath).toAbsolutePath().normalize();
+        if (!root.equals(file.getParent())) {
+            throw new SecurityException("Chemin hors du répertoire de stockage: " + filePath);
+        }
+        return StorageBackend.keyOf(filePath);
+    }
+}
@@ -0,0 +1,374 @@
+package com.test.service;
+
+import com.test.storage.FileRegion;
+import com.test.storage.StorageBackend;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Envoi des fichiers de pièces : requêtes conditionnelles (ETag fort, Last-Modified, 304),
+ * plages d'octets (206, multipart/byteranges) et mise en cache longue des fichiers nommés par UUID.
+ * Le contenu est transmis par sendfile lorsque le connecteur le permet, sinon par FileChannel.transferTo,
+ * sans copie dans le tas. Les aperçus redimensionnés suivent le même chemin, depuis le cache des dérivés.
+ * Une pièce regroupée est envoyée par sendfile depuis sa position dans le fichier groupé, à défaut écrite
+ * depuis sa tranche projetée en mémoire.
+ * Stockage distant : le contenu est relayé en flux (plages comprises), ou le client est redirigé vers une URL
+ * signée du stockage lorsque project.storage.serve-mode vaut redirect.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class FileServingService {
+
+    public static final String SERVE_MODE_REDIRECT = "redirect";
+
+    // Attributs de requête du connecteur Tomcat pour l'envoi par sendfile
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // Fichiers écrits une seule fois sous un nom UUID : leur contenu ne change jamais
+    private static final Pattern IMMUTABLE_NAME =
+            Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}\\.[A-Za-z0-9]+");
+
+    private final FileMetadataService fileMetadataService;
+    private final ThumbnailService thumbnailService;
+    private final StorageBackend storage;
+
+    // proxy : contenu relayé par l'application ; redirect : URL signée du stockage, si celui-ci le permet
+    @Value("${project.storage.serve-mode:proxy}")
+    private String serveMode;
+
+    @Value("${project.storage.redirect-ttl:PT15M}")
+    private Duration redirectTtl;
+
+    @Value("${project.files.cache-control:private, max-age=31536000, immutable}")
+    private String immutableCacheControl;
+
+
+    public void serve(String filename, boolean attachment,
+                      HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String key = key(filename);
+        // Métadonnées en cache : ni analyse du fichier ni lecture de ses attributs à chaque requête
+        FileMetadataService.FileMetadata metadata = fileMetadataService.get(filename)
+                .orElseThrow(() -> new EntityNotFoundException("Fichier non trouvé"));
+
+        if (SERVE_MODE_REDIRECT.equals(serveMode)) {
+            Optional<URI> url = storage.presignedUrl(key, redirectTtl, disposition(filename, attachment));
+            if (url.isPresent()) {
+                // La redirection ne doit pas survivre à la signature
+                response.setHeader(HttpHeaders.CACHE_CONTROL, "private, max-age=" + redirectTtl.toSeconds() / 2);
+                response.sendRedirect(url.get().toString());
+                return;
+            }
+        }
+
+        if (notModified(filename, metadata.etag(), metadata.lastModified(), request, response)) {
+            return;
+        }
+        write(source(key), filename, attachment, metadata.contentType(), metadata.size(),
+                metadata.etag(), metadata.lastModified(), request, response);
+    }
+
+    /**
+     * Image redimensionnée (largeur, format). L'ETag se déduit de celui de l'original :
+     * une requête conditionnelle obtient son 304 sans que le dérivé soit généré ni lu.
+     */
+    public void serveDerivative(String filename, Integer width, String format,
+                                HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String key = key(filename);
+        FileMetadataService.FileMetadata metadata = fileMetadataService.get(filename)
+                .orElseThrow(() -> new EntityNotFoundException("Fichier non trouvé"));
+        ThumbnailService.Target target = thumbnailService.target(width, format);
+
+        String etag = metadata.etag().substring(0, metadata.etag().length() - 1)
+                + "-w" + target.width() + "-" + target.format() + "\"";
+        if (notModified(filename, etag, metadata.lastModified(), request, response)) {
+            return;
+        }
+
+        ThumbnailService.Derivative derivative;
+        try {
+            derivative = thumbnailService.render(key, metadata, target);
+        } catch (IOException | RuntimeException e) {
+            // La réponse d'erreur ne doit pas hériter de la mise en cache longue de l'aperçu
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+            throw e;
+        }
+        write(new Source(derivative.file(), 0, null, null), derivative.file().getFileName().toString(), false, derivative.contentType(),
+                derivative.size(), etag, metadata.lastModified(), request, response);
+    }
+
+    // 304 (ou 412) déjà positionné, ETag et Last-Modified ajoutés à la réponse
+    private boolean notModified(String filename, String etag, long lastModified,
+                                HttpServletRequest request, HttpServletResponse response) {
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL,
+                IMMUTABLE_NAME.matcher(filename).matches() ? immutableCacheControl : "no-cache");
+        return new ServletWebRequest(request, response).checkNotModified(etag, lastModified);
+    }
+
+    private void write(Source source, String dispositionName, boolean attachment, String contentType,
+                       long length, String etag, long lastModified,
+                       HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, disposition(dispositionName, attachment));
+
+        List<long[]> regions;
+        try {
+            regions = requestedRegions(request, etag, lastModified, length);
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            return;
+        }
+
+        boolean head = "HEAD".equalsIgnoreCase(request.getMethod());
+        if (regions.isEmpty()) {
+            response.setContentType(contentType);
+            response.setContentLengthLong(length);
+            if (!head) {
+                send(source, 0, length, request, response);
+            }
+        } else if (regions.size() == 1) {
+            long start = regions.getFirst()[0];
+            long end = regions.getFirst()[1];
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setContentType(contentType);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(start, end, length));
+            response.setContentLengthLong(end - start + 1);
+            if (!head) {
+                send(source, start, end - start + 1, request, response);
+            }
+        } else {
+            sendMultipart(source, contentType, regions, length, head, response);
+        }
+    }
+
+    private static String disposition(String filename, boolean attachment) {
+        return (attachment ? ContentDisposition.attachment() : ContentDisposition.inline())
+                .filename(filename).build().toString();
+    }
+
+
+    // ============== PLAGES ==============
+
+    /**
+     * Plages demandées, sous forme [début, fin] inclusifs ; liste vide pour le fichier entier.
+     * If-Range périmé ou en-tête Range mal formé (ou trop de plages) : ignoré, le fichier entier est renvoyé
+     * comme le veut la RFC 9110. Plages valides mais hors du fichier : IllegalArgumentException (416).
+     */
+    private List<long[]> requestedRegions(HttpServletRequest request, String etag, long lastModified, long length) {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        if (header == null || !ifRangeMatches(request.getHeader(HttpHeaders.IF_RANGE), etag, lastModified)) {
+            return List.of();
+        }
+
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(header);
+        } catch (IllegalArgumentException e) {
+            return List.of();
+        }
+
+        List<long[]> regions = new ArrayList<>();
+        long total = 0;
+        for (HttpRange range : ranges) {
+            long start = range.getRangeStart(length);
+            long end = range.getRangeEnd(length);
+            if (start >= length || start > end) {
+                throw new IllegalArgumentException("Plage hors du fichier: " + range);
+            }
+            regions.add(new long[]{start, end});
+            total += end - start + 1;
+        }
+        // Plages chevauchantes demandant plus que le fichier : refusées plutôt que multipliées
+        if (total > length) {
+            throw new IllegalArgumentException("Plages demandées supérieures à la taille du fichier");
+        }
+        return regions;
+    }
+
+    // If-Range accepte un ETag fort ou une date ; toute autre valeur invalide la plage
+    private static boolean ifRangeMatches(String ifRange, String etag, long lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            long date = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return lastModified / 1000 == date / 1000;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private static String contentRange(long start, long end, long length) {
+        return "bytes " + start + "-" + end + "/" + length;
+    }
+
+
+    // ============== ENVOI ==============
+
+    // Fichier local s'il existe, sinon tranche d'un fichier groupé, sinon flux depuis le stockage
+    private Source source(String key) throws IOException {
+        Optional<Path> file = storage.localPath(key);
+        if (file.isPresent()) {
+            return new Source(file.get(), 0, null, key);
+        }
+        Optional<FileRegion> region = storage.region(key);
+        if (region.isPresent()) {
+            return new Source(region.get().file(), region.get().offset(), storage.mapped(key)
+                    .orElseThrow(() -> new EntityNotFoundException("Fichier non trouvé")), key);
+        }
+        return new Source(null, 0, null, key);
+    }
+
+    private void send(Source source, long start, long count, HttpServletRequest request,
+                      HttpServletResponse response) throws IOException {
+        Path file = source.file();
+        // Le connecteur envoie lui-même le fichier (sendfile) une fois la réponse terminée
+        if (file != null && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            log.debug("Envoi par sendfile de {} ({} octets)", file.getFileName(), count);
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, source.base() + start);
+            request.setAttribute(SENDFILE_END, source.base() + start + count);
+            return;
+        }
+
+        if (source.mapped() != null) {
+            response.getOutputStream().write(source.mapped().slice((int) start, (int) count));
+            response.flushBuffer();
+            return;
+        }
+        if (file == null) {
+            copy(source.key(), start, count, response.getOutputStream());
+            response.flushBuffer();
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            transfer(channel, start, count, out);
+        }
+        response.flushBuffer();
+    }
+
+    private void sendMultipart(Source source, String contentType, List<long[]> regions, long length,
+                               boolean head, HttpServletResponse response) throws IOException {
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        List<byte[]> partHeaders = new ArrayList<>();
+        long contentLength = 0;
+        for (long[] region : regions) {
+            byte[] partHeader = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + contentRange(region[0], region[1], length) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(partHeader);
+            contentLength += partHeader.length + region[1] - region[0] + 1;
+        }
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += closing.length;
+
+        response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        if (head) {
+            return;
+        }
+
+        ServletOutputStream stream = response.getOutputStream();
+        WritableByteChannel out = Channels.newChannel(stream);
+        try (FileChannel channel = source.file() != null && source.mapped() == null
+                ? FileChannel.open(source.file(), StandardOpenOption.READ) : null) {
+            for (int i = 0; i < regions.size(); i++) {
+                writeFully(out, partHeaders.get(i));
+                long start = regions.get(i)[0];
+                long count = regions.get(i)[1] - start + 1;
+                if (source.mapped() != null) {
+                    stream.write(source.mapped().slice((int) start, (int) count));
+                } else if (channel != null) {
+                    transfer(channel, start, count, out);
+                } else {
+                    copy(source.key(), start, count, stream);
+                }
+            }
+            writeFully(out, closing);
+        }
+        response.flushBuffer();
+    }
+
+    private static void transfer(FileChannel channel, long start, long count, WritableByteChannel out) throws IOException {
+        long transferred = 0;
+        while (transferred < count) {
+            long sent = channel.transferTo(start + transferred, count - transferred, out);
+            if (sent <= 0) {
+                throw new IOException("Fichier tronqué pendant l'envoi");
+            }
+            transferred += sent;
+        }
+    }
+
+    // Plage relayée depuis le stockage, sans charger l'objet en mémoire
+    private void copy(String key, long start, long count, OutputStream out) throws IOException {
+        try (InputStream in = storage.get(key, start, count)) {
+            if (in.transferTo(out) != count) {
+                throw new IOException("Fichier tronqué pendant l'envoi");
+            }
+        }
+    }
+
+    private static void writeFully(WritableByteChannel out, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+
+    // Fichier local (base : position de la pièce dans un fichier groupé, et sa tranche projetée), ou clé lue en flux
+    private record Source(Path file, long base, ByteBuffer mapped, String key) {
+    }
+
+    private static String key(String filename) {
+        try {
+            return StorageBackend.checkKey(filename);
+        } catch (IllegalArgumentException e) {
+            throw new EntityNotFoundException("Fichier non trouvé");
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.test.service;
+
+import com.test.enums.RollupGranularity;
+import com.test.payload.ThroughputPointDTO;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Historique d'ingestion des pièces.
+ * Les captures sont agrégées en mémoire par minute, écrites par lots dans ingestion_rollups,
+ * puis compactées en tranches horaires et journalières. Les lectures ne touchent jamais la table pieces.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class IngestionMetricsService {
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO ingestion_rollups (granularity, bucket_start, folder_id, content_id, piece_count, byte_count,
+                                           created_at, updated_at)
+            VALUES (?, ?, ?, ?, ?, ?, now(), now())
+            ON CONFLICT (granularity, bucket_start, folder_id, content_id)
+            DO UPDATE SET piece_count = ingestion_rollups.piece_count + EXCLUDED.piece_count,
+                          byte_count = ingestion_rollups.byte_count + EXCLUDED.byte_count,
+                          updated_at = now()
+            """;
+
+    // Déplacement atomique des tranches fines vers la granularité supérieure
+    private static final String COMPACT_SQL = """
+            WITH moved AS (
+                DELETE FROM ingestion_rollups
+                WHERE granularity = ? AND bucket_start < ?
+                RETURNING bucket_start, folder_id, content_id, piece_count, byte_count
+            )
+            INSERT INTO ingestion_rollups (granularity, bucket_start, folder_id, content_id, piece_count, byte_count,
+                                           created_at, updated_at)
+            SELECT ?, date_trunc(?, bucket_start), folder_id, content_id, sum(piece_count), sum(byte_count), now(), now()
+            FROM moved
+            GROUP BY 2, 3, 4
+            ON CONFLICT (granularity, bucket_start, folder_id, content_id)
+            DO UPDATE SET piece_count = ingestion_rollups.piece_count + EXCLUDED.piece_count,
+                          byte_count = ingestion_rollups.byte_count + EXCLUDED.byte_count,
+                          updated_at = now()
+            """;
+
+    private static final String SERIES_SQL = """
+            SELECT date_trunc(?, bucket_start) AS bucket, sum(piece_count) AS pieces, sum(byte_count) AS bytes
+            FROM ingestion_rollups
+            WHERE granularity = ANY(?) AND bucket_start >= ? AND bucket_start < ? %s
+            GROUP BY bucket
+            ORDER BY bucket
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<BucketKey, BucketCount> pending = new ConcurrentHashMap<>();
+
+    @Value("${project.ingestion.minute-retention:PT6H}")
+    private Duration minuteRetention;
+
+    @Value("${project.ingestion.hour-retention:P7D}")
+    private Duration hourRetention;
+
+
+    // ============== ENREGISTREMENT ==============
+
+    // Appelé après la validation de la transaction de capture ; aucune écriture en base ici
+    public void recordPiece(Long folderId, Long contentId, long bytes, LocalDateTime capturedAt) {
+        LocalDateTime minute = (capturedAt != null ? capturedAt : LocalDateTime.now()).truncatedTo(ChronoUnit.MINUTES);
+        BucketKey key = new BucketKey(minute, folderId != null ? folderId : 0L, contentId);
+        pending.merge(key, new BucketCount(1, bytes), BucketCount::plus);
+    }
+
+    @Scheduled(fixedDelayString = "${project.ingestion.flush-interval:PT10S}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        // Chaque tranche est retirée atomiquement : une capture concurrente recrée une nouvelle entrée
+        List<Map.Entry<BucketKey, BucketCount>> drained = new ArrayList<>();
+        for (BucketKey key : pending.keySet()) {
+            BucketCount count = pending.remove(key);
+            if (count != null) {
+                drained.add(Map.entry(key, count));
+            }
+        }
+
+        List<Object[]> args = drained.stream()
+                .map(e -> new Object[]{RollupGranularity.MINUTE.name(), Timestamp.valueOf(e.getKey().minute()),
+                        e.getKey().folderId(), e.getKey().contentId(), e.getValue().pieces(), e.getValue().bytes()})
+                .toList();
+
+        try {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, args);
+        } catch (RuntimeException e) {
+            // Les compteurs sont remis en attente pour le prochain passage
+            log.error("Echec de l'écriture des métriques d'ingestion, nouvel essai au prochain passage", e);
+            drained.forEach(entry -> pending.merge(entry.getKey(), entry.getValue(), BucketCount::plus));
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    @Scheduled(cron = "${project.ingestion.compact-cron:0 5 * * * *}")
+    public void compact() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime minuteCutoff = now.minus(minuteRetention).truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime hourCutoff = now.minus(hourRetention).truncatedTo(ChronoUnit.DAYS);
+
+        int hours = compact(RollupGranularity.MINUTE, RollupGranularity.HOUR, minuteCutoff);
+        int days = compact(RollupGranularity.HOUR, RollupGranularity.DAY, hourCutoff);
+        log.info("Compactage des métriques d'ingestion: {} tranche(s) horaire(s), {} tranche(s) journalière(s)", hours, days);
+    }
+
+    private int compact(RollupGranularity from, RollupGranularity to, LocalDateTime cutoff) {
+        return jdbcTemplate.update(COMPACT_SQL,
+                from.name(), Timestamp.valueOf(cutoff),
+                to.name(), to.getSqlUnit());
+    }
+
+
+    // ============== LECTURE ==============
+
+    /**
+     * Série temporelle du débit d'ingestion. Les tranches plus fines encore présentes
+     * sont regroupées à la granularité demandée.
+     */
+    public List<ThroughputPointDTO> getThroughput(RollupGranularity granularity, LocalDateTime from, LocalDateTime to,
+                                                  Long folderId, Long contentId) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("La date de début doit précéder la date de fin");
+        }
+
+        List<Object> args = new ArrayList<>();
+        args.add(granularity.getSqlUnit());
+        args.add(finerOrEqual(granularity));
+        args.add(Timestamp.valueOf(from));
+        args.add(Timestamp.valueOf(to));
+
+        StringBuilder filters = new StringBuilder();
+        if (folderId != null) {
+            filters.append(" AND folder_id = ?");
+            args.add(folderId);
+        }
+        if (contentId != null) {
+            filters.append(" AND content_id = ?");
+            args.add(contentId);
+        }
+
+        return jdbcTemplate.query(SERIES_SQL.formatted(filters),
+                (rs, rowNum) -> ThroughputPointDTO.builder()
+                        .bucketStart(rs.getTimestamp("bucket").toLocalDateTime())
+                        .pieceCount(rs.getLong("pieces"))
+                        .byteCount(rs.getLong("bytes"))
+                        .build(),
+                args.toArray());
+    }
+
+    private String[] finerOrEqual(RollupGranularity granularity) {
+        List<String> names = new ArrayList<>();
+        for (RollupGranularity g : RollupGranularity.values()) {
+            if (g.ordinal() <= granularity.ordinal()) {
+                names.add(g.name());
+            }
+        }
+        return names.toArray(String[]::new);
+    }
+
+    private record BucketKey(LocalDateTime minute, long folderId, long contentId) {
+    }
+
+    private record BucketCount(long pieces, long bytes) {
+        BucketCount plus(BucketCount other) {
+            return new BucketCount(pieces + other.pieces, bytes + other.bytes);
+        }
+    }
+}
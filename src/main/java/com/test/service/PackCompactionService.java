@@ -0,0 +1,349 @@
+package com.test.service;
+
+import com.test.enums.DocumentStatus;
+import com.test.storage.PackedStorageBackend;
+import com.test.storage.StorageBackend;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Regroupement en arrière-plan des pièces des documents validés dans des fichiers groupés, écrits par ajout.
+ * Un lot est ajouté à la fin du fichier groupé courant, synchronisé sur disque, puis indexé dans une transaction
+ * qui fixe la nouvelle longueur validée : un arrêt en cours d'ajout ne laisse que des octets ignorés, écrasés
+ * au lot suivant. Les fichiers séparés sont supprimés après un délai de grâce, le temps que les lectures
+ * commencées avant l'indexation se terminent. Un fichier groupé plein dont toutes les pièces ont été supprimées
+ * est effacé ; les octets inutilisés des autres ne sont pas récupérés.
+ */
+@Slf4j
+@ConditionalOnExpression(PackedStorageBackend.ENABLED)
+@Service
+public class PackCompactionService {
+
+    // Pièces définitives : document validé depuis min-age, recompression d'archivage terminée
+    private static final String CANDIDATES_SQL = """
+            SELECT p.id, p.file_path
+            FROM pieces p
+            JOIN documents d ON d.id = p.document_id
+            WHERE d.status = ? AND d.updated_at < ?
+              AND (p.archival_profile IS NULL OR p.archived_at IS NOT NULL)
+              AND p.file_size <= ?
+              AND p.id > ?
+              AND NOT EXISTS (SELECT 1 FROM pack_entries e WHERE e.piece_id = p.id)
+            ORDER BY p.id
+            LIMIT ?
+            """;
+
+    // Fichier groupé courant, verrouillé pour la durée de l'ajout
+    private static final String CURRENT_PACK_SQL = """
+            SELECT id, name, size FROM pack_files WHERE NOT sealed ORDER BY id LIMIT 1 FOR UPDATE
+            """;
+
+    private static final String NEW_PACK_SQL = """
+            INSERT INTO pack_files (name, size, dead_bytes, sealed, created_at, updated_at)
+            VALUES (?, 0, 0, false, now(), now())
+            RETURNING id
+            """;
+
+    // Pièce supprimée pendant l'ajout : l'entrée n'est pas créée, ses octets sont comptés comme inutilisés.
+    // FOR KEY SHARE : une suppression en cours est attendue, une suppression ultérieure attend la validation
+    // de l'entrée, que la purge du fichier voit alors et retire
+    private static final String INSERT_ENTRY_SQL = """
+            INSERT INTO pack_entries (piece_id, storage_key, pack_id, pack_offset, length, last_modified,
+                                      loose_removed, created_at, updated_at)
+            SELECT ?, ?, ?, ?, ?, ?, false, now(), now()
+            WHERE EXISTS (SELECT 1 FROM pieces p WHERE p.id = ? FOR KEY SHARE)
+            ON CONFLICT (storage_key) DO NOTHING
+            """;
+
+    private static final String PACK_UPDATE_SQL = """
+            UPDATE pack_files SET size = ?, dead_bytes = dead_bytes + ?, sealed = ?, updated_at = now() WHERE id = ?
+            """;
+
+    private static final String LOOSE_SQL = """
+            SELECT id, storage_key FROM pack_entries
+            WHERE NOT loose_removed AND created_at < ?
+            ORDER BY id
+            LIMIT ?
+            """;
+
+    private static final String DEAD_PACKS_SQL = """
+            SELECT f.id, f.name FROM pack_files f
+            WHERE f.sealed AND f.dead_bytes >= f.size
+              AND NOT EXISTS (SELECT 1 FROM pack_entries e WHERE e.pack_id = f.id)
+            """;
+
+    private static final String STATUS_SQL = """
+            SELECT count(*) AS packs, coalesce(sum(size), 0) AS bytes, coalesce(sum(dead_bytes), 0) AS dead_bytes,
+                   (SELECT count(*) FROM pack_entries) AS entries,
+                   (SELECT count(*) FROM pack_entries WHERE NOT loose_removed) AS loose
+            FROM pack_files
+            """;
+
+    private final PackedStorageBackend packs;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final long maxPackSize;
+
+    private volatile boolean stopping;
+
+    // Laisse le temps d'un retour en cours de saisie juste après la validation
+    @Value("${project.storage.packs.min-age:PT1H}")
+    private Duration minAge;
+
+    // Plus long que la durée de l'index en mémoire et que l'envoi d'un fichier commencé avant le regroupement
+    @Value("${project.storage.packs.loose-grace:PT10M}")
+    private Duration looseGrace;
+
+    @Value("${project.storage.packs.batch-size:200}")
+    private int batchSize;
+
+    @Value("${project.storage.packs.max-batch-size:256MB}")
+    private DataSize maxBatchSize;
+
+    public PackCompactionService(PackedStorageBackend packs,
+                                 JdbcTemplate jdbcTemplate,
+                                 TransactionTemplate transactionTemplate,
+                                 @Value("${project.storage.packs.max-size:1GB}") DataSize maxPackSize) {
+        if (maxPackSize.toBytes() <= 0 || maxPackSize.toBytes() > PackedStorageBackend.MAX_PACK_SIZE) {
+            throw new IllegalArgumentException("Taille de fichier groupé invalide (maximum "
+                    + PackedStorageBackend.MAX_PACK_SIZE + " octets): " + maxPackSize);
+        }
+        this.packs = packs;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.maxPackSize = maxPackSize.toBytes();
+    }
+
+
+    @Scheduled(fixedDelayString = "${project.storage.packs.interval:PT15M}",
+            initialDelayString = "${project.storage.packs.initial-delay:PT5M}")
+    public synchronized void compact() {
+        try {
+            removeLooseFiles();
+            packValidated();
+            dropDeadPacks();
+        } catch (RuntimeException e) {
+            log.error("Echec du regroupement des pièces, reprise au prochain passage", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopping = true;
+    }
+
+
+    // ============== REGROUPEMENT ==============
+
+    private void packValidated() {
+        long cursor = 0;
+        int total = 0;
+        while (!stopping) {
+            List<Map<String, Object>> candidates = jdbcTemplate.queryForList(CANDIDATES_SQL,
+                    DocumentStatus.VALIDE.name(), Timestamp.from(Instant.now().minus(minAge)), maxPackSize, cursor,
+                    batchSize);
+            if (candidates.isEmpty()) {
+                break;
+            }
+
+            Appended appended = transactionTemplate.execute(status -> append(candidates));
+            packs.evict(appended.keys());
+            total += appended.keys().size();
+            cursor = Math.max(cursor, appended.lastPieceId());
+
+            if (candidates.size() < batchSize && !appended.interrupted()) {
+                break;
+            }
+        }
+        if (total > 0) {
+            log.info("Regroupement: {} pièce(s) ajoutée(s) aux fichiers groupés", total);
+        }
+    }
+
+    /**
+     * Ajoute les pièces à la suite du fichier groupé courant, dans la limite du lot ; interrompu lorsque
+     * le fichier groupé est plein ou le lot atteint sa taille maximale, le reste étant repris au lot suivant.
+     */
+    private Appended append(List<Map<String, Object>> candidates) {
+        Pack pack = currentPack();
+        long packId = pack.id();
+        long position = pack.size();
+        String name = pack.name();
+
+        List<Object[]> entries = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        List<Long> lengths = new ArrayList<>();
+        long lastPieceId = 0;
+        long appendedBytes = 0;
+        boolean full = false;
+        boolean interrupted = false;
+
+        try (FileChannel out = FileChannel.open(packs.getPackDir().resolve(name),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // Octets d'un ajout interrompu au-delà de la longueur validée
+            if (out.size() > position) {
+                out.truncate(position);
+            }
+
+            for (Map<String, Object> candidate : candidates) {
+                if (stopping || appendedBytes >= maxBatchSize.toBytes()) {
+                    interrupted = true;
+                    break;
+                }
+                long pieceId = ((Number) candidate.get("id")).longValue();
+                String key = StorageBackend.keyOf((String) candidate.get("file_path"));
+                Path source = packs.getLoose().localPath(key).orElseThrow();
+
+                try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+                    long length = in.size();
+                    if (position > 0 && position + length > maxPackSize) {
+                        full = true;
+                        interrupted = true;
+                        break;
+                    }
+                    long lastModified = Files.getLastModifiedTime(source).toMillis();
+                    copy(in, out, position, length);
+                    entries.add(new Object[]{pieceId, key, packId, position, length, lastModified, pieceId});
+                    keys.add(key);
+                    lengths.add(length);
+                    position += length;
+                    appendedBytes += length;
+                } catch (NoSuchFileException e) {
+                    // Signalée par le rapprochement du stockage ; reprise au prochain passage si le fichier revient
+                    log.warn("Fichier absent, pièce {} non regroupée: {}", pieceId, key);
+                }
+                lastPieceId = pieceId;
+            }
+            out.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ajout impossible au fichier groupé " + name, e);
+        }
+
+        long deadBytes = 0;
+        List<String> indexed = new ArrayList<>();
+        int[] inserted = entries.isEmpty() ? new int[0] : jdbcTemplate.batchUpdate(INSERT_ENTRY_SQL, entries);
+        for (int i = 0; i < inserted.length; i++) {
+            if (inserted[i] > 0) {
+                indexed.add(keys.get(i));
+            } else {
+                deadBytes += lengths.get(i);
+            }
+        }
+        jdbcTemplate.update(PACK_UPDATE_SQL, position, deadBytes, full || position >= maxPackSize, packId);
+        return new Appended(indexed, lastPieceId, interrupted);
+    }
+
+    // Premier fichier groupé non plein, créé au besoin
+    private Pack currentPack() {
+        List<Pack> current = jdbcTemplate.query(CURRENT_PACK_SQL,
+                (rs, rowNum) -> new Pack(rs.getLong("id"), rs.getString("name"), rs.getLong("size")));
+        if (!current.isEmpty()) {
+            return current.getFirst();
+        }
+        String name = "pack-" + UUID.randomUUID() + ".pack";
+        Long id = jdbcTemplate.queryForObject(NEW_PACK_SQL, Long.class, name);
+        log.info("Nouveau fichier groupé {}", name);
+        return new Pack(id, name, 0);
+    }
+
+    private static void copy(FileChannel in, FileChannel out, long position, long length) throws IOException {
+        long copied = 0;
+        while (copied < length) {
+            long transferred = out.transferFrom(in, position + copied, length - copied);
+            if (transferred <= 0) {
+                throw new IOException("Fichier tronqué pendant le regroupement");
+            }
+            copied += transferred;
+        }
+    }
+
+
+    // ============== NETTOYAGE ==============
+
+    // Fichiers séparés des pièces regroupées depuis plus que le délai de grâce
+    private void removeLooseFiles() {
+        List<Map<String, Object>> rows;
+        do {
+            rows = jdbcTemplate.queryForList(LOOSE_SQL, Timestamp.from(Instant.now().minus(looseGrace)), batchSize);
+            List<Long> removed = new ArrayList<>();
+            for (Map<String, Object> row : rows) {
+                String key = (String) row.get("storage_key");
+                try {
+                    packs.getLoose().delete(key);
+                    removed.add(((Number) row.get("id")).longValue());
+                } catch (IOException e) {
+                    log.warn("Suppression impossible du fichier séparé {}: {}", key, e.getMessage());
+                }
+            }
+            if (!removed.isEmpty()) {
+                jdbcTemplate.update("UPDATE pack_entries SET loose_removed = true, updated_at = now() WHERE id = ANY(?)",
+                        (Object) removed.toArray(Long[]::new));
+                log.info("Regroupement: {} fichier(s) séparé(s) supprimé(s)", removed.size());
+            }
+            if (removed.size() < rows.size()) {
+                break;
+            }
+        } while (rows.size() == batchSize && !stopping);
+    }
+
+    // Fichiers groupés pleins dont toutes les pièces ont été supprimées
+    private void dropDeadPacks() {
+        for (Map<String, Object> row : jdbcTemplate.queryForList(DEAD_PACKS_SQL)) {
+            long id = ((Number) row.get("id")).longValue();
+            String name = (String) row.get("name");
+            int deleted = jdbcTemplate.update("""
+                    DELETE FROM pack_files f
+                    WHERE f.id = ? AND NOT EXISTS (SELECT 1 FROM pack_entries e WHERE e.pack_id = f.id)
+                    """, id);
+            if (deleted == 0) {
+                continue;
+            }
+            packs.forget(name);
+            try {
+                Files.deleteIfExists(packs.getPackDir().resolve(StorageBackend.checkKey(name)));
+                log.info("Fichier groupé {} supprimé: plus aucune pièce", name);
+            } catch (IOException e) {
+                log.warn("Suppression impossible du fichier groupé {}: {}", name, e.getMessage());
+            }
+        }
+    }
+
+
+    public PackStatus getStatus() {
+        return jdbcTemplate.queryForObject(STATUS_SQL, (rs, rowNum) -> new PackStatus(
+                rs.getLong("packs"), rs.getLong("entries"), rs.getLong("bytes"), rs.getLong("dead_bytes"),
+                rs.getLong("loose")));
+    }
+
+    private record Pack(long id, String name, long size) {
+    }
+
+    private record Appended(List<String> keys, long lastPieceId, boolean interrupted) {
+    }
+
+    public record PackStatus(long packFiles, long packedPieces, long packBytes, long deadBytes,
+                             long pendingLooseFiles) {
+    }
+}
@@ -11,6 +11,7 @@ import com.test.model.Folder;
 import com.test.model.FolderContent;
 import com.test.repository.FolderRepo;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
@@ -70,6 +71,8 @@ public class QRCodeService {
     }
 
 
+    // Transactionnel : les contenus du dossier sont chargés à la demande
+    @Transactional
     public byte[] generateQRCodesZipForFolder(Long folderId) throws Exception {
         Folder folder = folderRepo.findById(folderId)
                 .orElseThrow(() -> new EntityNotFoundException("Dossier non trouvé"));
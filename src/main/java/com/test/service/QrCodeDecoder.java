@@ -0,0 +1,56 @@
+package com.test.service;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.common.HybridBinarizer;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Lecture des images capturées et de leur QR Code, sans dépendance au reste de la chaîne de capture :
+ * les bancs d'essai (src/jmh/java) mesurent ces étapes isolément.
+ * Les méthodes retournent null en cas d'échec ; l'appelant choisit l'erreur à remonter.
+ */
+@Component
+public class QrCodeDecoder {
+
+    public static final String CONTENT_PREFIX = "CONTENT:";
+
+    public BufferedImage readImage(InputStream is) throws IOException {
+        return ImageIO.read(is);
+    }
+
+    public String decode(BufferedImage image) {
+        LuminanceSource source = new BufferedImageLuminanceSource(image);
+        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source));
+        try {
+            return new MultiFormatReader().decode(bitmap).getText();
+        } catch (NotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Extrait l'ID du contenu depuis le QR Code
+     * Format attendu : "CONTENT:123" ou juste "123"
+     */
+    public Long extractContentId(String qrContent) {
+        try {
+            // Si le format est "CONTENT:123"
+            if (qrContent.startsWith(CONTENT_PREFIX)) {
+                return Long.parseLong(qrContent.substring(CONTENT_PREFIX.length()));
+            }
+            // Sinon, tenter de parser directement
+            return Long.parseLong(qrContent);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.test.service;
+
+import com.test.repository.ClassificationRepo;
+import com.test.repository.FolderRepo;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.json.JsonMapper;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rapports en lecture seule calculés directement en SQL.
+ * Les résultats sont écrits au fil de l'eau, aucune entité n'est chargée.
+ */
+@Slf4j
+@Service
+public class ReportService {
+
+    private static final int FETCH_SIZE = 1000;
+
+    // Anti-jointure contenus obligatoires / pièces pour tous les documents du sous-arbre
+    private static final String MISSING_CONTENTS_SQL = """
+            WITH RECURSIVE subtree AS (
+                SELECT f.id FROM folders f WHERE %s
+                UNION
+                SELECT c.id FROM folders c JOIN subtree s ON c.parent_folder_id = s.id
+            ),
+            docs AS (
+                SELECT d.id, d.title, d.status, CAST(d.metadata ->> 'folderId' AS bigint) AS folder_id
+                FROM documents d
+                WHERE CAST(d.metadata ->> 'folderId' AS bigint) IN (SELECT id FROM subtree)
+            )
+            SELECT docs.id, docs.title, docs.status, docs.folder_id, fc.id AS content_id, fc.name AS content_name
+            FROM docs
+            JOIN folder_structure_link l ON l.folder_id = docs.folder_id
+            JOIN folder_contents fc ON fc.id = l.content_id AND fc.required = true
+            WHERE NOT EXISTS (SELECT 1 FROM pieces p WHERE p.document_id = docs.id AND p.content_id = fc.id)
+            ORDER BY docs.id, fc.id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final FolderRepo folderRepo;
+    private final ClassificationRepo classificationRepo;
+    private final JsonMapper jsonMapper;
+
+    public ReportService(DataSource dataSource,
+                         PlatformTransactionManager transactionManager,
+                         FolderRepo folderRepo,
+                         ClassificationRepo classificationRepo,
+                         JsonMapper jsonMapper) {
+        // Le curseur PostgreSQL n'est utilisé qu'avec un fetch size et hors autocommit
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.folderRepo = folderRepo;
+        this.classificationRepo = classificationRepo;
+        this.jsonMapper = jsonMapper;
+    }
+
+    public enum ReportFormat {
+        NDJSON,
+        CSV
+    }
+
+    /**
+     * Vérifie la portée du rapport avant l'ouverture du flux, afin de pouvoir répondre 400/404.
+     */
+    public void checkScope(Long folderId, Long planId) {
+        if ((folderId == null) == (planId == null)) {
+            throw new IllegalArgumentException("Indiquez soit folderId, soit planId");
+        }
+        if (folderId != null && !folderRepo.existsById(folderId)) {
+            throw new EntityNotFoundException("Dossier non trouvé");
+        }
+        if (planId != null && !classificationRepo.existsById(planId)) {
+            throw new EntityNotFoundException("Plan de classification non trouvé");
+        }
+    }
+
+    /**
+     * Écrit les contenus obligatoires manquants de chaque document du dossier (sous-dossiers compris)
+     * ou du plan. NDJSON : une ligne par document. CSV : une ligne par couple document/contenu manquant.
+     */
+    public void writeMissingContentsReport(Long folderId, Long planId, ReportFormat format, OutputStream out) throws IOException {
+        String root = folderId != null ? "f.id = ?" : "f.plan_id = ? AND f.parent_folder_id IS NULL";
+        Long scopeId = folderId != null ? folderId : planId;
+        String sql = MISSING_CONTENTS_SQL.formatted(root);
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        MissingContentsWriter handler = format == ReportFormat.CSV
+                ? new CsvMissingContentsWriter(writer)
+                : new NdjsonMissingContentsWriter(writer);
+
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query(sql, handler, scopeId));
+            handler.finish();
+            writer.flush();
+        } catch (UncheckedIOException e) {
+            // Le client a fermé la connexion en cours de route
+            log.warn("Interruption de l'écriture du rapport des contenus manquants: {}", e.getMessage());
+            throw e.getCause();
+        }
+    }
+
+
+    private abstract static class MissingContentsWriter implements RowCallbackHandler {
+        protected final Writer writer;
+
+        MissingContentsWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            try {
+                write(rs);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        protected abstract void write(ResultSet rs) throws SQLException, IOException;
+
+        void finish() throws IOException {
+        }
+    }
+
+    // Les lignes arrivent triées par document : on regroupe les contenus manquants du document courant
+    private class NdjsonMissingContentsWriter extends MissingContentsWriter {
+        private Map<String, Object> current;
+        private List<Map<String, Object>> missing;
+
+        NdjsonMissingContentsWriter(Writer writer) {
+            super(writer);
+        }
+
+        @Override
+        protected void write(ResultSet rs) throws SQLException, IOException {
+            long documentId = rs.getLong("id");
+            if (current == null || !current.get("documentId").equals(documentId)) {
+                finish();
+                current = new LinkedHashMap<>();
+                missing = new ArrayList<>();
+                current.put("documentId", documentId);
+                current.put("title", rs.getString("title"));
+                current.put("status", rs.getString("status"));
+                current.put("folderId", rs.getLong("folder_id"));
+                current.put("missingContents", missing);
+            }
+            missing.add(Map.of("id", rs.getLong("content_id"), "name", rs.getString("content_name")));
+        }
+
+        @Override
+        void finish() throws IOException {
+            if (current != null) {
+                writer.write(jsonMapper.writeValueAsString(current));
+                writer.write('\n');
+                current = null;
+            }
+        }
+    }
+
+    private static class CsvMissingContentsWriter extends MissingContentsWriter {
+        private boolean headerWritten;
+
+        CsvMissingContentsWriter(Writer writer) {
+            super(writer);
+        }
+
+        @Override
+        protected void write(ResultSet rs) throws SQLException, IOException {
+            if (!headerWritten) {
+                writer.write("documentId,title,status,folderId,contentId,contentName\n");
+                headerWritten = true;
+            }
+            writer.write(rs.getLong("id") + "," + csv(rs.getString("title")) + "," + rs.getString("status") + ","
+                    + rs.getLong("folder_id") + "," + rs.getLong("content_id") + "," + csv(rs.getString("content_name")) + "\n");
+        }
+
+        @Override
+        void finish() throws IOException {
+            if (!headerWritten) {
+                writer.write("documentId,title,status,folderId,contentId,contentName\n");
+                headerWritten = true;
+            }
+        }
+
+        private static String csv(String value) {
+            if (value == null) {
+                return "";
+            }
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.test.service;
+
+import com.test.enums.DocumentStatus;
+import com.test.model.Document;
+import com.test.model.Piece;
+import com.test.model.UploadSession;
+import com.test.payload.UploadSessionCreateDTO;
+import com.test.payload.UploadSessionDTO;
+import com.test.repository.DocumentRepo;
+import com.test.repository.UploadSessionRepo;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Envois reprenables : création d'une session, morceaux écrits à leur position dans un fichier de transit,
+ * consultation de la position atteinte, puis finalisation par la chaîne de capture habituelle.
+ * Une connexion coupée au milieu d'un morceau conserve les octets déjà écrits : le client reprend
+ * à la position renvoyée, sans retransmettre le reste du fichier.
+ * Avec plusieurs instances, le répertoire de transit doit être partagé entre elles, ou les requêtes d'une session
+ * dirigées vers l'instance qui l'a créée : un morceau reçu par une instance sans le fichier de transit est refusé.
+ */
+@Slf4j
+@Service
+public class ResumableUploadService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final UploadSessionRepo sessionRepo;
+    private final DocumentRepo documentRepo;
+    private final DocumentService documentService;
+    private final Path stagingDir;
+
+    // Sessions dont un morceau ou la finalisation est en cours sur cette instance ; entre instances,
+    // seule l'avance conditionnelle de la position en base départage deux morceaux concurrents
+    private final Set<String> busy = ConcurrentHashMap.newKeySet();
+
+    @Value("${project.upload.max-resumable-size:500MB}")
+    private DataSize maxResumableSize;
+
+    @Value("${project.upload.max-chunk-size:8MB}")
+    private DataSize maxChunkSize;
+
+    @Value("${project.upload.session-ttl:PT24H}")
+    private Duration sessionTtl;
+
+    public ResumableUploadService(UploadSessionRepo sessionRepo,
+                                  DocumentRepo documentRepo,
+                                  DocumentService documentService,
+                                  @Value("${project.upload.staging-dir:uploads/}") String stagingDir) throws IOException {
+        this.sessionRepo = sessionRepo;
+        this.documentRepo = documentRepo;
+        this.documentService = documentService;
+        this.stagingDir = Paths.get(stagingDir).toAbsolutePath().normalize();
+        Files.createDirectories(this.stagingDir);
+    }
+
+
+    // ============== SESSION ==============
+
+    public UploadSessionDTO create(Long documentId, UploadSessionCreateDTO request) throws IOException {
+        Document document = documentRepo.findById(documentId)
+                .orElseThrow(() -> new EntityNotFoundException("Document non trouvé"));
+        if (document.getStatus() == DocumentStatus.VALIDE) {
+            throw new IllegalStateException("Impossible d'ajouter des pièces à un document validé");
+        }
+        if (!CaptureService.ACCEPTED_TYPES.contains(request.getContentType())) {
+            throw new IllegalArgumentException("Type de fichier non autorisé: " + request.getContentType());
+        }
+        if (request.getSize() > maxResumableSize.toBytes()) {
+            throw new IllegalArgumentException("Fichier trop volumineux (max " + maxResumableSize.toMegabytes() + "MB)");
+        }
+
+        String uploadId = UUID.randomUUID().toString();
+        Path staging = stagingDir.resolve(uploadId + ".part");
+        Files.createFile(staging);
+
+        UploadSession session = sessionRepo.save(UploadSession.builder()
+                .uploadId(uploadId)
+                .documentId(documentId)
+                .fileName(request.getFileName())
+                .contentType(request.getContentType())
+                .totalSize(request.getSize())
+                .receivedBytes(0)
+                .stagingPath(staging.toString())
+                .expiresAt(LocalDateTime.now().plus(sessionTtl))
+                .build());
+        log.info("Session d'envoi {} créée pour le document {} ({} octets)", uploadId, documentId, request.getSize());
+        return toDTO(session);
+    }
+
+    public UploadSessionDTO get(Long documentId, String uploadId) {
+        return toDTO(findSession(documentId, uploadId));
+    }
+
+    public void cancel(Long documentId, String uploadId) throws IOException {
+        claim(uploadId);
+        try {
+            UploadSession session = findSession(documentId, uploadId);
+            sessionRepo.delete(session);
+            Files.deleteIfExists(Paths.get(session.getStagingPath()));
+        } finally {
+            busy.remove(uploadId);
+        }
+    }
+
+
+    // ============== MORCEAUX ==============
+
+    /**
+     * Écrit un morceau à la position annoncée, qui doit être celle déjà atteinte.
+     * Retourne la session avec sa nouvelle position, y compris après une interruption de la lecture.
+     */
+    public UploadSessionDTO appendChunk(Long documentId, String uploadId, long offset, long contentLength,
+                                        InputStream body) throws IOException {
+        claim(uploadId);
+        try {
+            UploadSession session = findSession(documentId, uploadId);
+            if (offset != session.getReceivedBytes()) {
+                throw new IllegalStateException("Position invalide: " + offset
+                        + ", position attendue: " + session.getReceivedBytes());
+            }
+            long remaining = session.getTotalSize() - offset;
+            long limit = Math.min(maxChunkSize.toBytes(), remaining);
+            if (contentLength > limit) {
+                throw new IllegalArgumentException("Morceau trop volumineux (max " + limit + " octets)");
+            }
+
+            // Écriture positionnelle : une reprise réécrit la fin d'une tentative interrompue sans rien décaler
+            long position = offset;
+            long end = offset + limit;
+            IOException interrupted = null;
+            Path staging = Paths.get(session.getStagingPath());
+            if (!Files.isRegularFile(staging)) {
+                throw new IllegalStateException("Fichier de transit absent de cette instance: le répertoire de transit "
+                        + "doit être partagé, ou la session reprise sur l'instance qui l'a créée");
+            }
+            try (FileChannel channel = FileChannel.open(staging, StandardOpenOption.WRITE)) {
+                byte[] bytes = new byte[BUFFER_SIZE];
+                try {
+                    int read;
+                    // Un octet de plus que permis est demandé, pour détecter un morceau trop long
+                    while ((read = body.read(bytes, 0, (int) Math.min(bytes.length, end - position + 1))) != -1) {
+                        if (position + read > end) {
+                            throw new IllegalArgumentException("Morceau trop volumineux (max " + limit + " octets)");
+                        }
+                        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, read);
+                        while (buffer.hasRemaining()) {
+                            position += channel.write(buffer, position);
+                        }
+                    }
+                } catch (IOException e) {
+                    // Connexion coupée : les octets reçus avant la coupure sont conservés
+                    interrupted = e;
+                }
+                // Octets sur disque avant d'être annoncés au client
+                channel.force(false);
+            }
+
+            LocalDateTime expiresAt = LocalDateTime.now().plus(sessionTtl);
+            if (sessionRepo.advance(uploadId, offset, position, expiresAt) == 0) {
+                throw new IllegalStateException("La position de la session a été modifiée par un autre envoi, "
+                        + "reprenez à la position actuelle");
+            }
+            session.setReceivedBytes(position);
+            session.setExpiresAt(expiresAt);
+
+            if (interrupted != null) {
+                log.warn("Session d'envoi {} interrompue à {} octets: {}", uploadId, position, interrupted.getMessage());
+                throw interrupted;
+            }
+            return toDTO(session);
+        } finally {
+            busy.remove(uploadId);
+        }
+    }
+
+    // ============== FINALISATION ==============
+
+    public Piece complete(Long documentId, String uploadId) throws Exception {
+        claim(uploadId);
+        try {
+            UploadSession session = findSession(documentId, uploadId);
+            if (session.getReceivedBytes() != session.getTotalSize()) {
+                throw new IllegalStateException("Envoi incomplet: " + session.getReceivedBytes()
+                        + " octets reçus sur " + session.getTotalSize());
+            }
+            Path staging = Paths.get(session.getStagingPath());
+            if (!Files.isRegularFile(staging)) {
+                // Fichier déjà déplacé par une finalisation dont l'enregistrement a échoué
+                sessionRepo.delete(session);
+                throw new IllegalStateException("Fichier de transit introuvable, l'envoi doit être recommencé");
+            }
+            // Octets écrits au-delà de la position validée par une tentative interrompue
+            try (FileChannel channel = FileChannel.open(staging, StandardOpenOption.WRITE)) {
+                channel.truncate(session.getTotalSize());
+            }
+
+            Piece piece = documentService.uploadAndClassifyPiece(documentId,
+                    new StagedMultipartFile(staging, session.getFileName(), session.getContentType()),
+                    maxResumableSize.toBytes());
+            sessionRepo.delete(session);
+            log.info("Session d'envoi {} finalisée: pièce {}", uploadId, piece.getId());
+            return piece;
+        } finally {
+            busy.remove(uploadId);
+        }
+    }
+
+
+    // ============== EXPIRATION ==============
+
+    @Scheduled(fixedDelayString = "${project.upload.cleanup-interval:PT15M}")
+    public void purgeExpired() {
+        List<UploadSession> expired;
+        do {
+            expired = sessionRepo.findTop100ByExpiresAtBeforeOrderByExpiresAt(LocalDateTime.now());
+            for (UploadSession session : expired) {
+                if (!busy.add(session.getUploadId())) {
+                    continue;
+                }
+                try {
+                    Files.deleteIfExists(Paths.get(session.getStagingPath()));
+                    sessionRepo.delete(session);
+                } catch (IOException e) {
+                    log.warn("Suppression impossible du fichier de transit {}: {}", session.getStagingPath(), e.getMessage());
+                } finally {
+                    busy.remove(session.getUploadId());
+                }
+            }
+            if (!expired.isEmpty()) {
+                log.info("{} session(s) d'envoi expirée(s) supprimée(s)", expired.size());
+            }
+        } while (expired.size() == 100);
+    }
+
+
+    private UploadSession findSession(Long documentId, String uploadId) {
+        return sessionRepo.findByUploadIdAndDocumentId(uploadId, documentId)
+                .orElseThrow(() -> new EntityNotFoundException("Session d'envoi non trouvée"));
+    }
+
+    private void claim(String uploadId) {
+        if (!busy.add(uploadId)) {
+            throw new IllegalStateException("Un envoi est déjà en cours pour cette session");
+        }
+    }
+
+    private UploadSessionDTO toDTO(UploadSession session) {
+        return UploadSessionDTO.builder()
+                .uploadId(session.getUploadId())
+                .documentId(session.getDocumentId())
+                .fileName(session.getFileName())
+                .contentType(session.getContentType())
+                .size(session.getTotalSize())
+                .offset(session.getReceivedBytes())
+                .maxChunkSize(maxChunkSize.toBytes())
+                .complete(session.getReceivedBytes() == session.getTotalSize())
+                .expiresAt(session.getExpiresAt())
+                .build();
+    }
+}
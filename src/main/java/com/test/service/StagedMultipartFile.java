@@ -0,0 +1,86 @@
+package com.test.service;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Fichier reconstitué d'un envoi reprenable, présenté à la chaîne de capture comme un fichier reçu en une requête.
+ * Le stockage final déplace le fichier de transit au lieu de le recopier.
+ */
+class StagedMultipartFile implements MultipartFile {
+
+    private final Path file;
+    private final String originalFilename;
+    private final String contentType;
+    // Relevée à la création : le fichier n'existe plus à son emplacement une fois déplacé
+    private final long size;
+
+    StagedMultipartFile(Path file, String originalFilename, String contentType) throws IOException {
+        this.file = file;
+        this.originalFilename = originalFilename;
+        this.contentType = contentType;
+        this.size = Files.size(file);
+    }
+
+    // Fichier de transit, remis tel quel au stockage
+    Path getFile() {
+        return file;
+    }
+
+    @Override
+    public String getName() {
+        return "file";
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return originalFilename;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return getSize() == 0;
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        return Files.readAllBytes(file);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return Files.newInputStream(file);
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException {
+        transferTo(dest.toPath());
+    }
+
+    @Override
+    public void transferTo(Path dest) throws IOException {
+        try {
+            Files.move(file, dest, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            // Répertoire de transit sur un autre système de fichiers
+            Files.move(file, dest, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
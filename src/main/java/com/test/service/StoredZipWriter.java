@@ -0,0 +1,270 @@
+package com.test.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Écriture d'une archive ZIP en entrées STORED (sans compression) directement sur un canal.
+ * Le CRC des fichiers est calculé sur une projection mémoire hors tas, puis le contenu est copié
+ * par FileChannel.transferTo : aucun fichier n'est chargé dans le tas. Un objet distant est copié en flux,
+ * par tampons, avec un CRC calculé par une première lecture. Les extensions ZIP64
+ * sont ajoutées uniquement lorsque les tailles ou positions dépassent 4 Go.
+ */
+public final class StoredZipWriter implements Closeable {
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_OF_CENTRAL = 0x06054b50;
+    private static final int ZIP64_END_OF_CENTRAL = 0x06064b50;
+    private static final int ZIP64_LOCATOR = 0x07064b50;
+    private static final long ZIP32_LIMIT = 0xFFFFFFFFL;
+    private static final int UTF8_FLAG = 1 << 11;
+    private static final long MAP_CHUNK = 64L * 1024 * 1024;
+    private static final int STREAM_CHUNK = 64 * 1024;
+
+    private final WritableByteChannel out;
+    private final List<Entry> entries = new ArrayList<>();
+    private long position;
+    private boolean finished;
+
+    public StoredZipWriter(WritableByteChannel out) {
+        this.out = out;
+    }
+
+    // Taille courante de l'archive, utile pour découper un export en segments
+    public long getPosition() {
+        return position;
+    }
+
+    public long addFile(String name, Path file) throws IOException {
+        return addFile(name, file, -1);
+    }
+
+    // CRC déjà calculé par l'appelant (lecture anticipée en parallèle), -1 pour le calculer ici
+    public long addFile(String name, Path file, long knownCrc) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long crc = knownCrc >= 0 ? knownCrc : crc32(channel, size);
+
+            writeLocalHeader(name, crc, size);
+            long transferred = 0;
+            while (transferred < size) {
+                transferred += channel.transferTo(transferred, size - transferred, out);
+            }
+            position += size;
+            return crc;
+        }
+    }
+
+    // Contenu déjà projeté en mémoire (pièce regroupée) ; CRC calculé ici si knownCrc vaut -1
+    public long addBuffer(String name, ByteBuffer data, long knownCrc) throws IOException {
+        long crc = knownCrc >= 0 ? knownCrc : crc32(data);
+        writeLocalHeader(name, crc, data.remaining());
+        writeFully(data.duplicate());
+        return crc;
+    }
+
+    /**
+     * Contenu lu en flux (stockage distant) : la taille et le CRC, lus au préalable, précèdent le contenu dans
+     * l'en-tête local. Un contenu qui ne leur correspond plus rendrait l'archive invalide : IOException.
+     */
+    public long addStream(String name, InputStream data, long size, long crc) throws IOException {
+        writeLocalHeader(name, crc, size);
+        CRC32 actual = new CRC32();
+        byte[] chunk = new byte[STREAM_CHUNK];
+        long copied = 0;
+        int read;
+        while ((read = data.read(chunk)) != -1) {
+            actual.update(chunk, 0, read);
+            writeFully(ByteBuffer.wrap(chunk, 0, read));
+            copied += read;
+        }
+        if (copied != size || actual.getValue() != crc) {
+            throw new IOException("Contenu modifié pendant l'export de " + name);
+        }
+        return crc;
+    }
+
+    public void addBytes(String name, byte[] data) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        writeLocalHeader(name, crc.getValue(), data.length);
+        writeFully(ByteBuffer.wrap(data));
+    }
+
+    public static long crc32(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return crc32(channel, channel.size());
+        }
+    }
+
+    public static long crc32(InputStream data) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[STREAM_CHUNK];
+        int read;
+        while ((read = data.read(chunk)) != -1) {
+            crc.update(chunk, 0, read);
+        }
+        return crc.getValue();
+    }
+
+    public static long crc32(ByteBuffer data) {
+        CRC32 crc = new CRC32();
+        crc.update(data.duplicate());
+        return crc.getValue();
+    }
+
+    public static long crc32(FileChannel channel, long size) throws IOException {
+        CRC32 crc = new CRC32();
+        for (long offset = 0; offset < size; offset += MAP_CHUNK) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(MAP_CHUNK, size - offset));
+            crc.update(mapped);
+        }
+        return crc.getValue();
+    }
+
+    // Ecrit le répertoire central ; le canal reste ouvert pour l'appelant
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+
+        long centralStart = position;
+        for (Entry entry : entries) {
+            writeCentralHeader(entry);
+        }
+        long centralSize = position - centralStart;
+
+        boolean zip64 = entries.size() >= 0xFFFF || centralStart >= ZIP32_LIMIT || centralSize >= ZIP32_LIMIT;
+        if (zip64) {
+            long zip64EndStart = position;
+            ByteBuffer end64 = buffer(56);
+            end64.putInt(ZIP64_END_OF_CENTRAL).putLong(44)
+                    .putShort((short) 45).putShort((short) 45)
+                    .putInt(0).putInt(0)
+                    .putLong(entries.size()).putLong(entries.size())
+                    .putLong(centralSize).putLong(centralStart);
+            write(end64);
+
+            ByteBuffer locator = buffer(20);
+            locator.putInt(ZIP64_LOCATOR).putInt(0).putLong(zip64EndStart).putInt(1);
+            write(locator);
+        }
+
+        ByteBuffer end = buffer(22);
+        end.putInt(END_OF_CENTRAL).putShort((short) 0).putShort((short) 0)
+                .putShort((short) Math.min(entries.size(), 0xFFFF))
+                .putShort((short) Math.min(entries.size(), 0xFFFF))
+                .putInt((int) Math.min(centralSize, ZIP32_LIMIT))
+                .putInt((int) Math.min(centralStart, ZIP32_LIMIT))
+                .putShort((short) 0);
+        write(end);
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+    }
+
+
+    private void writeLocalHeader(String name, long crc, long size) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        Entry entry = new Entry(nameBytes, crc, size, position, dosTime(LocalDateTime.now()));
+        entries.add(entry);
+
+        boolean zip64 = size >= ZIP32_LIMIT;
+        ByteBuffer header = buffer(30 + nameBytes.length + (zip64 ? 20 : 0));
+        header.putInt(LOCAL_HEADER)
+                .putShort((short) (zip64 ? 45 : 20))
+                .putShort((short) UTF8_FLAG)
+                .putShort((short) 0)
+                .putInt((int) entry.dosTime)
+                .putInt((int) crc)
+                .putInt((int) (zip64 ? ZIP32_LIMIT : size))
+                .putInt((int) (zip64 ? ZIP32_LIMIT : size))
+                .putShort((short) nameBytes.length)
+                .putShort((short) (zip64 ? 20 : 0))
+                .put(nameBytes);
+        if (zip64) {
+            header.putShort((short) 1).putShort((short) 16).putLong(size).putLong(size);
+        }
+        write(header);
+    }
+
+    private void writeCentralHeader(Entry entry) throws IOException {
+        boolean largeSize = entry.size >= ZIP32_LIMIT;
+        boolean largeOffset = entry.offset >= ZIP32_LIMIT;
+        int extraLength = (largeSize || largeOffset) ? 4 + (largeSize ? 16 : 0) + (largeOffset ? 8 : 0) : 0;
+
+        ByteBuffer header = buffer(46 + entry.name.length + extraLength);
+        header.putInt(CENTRAL_HEADER)
+                .putShort((short) 45)
+                .putShort((short) (extraLength > 0 ? 45 : 20))
+                .putShort((short) UTF8_FLAG)
+                .putShort((short) 0)
+                .putInt((int) entry.dosTime)
+                .putInt((int) entry.crc)
+                .putInt((int) (largeSize ? ZIP32_LIMIT : entry.size))
+                .putInt((int) (largeSize ? ZIP32_LIMIT : entry.size))
+                .putShort((short) entry.name.length)
+                .putShort((short) extraLength)
+                .putShort((short) 0)
+                .putShort((short) 0)
+                .putShort((short) 0)
+                .putInt(0)
+                .putInt((int) (largeOffset ? ZIP32_LIMIT : entry.offset))
+                .put(entry.name);
+        if (extraLength > 0) {
+            header.putShort((short) 1).putShort((short) (extraLength - 4));
+            if (largeSize) {
+                header.putLong(entry.size).putLong(entry.size);
+            }
+            if (largeOffset) {
+                header.putLong(entry.offset);
+            }
+        }
+        write(header);
+    }
+
+    private static ByteBuffer buffer(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        writeFully(buffer);
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += out.write(buffer);
+        }
+    }
+
+    private static long dosTime(LocalDateTime time) {
+        int year = Math.max(time.getYear(), 1980);
+        return ((long) (year - 1980) << 25)
+                | ((long) time.getMonthValue() << 21)
+                | ((long) time.getDayOfMonth() << 16)
+                | ((long) time.getHour() << 11)
+                | ((long) time.getMinute() << 5)
+                | (time.getSecond() >> 1);
+    }
+
+    private record Entry(byte[] name, long crc, long size, long offset, long dosTime) {
+    }
+}
@@ -0,0 +1,473 @@
+package com.test.service;
+
+import com.test.exception.OverloadedException;
+import com.test.payload.ThumbnailCacheDTO;
+import com.test.storage.StorageBackend;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dérivés redimensionnés des images de pièces (miniatures, aperçus).
+ * Le décodage passe par un pool borné ; les dérivés sont conservés sur disque, clé (fichier, largeur, format),
+ * et évincés du moins récemment utilisé au plus récent au-delà de la taille maximale du cache.
+ * Les demandes simultanées d'un même dérivé partagent un seul rendu.
+ * Le cache est propre à chaque nœud ; les images sources sont lues depuis le stockage des pièces.
+ */
+@Slf4j
+@Service
+public class ThumbnailService {
+
+    public static final String FORMAT_JPEG = "jpeg";
+    public static final String FORMAT_WEBP = "webp";
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final StorageBackend storage;
+    private final Path cacheDir;
+    private final long maxCacheBytes;
+    private final long serveGraceNanos;
+    private final int[] widths;
+    private final float quality;
+    private final boolean webpAvailable;
+    private final ThreadPoolExecutor decodePool;
+
+    // Rendus en cours, par clé de dérivé
+    private final Map<String, CompletableFuture<Derivative>> inFlight = new ConcurrentHashMap<>();
+
+    // Index du cache disque, nom de fichier → entrée, dans l'ordre des accès
+    private final LinkedHashMap<String, CacheEntry> index = new LinkedHashMap<>(256, 0.75f, true);
+    private long cachedBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong renders = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ThumbnailService(StorageBackend storage,
+                            @Value("${project.thumbnails.dir:thumbnails/}") String cacheDir,
+                            @Value("${project.thumbnails.max-cache-bytes:1073741824}") long maxCacheBytes,
+                            @Value("${project.thumbnails.widths:160,320,640,1280}") int[] widths,
+                            @Value("${project.thumbnails.quality:0.8}") float quality,
+                            @Value("${project.thumbnails.workers:0}") int workers,
+                            @Value("${project.thumbnails.queue-capacity:64}") int queueCapacity,
+                            @Value("${project.thumbnails.serve-grace:PT10S}") Duration serveGrace) throws IOException {
+        this.storage = storage;
+        this.cacheDir = Paths.get(cacheDir).toAbsolutePath().normalize();
+        this.maxCacheBytes = maxCacheBytes;
+        this.serveGraceNanos = serveGrace.toNanos();
+        this.widths = Arrays.stream(widths).filter(w -> w > 0).sorted().distinct().toArray();
+        if (this.widths.length == 0) {
+            throw new IllegalArgumentException("Aucune largeur de dérivé configurée");
+        }
+        this.quality = quality;
+        this.webpAvailable = ImageIO.getImageWritersByFormatName(FORMAT_WEBP).hasNext();
+
+        // Décodage coûteux en CPU et en mémoire : au plus un rendu par cœur, file d'attente bornée
+        int poolSize = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        this.decodePool = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity));
+
+        Files.createDirectories(this.cacheDir);
+        loadIndex();
+    }
+
+
+    // ============== RÉSOLUTION ==============
+
+    /**
+     * Largeur ramenée à la plus petite largeur configurée qui la couvre, pour limiter le nombre de dérivés ;
+     * WebP sans encodeur disponible : JPEG.
+     */
+    public Target target(Integer width, String format) {
+        if (width != null && width <= 0) {
+            throw new IllegalArgumentException("Largeur invalide: " + width);
+        }
+        String requested = format == null ? FORMAT_JPEG : format.toLowerCase(Locale.ROOT);
+        String effective = switch (requested) {
+            case "jpeg", "jpg" -> FORMAT_JPEG;
+            case FORMAT_WEBP -> webpAvailable ? FORMAT_WEBP : FORMAT_JPEG;
+            default -> throw new IllegalArgumentException("Format de dérivé non pris en charge: " + format);
+        };
+
+        int snapped = widths[widths.length - 1];
+        if (width != null) {
+            for (int candidate : widths) {
+                if (candidate >= width) {
+                    snapped = candidate;
+                    break;
+                }
+            }
+        }
+        return new Target(snapped, effective);
+    }
+
+    /**
+     * Dérivé de l'image source, depuis le cache disque ou rendu par le pool de décodage.
+     * Pool saturé : OverloadedException.
+     */
+    public Derivative render(String source, FileMetadataService.FileMetadata metadata, Target target) throws IOException {
+        if (!metadata.contentType().startsWith("image/")) {
+            throw new IllegalArgumentException("Aperçu disponible uniquement pour les images");
+        }
+
+        // La date de modification fait partie de la clé : un fichier remplacé ne sert jamais un ancien dérivé
+        String key = derivativeName(source, metadata, target);
+        Derivative cached = lookup(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+
+        CompletableFuture<Derivative> created = new CompletableFuture<>();
+        CompletableFuture<Derivative> pending = inFlight.putIfAbsent(key, created);
+        if (pending != null) {
+            coalesced.incrementAndGet();
+        } else {
+            pending = created;
+            try {
+                decodePool.execute(() -> {
+                    try {
+                        created.complete(renderToCache(source, key, target));
+                    } catch (Throwable e) {
+                        created.completeExceptionally(e);
+                    } finally {
+                        inFlight.remove(key, created);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                OverloadedException overloaded = new OverloadedException(
+                        "Trop d'aperçus en cours de génération, réessayez plus tard", Duration.ofSeconds(1));
+                inFlight.remove(key, created);
+                created.completeExceptionally(overloaded);
+                throw overloaded;
+            }
+        }
+        return await(pending);
+    }
+
+    private Derivative await(CompletableFuture<Derivative> pending) throws IOException {
+        try {
+            return pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Génération de l'aperçu interrompue");
+        } catch (ExecutionException e) {
+            switch (e.getCause()) {
+                case IOException io -> throw io;
+                case UncheckedIOException io -> throw io.getCause();
+                case RuntimeException runtime -> throw runtime;
+                default -> throw new IllegalStateException("Génération de l'aperçu impossible", e.getCause());
+            }
+        }
+    }
+
+    private static String derivativeName(String name, FileMetadataService.FileMetadata metadata, Target target) {
+        int dot = name.lastIndexOf('.');
+        String stem = dot > 0 ? name.substring(0, dot) : name;
+        return stem + "-" + Long.toHexString(metadata.lastModified()) + "-w" + target.width() + "." + target.extension();
+    }
+
+
+    // ============== RENDU ==============
+
+    private Derivative renderToCache(String source, String key, Target target) throws IOException {
+        // Rendu terminé entre la consultation du cache et la prise en charge par le pool
+        Derivative cached = lookup(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        long start = System.nanoTime();
+        BufferedImage image = scale(decode(source, target.width()), target.width());
+
+        Path file = cacheDir.resolve(key);
+        Path temp = cacheDir.resolve(key + TEMP_SUFFIX);
+        try {
+            write(image, target.format(), temp);
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        long size = Files.size(file);
+        renders.incrementAndGet();
+        log.debug("Aperçu {} généré en {} ms ({} octets)", key, (System.nanoTime() - start) / 1_000_000, size);
+        store(key, size, true);
+        return new Derivative(file, size, target.contentType());
+    }
+
+    /**
+     * Décodage sous-échantillonné : une image bien plus large que la cible n'est lue qu'une ligne et une colonne
+     * sur n, l'image complète n'est jamais chargée en mémoire.
+     */
+    private BufferedImage decode(String source, int width) throws IOException {
+        // Fichier local lu directement ; objet distant lu en flux
+        Path file = storage.localPath(source).orElse(null);
+        try (InputStream stream = file == null ? storage.get(source) : null;
+             ImageInputStream input = ImageIO.createImageInputStream(file != null ? file.toFile() : stream)) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new IllegalArgumentException("Format d'image non reconnu");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                // Au moins deux fois la largeur cible conservée, pour la qualité de la réduction finale
+                int subsampling = Math.max(1, reader.getWidth(0) / (width * 2));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Jamais d'agrandissement ; transparence aplatie sur fond blanc, JPEG n'ayant pas de canal alpha
+    private static BufferedImage scale(BufferedImage image, int width) {
+        int targetWidth = Math.min(width, image.getWidth());
+        int targetHeight = Math.max(1, Math.round((float) image.getHeight() * targetWidth / image.getWidth()));
+
+        BufferedImage scaled = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, targetWidth, targetHeight);
+            graphics.drawImage(image, 0, 0, targetWidth, targetHeight, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    private void write(BufferedImage image, String format, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format).next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(target.toFile())) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                if (param.getCompressionType() == null) {
+                    param.setCompressionType(param.getCompressionTypes()[0]);
+                }
+                param.setCompressionQuality(quality);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+
+    // ============== CACHE DISQUE ==============
+
+    // Entrée indexée dont le fichier a disparu : retirée, le dérivé sera régénéré
+    private Derivative lookup(String key) {
+        CacheEntry entry;
+        synchronized (index) {
+            entry = index.get(key);
+            if (entry != null) {
+                entry.servedAt = System.nanoTime();
+                entry.served = true;
+            }
+        }
+        if (entry == null) {
+            return null;
+        }
+        Path file = cacheDir.resolve(key);
+        if (!Files.isRegularFile(file)) {
+            synchronized (index) {
+                if (index.remove(key, entry)) {
+                    cachedBytes -= entry.size;
+                }
+            }
+            return null;
+        }
+        return new Derivative(file, entry.size, contentType(key));
+    }
+
+    /**
+     * Éviction du moins récemment utilisé ; un dérivé renvoyé depuis moins de project.thumbnails.serve-grace
+     * est peut-être encore en cours d'envoi (sendfile) et n'est pas supprimé. L'ordre d'accès place tous
+     * les suivants après lui : le cache peut dépasser brièvement sa taille maximale.
+     */
+    private void store(String key, long size, boolean served) {
+        List<String> evicted = new ArrayList<>();
+        synchronized (index) {
+            long now = System.nanoTime();
+            CacheEntry stored = new CacheEntry(size);
+            stored.servedAt = now;
+            stored.served = served;
+            CacheEntry previous = index.put(key, stored);
+            cachedBytes += size - (previous != null ? previous.size : 0);
+            Iterator<Map.Entry<String, CacheEntry>> eldest = index.entrySet().iterator();
+            while (cachedBytes > maxCacheBytes && eldest.hasNext()) {
+                Map.Entry<String, CacheEntry> entry = eldest.next();
+                if (entry.getKey().equals(key)) {
+                    continue;
+                }
+                if (entry.getValue().served && now - entry.getValue().servedAt < serveGraceNanos) {
+                    break;
+                }
+                cachedBytes -= entry.getValue().size;
+                evicted.add(entry.getKey());
+                eldest.remove();
+            }
+        }
+        // Suppressions hors du verrou : les autres requêtes ne les attendent pas
+        for (String name : evicted) {
+            try {
+                Files.deleteIfExists(cacheDir.resolve(name));
+                evictions.incrementAndGet();
+            } catch (IOException e) {
+                log.warn("Suppression impossible de l'aperçu {}: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Supprime les dérivés d'un fichier source, à la purge de son fichier.
+     */
+    public void evictSource(String filePath) {
+        String name = StorageBackend.keyOf(filePath);
+        int dot = name.lastIndexOf('.');
+        String prefix = (dot > 0 ? name.substring(0, dot) : name) + "-";
+        List<String> removed = new ArrayList<>();
+        synchronized (index) {
+            Iterator<Map.Entry<String, CacheEntry>> entries = index.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<String, CacheEntry> entry = entries.next();
+                if (entry.getKey().startsWith(prefix)) {
+                    cachedBytes -= entry.getValue().size;
+                    removed.add(entry.getKey());
+                    entries.remove();
+                }
+            }
+        }
+        for (String derivative : removed) {
+            try {
+                Files.deleteIfExists(cacheDir.resolve(derivative));
+            } catch (IOException e) {
+                log.warn("Suppression impossible de l'aperçu {}: {}", derivative, e.getMessage());
+            }
+        }
+    }
+
+    // Au démarrage, l'ordre d'accès est approché par la date d'écriture des dérivés déjà présents
+    private void loadIndex() throws IOException {
+        List<Map.Entry<Path, BasicFileAttributes>> files = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(cacheDir)) {
+            for (Path file : entries) {
+                if (file.getFileName().toString().endsWith(TEMP_SUFFIX)) {
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                if (attributes.isRegularFile()) {
+                    files.add(Map.entry(file, attributes));
+                }
+            }
+        }
+        files.sort(Comparator.comparing(entry -> entry.getValue().lastModifiedTime()));
+        for (Map.Entry<Path, BasicFileAttributes> entry : files) {
+            store(entry.getKey().getFileName().toString(), entry.getValue().size(), false);
+        }
+        synchronized (index) {
+            log.info("Cache des aperçus: {} fichier(s), {} octets", index.size(), cachedBytes);
+        }
+    }
+
+    public ThumbnailCacheDTO getStatistics() {
+        synchronized (index) {
+            return ThumbnailCacheDTO.builder()
+                    .files(index.size())
+                    .bytes(cachedBytes)
+                    .maxBytes(maxCacheBytes)
+                    .hits(hits.get())
+                    .renders(renders.get())
+                    .coalesced(coalesced.get())
+                    .evictions(evictions.get())
+                    .activeRenders(decodePool.getActiveCount())
+                    .queuedRenders(decodePool.getQueue().size())
+                    .build();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        decodePool.shutdownNow();
+    }
+
+
+    private static String contentType(String name) {
+        return name.endsWith("." + FORMAT_WEBP) ? "image/webp" : "image/jpeg";
+    }
+
+    public record Target(int width, String format) {
+
+        public String extension() {
+            return FORMAT_WEBP.equals(format) ? FORMAT_WEBP : "jpg";
+        }
+
+        public String contentType() {
+            return FORMAT_WEBP.equals(format) ? "image/webp" : "image/jpeg";
+        }
+    }
+
+    public record Derivative(Path file, long size, String contentType) {
+    }
+
+    // Entrée de l'index, modifiée sous le verrou de l'index
+    private static final class CacheEntry {
+        private final long size;
+        private long servedAt;
+        private boolean served;
+
+        private CacheEntry(long size) {
+            this.size = size;
+        }
+    }
+}
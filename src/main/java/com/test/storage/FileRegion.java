@@ -0,0 +1,9 @@
+package com.test.storage;
+
+import java.nio.file.Path;
+
+/**
+ * Objet stocké comme tranche [offset, offset + length[ d'un fichier local (fichier groupé).
+ */
+public record FileRegion(Path file, long offset, long length) {
+}
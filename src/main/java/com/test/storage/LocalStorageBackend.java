@@ -0,0 +1,160 @@
+package com.test.storage;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Stockage dans un répertoire local (project.document). Chaque écriture passe par un fichier temporaire
+ * du même répertoire, synchronisé sur disque puis renommé atomiquement : un lecteur ne voit jamais
+ * un fichier partiel.
+ */
+@Slf4j
+public class LocalStorageBackend implements StorageBackend {
+
+    public static final String TYPE = "local";
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path root;
+
+    public LocalStorageBackend(Path root) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        Files.createDirectories(this.root);
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    @Override
+    public String type() {
+        return TYPE;
+    }
+
+
+    // ============== ÉCRITURE ==============
+
+    @Override
+    public void put(String key, InputStream content, String contentType) throws IOException {
+        Path target = resolve(key);
+        Path temp = tempFile(key);
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                content.transferTo(Channels.newOutputStream(channel));
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public void put(String key, Path source, String contentType) throws IOException {
+        Path target = resolve(key);
+        // Fichier sur disque avant d'être visible sous sa clé
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            // Source sur un autre système de fichiers : copie puis renommage dans le répertoire de stockage
+            try (InputStream in = Files.newInputStream(source)) {
+                put(key, in, contentType);
+            }
+            Files.deleteIfExists(source);
+        }
+    }
+
+
+    // ============== LECTURE ==============
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        return Files.newInputStream(resolve(key));
+    }
+
+    @Override
+    public InputStream get(String key, long offset, long length) throws IOException {
+        FileChannel channel = FileChannel.open(resolve(key), StandardOpenOption.READ);
+        try {
+            channel.position(offset);
+            return new BoundedInputStream(Channels.newInputStream(channel), length);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public Optional<StoredObject> stat(String key) throws IOException {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(resolve(key), BasicFileAttributes.class);
+            return attributes.isRegularFile()
+                    ? Optional.of(new StoredObject(key, attributes.size(), attributes.lastModifiedTime().toMillis()))
+                    : Optional.empty();
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(resolve(key));
+    }
+
+    @Override
+    public Stream<StoredObject> list(String prefix) throws IOException {
+        DirectoryStream<Path> files = Files.newDirectoryStream(root, prefix + "*");
+        return StreamSupport.stream(files.spliterator(), false)
+                .onClose(() -> {
+                    try {
+                        files.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .filter(file -> !file.getFileName().toString().endsWith(TEMP_SUFFIX))
+                .flatMap(file -> {
+                    try {
+                        return stat(file.getFileName().toString()).stream();
+                    } catch (IOException e) {
+                        log.warn("Attributs illisibles pour {}: {}", file, e.getMessage());
+                        return Stream.empty();
+                    }
+                });
+    }
+
+    @Override
+    public Optional<Path> localPath(String key) {
+        return Optional.of(resolve(key));
+    }
+
+
+    private Path resolve(String key) {
+        return root.resolve(StorageBackend.checkKey(key));
+    }
+
+    // Nom caché et unique : jamais listé comme objet, jamais en conflit avec une écriture concurrente
+    private Path tempFile(String key) {
+        return root.resolve("." + StorageBackend.checkKey(key) + "." + UUID.randomUUID() + TEMP_SUFFIX);
+    }
+}
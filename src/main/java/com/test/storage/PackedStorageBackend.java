@@ -0,0 +1,245 @@
+package com.test.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Stockage local dont les pièces des documents validés sont regroupées dans de grands fichiers écrits
+ * par ajout (fichiers groupés), indexés par pack_entries : clé → fichier groupé, position, longueur.
+ * Une clé indexée est lue par une tranche projetée en mémoire de son fichier groupé, les autres restent
+ * des fichiers séparés du stockage local : les URL /files/{filename} ne changent pas.
+ * Les écritures créent toujours des fichiers séparés ; le regroupement est fait par PackCompactionService.
+ */
+@Slf4j
+public class PackedStorageBackend implements StorageBackend {
+
+    // Actif par défaut, en stockage local uniquement : la projection mémoire exige des fichiers locaux
+    public static final String ENABLED =
+            "${project.storage.packs.enabled:true} and '${project.storage.type:local}' == '" + LocalStorageBackend.TYPE + "'";
+
+    // Une projection mémoire est indexée par un int
+    public static final long MAX_PACK_SIZE = Integer.MAX_VALUE;
+
+    private static final String FIND_SQL = """
+            SELECT f.name, e.pack_offset, e.length, e.last_modified
+            FROM pack_entries e
+            JOIN pack_files f ON f.id = e.pack_id
+            WHERE e.storage_key = ?
+            """;
+
+    // Entrée retirée et octets comptés comme inutilisés en une seule requête, sans transaction de l'appelant
+    private static final String REMOVE_SQL = """
+            WITH removed AS (DELETE FROM pack_entries WHERE storage_key = ? RETURNING pack_id, length)
+            UPDATE pack_files f SET dead_bytes = f.dead_bytes + r.length, updated_at = now()
+            FROM removed r
+            WHERE f.id = r.pack_id
+            """;
+
+    private static final String LIST_SQL = """
+            SELECT storage_key, length, last_modified FROM pack_entries WHERE storage_key LIKE ? ORDER BY storage_key
+            """;
+
+    private final LocalStorageBackend loose;
+    private final JdbcTemplate jdbcTemplate;
+    private final Path packDir;
+
+    // Index en mémoire, absences comprises ; durée de vie bornée pour les clés regroupées depuis une autre instance
+    private final Cache<String, Optional<Slice>> index;
+
+    // Projection de chaque fichier groupé, refaite lorsqu'il a grandi depuis
+    private final Map<String, MappedByteBuffer> mappings = new ConcurrentHashMap<>();
+
+    public PackedStorageBackend(LocalStorageBackend loose, JdbcTemplate jdbcTemplate, Path packDir,
+                                long indexCacheSize, Duration indexTtl) throws IOException {
+        this.loose = loose;
+        this.jdbcTemplate = jdbcTemplate;
+        this.packDir = packDir.toAbsolutePath().normalize();
+        Files.createDirectories(this.packDir);
+        this.index = Caffeine.newBuilder()
+                .maximumSize(indexCacheSize)
+                .expireAfterWrite(indexTtl)
+                .build();
+    }
+
+    public LocalStorageBackend getLoose() {
+        return loose;
+    }
+
+    public Path getPackDir() {
+        return packDir;
+    }
+
+    @Override
+    public String type() {
+        return loose.type();
+    }
+
+
+    // ============== ÉCRITURE ==============
+
+    @Override
+    public void put(String key, InputStream content, String contentType) throws IOException {
+        loose.put(key, content, contentType);
+    }
+
+    @Override
+    public void put(String key, Path source, String contentType) throws IOException {
+        loose.put(key, source, contentType);
+    }
+
+
+    // ============== LECTURE ==============
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        Optional<ByteBuffer> slice = mapped(key);
+        return slice.isPresent() ? new ByteBufferInputStream(slice.get()) : loose.get(key);
+    }
+
+    @Override
+    public InputStream get(String key, long offset, long length) throws IOException {
+        Optional<ByteBuffer> slice = mapped(key);
+        if (slice.isEmpty()) {
+            return loose.get(key, offset, length);
+        }
+        ByteBuffer buffer = slice.get();
+        int start = (int) Math.min(Math.max(0, offset), buffer.capacity());
+        int count = (int) Math.min(Math.max(0, length), buffer.capacity() - start);
+        return new ByteBufferInputStream(buffer.slice(start, count));
+    }
+
+    @Override
+    public Optional<StoredObject> stat(String key) throws IOException {
+        Optional<Slice> slice = find(key);
+        if (slice.isPresent()) {
+            return Optional.of(new StoredObject(key, slice.get().length(), slice.get().lastModified()));
+        }
+        return loose.stat(key);
+    }
+
+    // Entrée d'index retirée (ses octets deviennent inutilisés dans le fichier groupé), puis fichier séparé éventuel
+    @Override
+    public void delete(String key) throws IOException {
+        jdbcTemplate.update(REMOVE_SQL, StorageBackend.checkKey(key));
+        index.invalidate(key);
+        loose.delete(key);
+    }
+
+    // Clés regroupées puis fichiers séparés qui ne le sont pas encore
+    @Override
+    public Stream<StoredObject> list(String prefix) throws IOException {
+        Set<String> packed = new HashSet<>();
+        List<StoredObject> objects = jdbcTemplate.query(LIST_SQL, (rs, rowNum) -> {
+            String key = rs.getString("storage_key");
+            packed.add(key);
+            return new StoredObject(key, rs.getLong("length"), rs.getLong("last_modified"));
+        }, escapeLike(prefix) + "%");
+        return Stream.concat(objects.stream(), loose.list(prefix).filter(object -> !packed.contains(object.key())));
+    }
+
+    // Une clé regroupée n'a pas de fichier propre
+    @Override
+    public Optional<Path> localPath(String key) {
+        try {
+            return find(key).isPresent() ? Optional.empty() : loose.localPath(key);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Optional<ByteBuffer> mapped(String key) throws IOException {
+        Optional<Slice> slice = find(key);
+        if (slice.isEmpty()) {
+            return Optional.empty();
+        }
+        Slice s = slice.get();
+        return Optional.of(mapping(s.pack(), s.offset() + s.length()).slice((int) s.offset(), (int) s.length()));
+    }
+
+    @Override
+    public Optional<FileRegion> region(String key) throws IOException {
+        return find(key).map(s -> new FileRegion(packDir.resolve(s.pack()), s.offset(), s.length()));
+    }
+
+
+    // ============== INDEX ==============
+
+    // Clés venant d'être regroupées : la prochaine lecture passe par le fichier groupé
+    public void evict(Collection<String> keys) {
+        index.invalidateAll(keys);
+    }
+
+    // Fichier groupé supprimé : sa projection n'est plus utilisée
+    public void forget(String pack) {
+        mappings.remove(pack);
+    }
+
+    private Optional<Slice> find(String key) throws IOException {
+        StorageBackend.checkKey(key);
+        try {
+            return index.get(key, k -> jdbcTemplate.query(FIND_SQL, (rs, rowNum) -> new Slice(rs.getString("name"),
+                    rs.getLong("pack_offset"), rs.getLong("length"), rs.getLong("last_modified")), k).stream().findFirst());
+        } catch (RuntimeException e) {
+            throw new IOException("Index des fichiers groupés illisible pour " + key + ": " + e.getMessage(), e);
+        }
+    }
+
+    // Projection en lecture seule couvrant au moins end octets
+    private MappedByteBuffer mapping(String pack, long end) throws IOException {
+        MappedByteBuffer current = mappings.get(pack);
+        if (current != null && current.capacity() >= end) {
+            return current;
+        }
+        try {
+            return mappings.compute(pack, (name, existing) -> {
+                if (existing != null && existing.capacity() >= end) {
+                    return existing;
+                }
+                try (FileChannel channel = FileChannel.open(packDir.resolve(StorageBackend.checkKey(name)),
+                        StandardOpenOption.READ)) {
+                    long size = channel.size();
+                    if (size < end) {
+                        throw new IOException("Fichier groupé " + name + " tronqué: " + size + " octets, " + end + " attendus");
+                    }
+                    log.debug("Projection du fichier groupé {} ({} octets)", name, size);
+                    return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause() instanceof NoSuchFileException missing
+                    ? new IOException("Fichier groupé introuvable: " + missing.getFile(), missing) : e.getCause();
+        }
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private record Slice(String pack, long offset, long length, long lastModified) {
+    }
+}
@@ -0,0 +1,288 @@
+package com.test.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Stockage dans un bucket compatible S3 (AWS, MinIO, Ceph…), clés préfixées par project.storage.s3.prefix.
+ * Les écritures sont envoyées par parties de taille fixe (multipart upload) : au plus un tampon d'une partie
+ * en mémoire pour un flux, aucun pour un fichier local lu directement depuis le disque. Un envoi interrompu
+ * est annulé, aucun objet partiel n'est visible. Les lectures de plages utilisent l'en-tête Range,
+ * sans télécharger l'objet entier.
+ */
+@Slf4j
+public class S3StorageBackend implements StorageBackend {
+
+    public static final String TYPE = "s3";
+
+    // Taille minimale d'une partie imposée par S3, hors dernière partie
+    public static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    private static final int INITIAL_BUFFER_SIZE = 256 * 1024;
+
+    private final S3Client s3;
+    private final S3Presigner presigner;
+    private final String bucket;
+    private final String prefix;
+    private final int partSize;
+
+    public S3StorageBackend(S3Client s3, S3Presigner presigner, String bucket, String prefix, int partSize) {
+        if (partSize < MIN_PART_SIZE) {
+            throw new IllegalArgumentException("Taille de partie inférieure au minimum S3 (" + MIN_PART_SIZE + " octets)");
+        }
+        this.s3 = s3;
+        this.presigner = presigner;
+        this.bucket = bucket;
+        this.prefix = prefix == null ? "" : prefix;
+        this.partSize = partSize;
+    }
+
+    @Override
+    public String type() {
+        return TYPE;
+    }
+
+
+    // ============== ÉCRITURE ==============
+
+    @Override
+    public void put(String key, InputStream content, String contentType) throws IOException {
+        String objectKey = objectKey(key);
+        // Taille inconnue : tampon agrandi tant que le contenu le remplit, jusqu'à une partie,
+        // pour ne pas allouer une partie entière à chaque petit fichier
+        byte[] buffer = new byte[Math.min(INITIAL_BUFFER_SIZE, partSize)];
+        int read = content.readNBytes(buffer, 0, buffer.length);
+        while (read == buffer.length && buffer.length < partSize) {
+            buffer = Arrays.copyOf(buffer, (int) Math.min(2L * buffer.length, partSize));
+            read += content.readNBytes(buffer, read, buffer.length - read);
+        }
+
+        // Tient dans une partie : un seul envoi
+        if (read < partSize) {
+            putObject(key, objectKey, contentType,
+                    RequestBody.fromInputStream(new ByteArrayInputStream(buffer, 0, read), read));
+            return;
+        }
+
+        byte[] part = buffer;
+        int first = read;
+        putParts(key, objectKey, contentType, new PartSource() {
+            private boolean started;
+
+            // Partie suivante lue dans le même tampon, une fois la précédente envoyée
+            @Override
+            public RequestBody next() throws IOException {
+                int length = started ? content.readNBytes(part, 0, partSize) : first;
+                started = true;
+                return length == 0 ? null
+                        : RequestBody.fromInputStream(new ByteArrayInputStream(part, 0, length), length);
+            }
+        });
+    }
+
+    // Taille connue : envoi lu directement depuis le fichier, partie par partie au-delà d'une partie
+    @Override
+    public void put(String key, Path source, String contentType) throws IOException {
+        String objectKey = objectKey(key);
+        long size = Files.size(source);
+        if (size <= partSize) {
+            putObject(key, objectKey, contentType, RequestBody.fromFile(source));
+        } else {
+            putParts(key, objectKey, contentType, new PartSource() {
+                private long offset;
+
+                @Override
+                public RequestBody next() {
+                    if (offset >= size) {
+                        return null;
+                    }
+                    long start = offset;
+                    long length = Math.min(partSize, size - start);
+                    offset += length;
+                    // Flux rouvert à chaque tentative du SDK
+                    return RequestBody.fromContentProvider(() -> openPart(source, start, length), length, contentType);
+                }
+            });
+        }
+        Files.deleteIfExists(source);
+    }
+
+    private void putObject(String key, String objectKey, String contentType, RequestBody body) throws IOException {
+        try {
+            s3.putObject(b -> b.bucket(bucket).key(objectKey).contentType(contentType), body);
+        } catch (SdkException e) {
+            throw failure("Écriture", key, e);
+        }
+    }
+
+    private void putParts(String key, String objectKey, String contentType, PartSource source) throws IOException {
+        String uploadId;
+        try {
+            uploadId = s3.createMultipartUpload(b -> b.bucket(bucket).key(objectKey).contentType(contentType)).uploadId();
+        } catch (SdkException e) {
+            throw failure("Écriture", key, e);
+        }
+        try {
+            List<CompletedPart> parts = new ArrayList<>();
+            RequestBody body;
+            while ((body = source.next()) != null) {
+                int partNumber = parts.size() + 1;
+                long length = body.optionalContentLength().orElseThrow();
+                String etag = s3.uploadPart(b -> b.bucket(bucket).key(objectKey).uploadId(uploadId)
+                        .partNumber(partNumber).contentLength(length), body).eTag();
+                parts.add(CompletedPart.builder().partNumber(partNumber).eTag(etag).build());
+            }
+            s3.completeMultipartUpload(b -> b.bucket(bucket).key(objectKey).uploadId(uploadId)
+                    .multipartUpload(m -> m.parts(parts)));
+            log.debug("Objet {} envoyé en {} partie(s)", objectKey, parts.size());
+        } catch (IOException | SdkException | UncheckedIOException e) {
+            abort(objectKey, uploadId);
+            throw switch (e) {
+                case SdkException sdk -> failure("Écriture", key, sdk);
+                case UncheckedIOException unchecked -> unchecked.getCause();
+                default -> (IOException) e;
+            };
+        }
+    }
+
+    private static InputStream openPart(Path source, long offset, long length) {
+        try {
+            InputStream in = Files.newInputStream(source);
+            in.skipNBytes(offset);
+            return new BoundedInputStream(in, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Partie suivante d'un envoi en plusieurs parties, null une fois le contenu épuisé
+    @FunctionalInterface
+    private interface PartSource {
+        RequestBody next() throws IOException;
+    }
+
+    // Parties déjà envoyées libérées côté serveur
+    private void abort(String objectKey, String uploadId) {
+        try {
+            s3.abortMultipartUpload(b -> b.bucket(bucket).key(objectKey).uploadId(uploadId));
+        } catch (SdkException e) {
+            log.warn("Annulation impossible de l'envoi {} de {}: {}", uploadId, objectKey, e.getMessage());
+        }
+    }
+
+
+    // ============== LECTURE ==============
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        try {
+            return s3.getObject(b -> b.bucket(bucket).key(objectKey(key)));
+        } catch (SdkException e) {
+            throw failure("Lecture", key, e);
+        }
+    }
+
+    @Override
+    public InputStream get(String key, long offset, long length) throws IOException {
+        if (length <= 0) {
+            return InputStream.nullInputStream();
+        }
+        try {
+            return s3.getObject(b -> b.bucket(bucket).key(objectKey(key))
+                    .range("bytes=" + offset + "-" + (offset + length - 1)));
+        } catch (SdkException e) {
+            throw failure("Lecture", key, e);
+        }
+    }
+
+    @Override
+    public Optional<StoredObject> stat(String key) throws IOException {
+        try {
+            HeadObjectResponse head = s3.headObject(b -> b.bucket(bucket).key(objectKey(key)));
+            return Optional.of(new StoredObject(key, head.contentLength(), head.lastModified().toEpochMilli()));
+        } catch (SdkException e) {
+            if (notFound(e)) {
+                return Optional.empty();
+            }
+            throw failure("Lecture des attributs", key, e);
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        try {
+            s3.deleteObject(b -> b.bucket(bucket).key(objectKey(key)));
+        } catch (SdkException e) {
+            throw failure("Suppression", key, e);
+        }
+    }
+
+    @Override
+    public Stream<StoredObject> list(String keyPrefix) throws IOException {
+        try {
+            return s3.listObjectsV2Paginator(b -> b.bucket(bucket).prefix(prefix + keyPrefix))
+                    .contents().stream()
+                    .filter(object -> object.key().indexOf('/', prefix.length()) < 0)
+                    .map(object -> new StoredObject(object.key().substring(prefix.length()), object.size(),
+                            object.lastModified().toEpochMilli()));
+        } catch (SdkException e) {
+            throw failure("Liste", keyPrefix + "*", e);
+        }
+    }
+
+    @Override
+    public Optional<URI> presignedUrl(String key, Duration ttl, String contentDisposition) {
+        GetObjectRequest request = GetObjectRequest.builder()
+                .bucket(bucket)
+                .key(objectKey(key))
+                .responseContentDisposition(contentDisposition)
+                .build();
+        try {
+            return Optional.of(presigner.presignGetObject(p -> p.signatureDuration(ttl).getObjectRequest(request))
+                    .url().toURI());
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException("URL signée invalide pour " + key, e);
+        }
+    }
+
+
+    private String objectKey(String key) {
+        return prefix + StorageBackend.checkKey(key);
+    }
+
+    private static boolean notFound(SdkException e) {
+        return e instanceof NoSuchKeyException || e instanceof S3Exception s3 && s3.statusCode() == 404;
+    }
+
+    // Erreurs du SDK ramenées aux exceptions d'entrée/sortie attendues des appelants
+    private static IOException failure(String operation, String key, SdkException e) {
+        if (notFound(e)) {
+            return new NoSuchFileException(key);
+        }
+        return new IOException(operation + " impossible de " + key + " sur le stockage S3: " + e.getMessage(), e);
+    }
+}
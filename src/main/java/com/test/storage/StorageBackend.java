@@ -0,0 +1,80 @@
+package com.test.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Stockage des fichiers de pièces, adressés par une clé plate (le nom de fichier, sans répertoire).
+ * Toutes les lectures et écritures se font en flux : aucun fichier n'est chargé entier en mémoire.
+ * Une clé absente est signalée par NoSuchFileException en lecture, par un résultat vide pour stat.
+ */
+public interface StorageBackend {
+
+    // Type du stockage, tel que configuré par project.storage.type
+    String type();
+
+    // Écrit le flux sous la clé ; l'objet n'est visible qu'une fois entièrement écrit
+    void put(String key, InputStream content, String contentType) throws IOException;
+
+    // Écrit un fichier local sous la clé ; le fichier source est consommé (déplacé ou supprimé)
+    void put(String key, Path source, String contentType) throws IOException;
+
+    InputStream get(String key) throws IOException;
+
+    // Plage [offset, offset + length[ de l'objet
+    InputStream get(String key, long offset, long length) throws IOException;
+
+    Optional<StoredObject> stat(String key) throws IOException;
+
+    default boolean exists(String key) throws IOException {
+        return stat(key).isPresent();
+    }
+
+    // Sans effet si la clé est absente
+    void delete(String key) throws IOException;
+
+    // Objets dont la clé commence par le préfixe ; le flux doit être fermé par l'appelant
+    Stream<StoredObject> list(String prefix) throws IOException;
+
+    // Fichier local de l'objet, lorsqu'il existe : envoi par sendfile, lecture sans copie
+    default Optional<Path> localPath(String key) {
+        return Optional.empty();
+    }
+
+    // Contenu projeté en mémoire, lorsque l'objet est une tranche d'un fichier groupé : lu sans appel système
+    default Optional<ByteBuffer> mapped(String key) throws IOException {
+        return Optional.empty();
+    }
+
+    // Emplacement de cette tranche dans son fichier local : envoi par sendfile depuis sa position
+    default Optional<FileRegion> region(String key) throws IOException {
+        return Optional.empty();
+    }
+
+    // URL signée de lecture directe, pour servir l'objet par redirection ; vide si non pris en charge
+    default Optional<URI> presignedUrl(String key, Duration ttl, String contentDisposition) {
+        return Optional.empty();
+    }
+
+
+    // Clé d'un fichier de pièce : le nom de fichier de son chemin enregistré (project.document + nom)
+    static String keyOf(String filePath) {
+        return checkKey(Paths.get(filePath).getFileName().toString());
+    }
+
+    // Une clé est un simple nom de fichier : ni séparateur, ni remontée de répertoire
+    static String checkKey(String key) {
+        if (key == null || key.isBlank() || key.equals(".") || key.equals("..")
+                || key.indexOf('/') >= 0 || key.indexOf('\\') >= 0) {
+            throw new IllegalArgumentException("Clé de stockage invalide: " + key);
+        }
+        return key;
+    }
+}
@@ -0,0 +1,7 @@
+package com.test.storage;
+
+/**
+ * Objet du stockage : clé, taille en octets et date de dernière modification (millisecondes epoch).
+ */
+public record StoredObject(String key, long size, long lastModified) {
+}
@@ -0,0 +1,109 @@
+package com.test.service;
+
+import com.test.enums.DocumentStatus;
+import com.test.enums.FileType;
+import com.test.model.Document;
+import com.test.model.FolderContent;
+import com.test.model.Piece;
+import com.test.payload.DocumentDetailDTO;
+import com.test.repository.DocumentRepo;
+import com.test.repository.FolderContentRepo;
+import com.test.repository.PieceRepo;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class DocumentDetailQueryCountTest {
+
+    private static final int PIECE_COUNT = 150;
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private DocumentRepo documentRepo;
+
+    @Autowired
+    private PieceRepo pieceRepo;
+
+    @Autowired
+    private FolderContentRepo folderContentRepo;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Document document;
+    private final List<FolderContent> contents = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        String suffix = UUID.randomUUID().toString();
+        document = documentRepo.save(Document.builder()
+                .title("Détail " + suffix)
+                .status(DocumentStatus.EN_COURS)
+                .metadata(Map.of())
+                .build());
+
+        for (int i = 0; i < 3; i++) {
+            contents.add(folderContentRepo.save(FolderContent.builder()
+                    .name("Contenu " + i + " " + suffix)
+                    .required(i == 0)
+                    .build()));
+        }
+
+        List<Piece> pieces = new ArrayList<>();
+        for (int i = 0; i < PIECE_COUNT; i++) {
+            String name = UUID.randomUUID() + ".png";
+            pieces.add(Piece.builder()
+                    .document(document)
+                    .content(contents.get(i % contents.size()))
+                    .fileName(name)
+                    .filePath("documents/" + name)
+                    .pieceUrl("files/" + name)
+                    .fileSize(1024L)
+                    .fileType(FileType.IMAGE_PNG)
+                    .qrCodeData("QR-" + i)
+                    .build());
+        }
+        pieceRepo.saveAll(pieces);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM pieces WHERE document_id = ?", document.getId());
+        documentRepo.deleteById(document.getId());
+        folderContentRepo.deleteAll(contents);
+    }
+
+    @Test
+    void documentDetailUsesAtMostTwoStatements() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        DocumentDetailDTO detail = documentService.getDocumentDetail(document.getId());
+
+        assertEquals(PIECE_COUNT, detail.getPieces().size());
+        assertTrue(detail.getPieces().stream().allMatch(p -> p.getContentName() != null));
+        assertEquals("QR-0", detail.getPieces().getFirst().getQrCodeData());
+        // Ligne du document puis projection des pièces, indépendamment du nombre de pièces
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+}
@@ -0,0 +1,173 @@
+package com.test.storage;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.MinIOContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Stockage S3 contre un serveur MinIO local ; ignoré lorsque Docker n'est pas disponible.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class S3StorageBackendTest {
+
+    private static final String BUCKET = "pieces";
+
+    @Container
+    private static final MinIOContainer MINIO = new MinIOContainer("minio/minio:RELEASE.2025-04-22T22-12-26Z");
+
+    private static S3Client s3;
+    private static S3Presigner presigner;
+    private static S3StorageBackend storage;
+
+    @BeforeAll
+    static void setUp() {
+        StaticCredentialsProvider credentials = StaticCredentialsProvider.create(
+                AwsBasicCredentials.create(MINIO.getUserName(), MINIO.getPassword()));
+        S3Configuration pathStyle = S3Configuration.builder().pathStyleAccessEnabled(true).build();
+        s3 = S3Client.builder()
+                .endpointOverride(URI.create(MINIO.getS3URL()))
+                .region(Region.US_EAST_1)
+                .credentialsProvider(credentials)
+                .serviceConfiguration(pathStyle)
+                .build();
+        presigner = S3Presigner.builder()
+                .endpointOverride(URI.create(MINIO.getS3URL()))
+                .region(Region.US_EAST_1)
+                .credentialsProvider(credentials)
+                .serviceConfiguration(pathStyle)
+                .build();
+        s3.createBucket(b -> b.bucket(BUCKET));
+        storage = new S3StorageBackend(s3, presigner, BUCKET, "documents/", S3StorageBackend.MIN_PART_SIZE);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        presigner.close();
+        s3.close();
+    }
+
+    @Test
+    void smallObjectRoundTrip() throws IOException {
+        byte[] content = bytes(1024, 1);
+        storage.put("petit.jpg", new ByteArrayInputStream(content), "image/jpeg");
+
+        try (InputStream in = storage.get("petit.jpg")) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+        StoredObject object = storage.stat("petit.jpg").orElseThrow();
+        assertEquals(content.length, object.size());
+        assertEquals("image/jpeg", s3.headObject(b -> b.bucket(BUCKET).key("documents/petit.jpg")).contentType());
+    }
+
+    @Test
+    void largeObjectIsSentInPartsAndReadByRange() throws IOException {
+        // Deux parties pleines et une partie partielle
+        byte[] content = bytes(S3StorageBackend.MIN_PART_SIZE * 2 + 12345, 2);
+        storage.put("grand.png", new ByteArrayInputStream(content), "image/png");
+
+        assertEquals(content.length, storage.stat("grand.png").orElseThrow().size());
+        long offset = S3StorageBackend.MIN_PART_SIZE - 10;
+        try (InputStream in = storage.get("grand.png", offset, 100)) {
+            assertArrayEquals(Arrays.copyOfRange(content, (int) offset, (int) offset + 100), in.readAllBytes());
+        }
+    }
+
+    @Test
+    void interruptedUploadLeavesNoObject() {
+        InputStream failing = new SequenceInputStream(
+                new ByteArrayInputStream(bytes(S3StorageBackend.MIN_PART_SIZE + 1, 3)),
+                new InputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        throw new IOException("Connexion coupée");
+                    }
+                });
+
+        assertThrows(IOException.class, () -> storage.put("coupe.jpg", failing, "image/jpeg"));
+        assertTrue(s3.listMultipartUploads(b -> b.bucket(BUCKET)).uploads().isEmpty());
+        assertThrows(NoSuchFileException.class, () -> storage.get("coupe.jpg"));
+    }
+
+    @Test
+    void localFileIsConsumed() throws IOException {
+        Path source = Files.createTempFile("piece-", ".jpg");
+        Files.write(source, bytes(2048, 4));
+
+        storage.put("depuis-fichier.jpg", source, "image/jpeg");
+
+        assertFalse(Files.exists(source));
+        assertTrue(storage.exists("depuis-fichier.jpg"));
+    }
+
+    @Test
+    void listDeleteAndMissingKeys() throws IOException {
+        storage.put("a1.jpg", new ByteArrayInputStream(bytes(10, 5)), "image/jpeg");
+        storage.put("a2.jpg", new ByteArrayInputStream(bytes(10, 6)), "image/jpeg");
+        storage.put("b1.jpg", new ByteArrayInputStream(bytes(10, 7)), "image/jpeg");
+
+        try (Stream<StoredObject> objects = storage.list("a")) {
+            assertEquals(List.of("a1.jpg", "a2.jpg"), objects.map(StoredObject::key).sorted().toList());
+        }
+
+        storage.delete("a1.jpg");
+        storage.delete("a1.jpg");
+        assertTrue(storage.stat("a1.jpg").isEmpty());
+        assertThrows(NoSuchFileException.class, () -> storage.get("a1.jpg"));
+        assertThrows(IllegalArgumentException.class, () -> storage.get("../a2.jpg"));
+    }
+
+    @Test
+    void presignedUrlServesTheObject() throws Exception {
+        byte[] content = bytes(4096, 8);
+        storage.put("signe.jpg", new ByteArrayInputStream(content), "image/jpeg");
+
+        URI url = storage.presignedUrl("signe.jpg", Duration.ofMinutes(5), "attachment; filename=\"signe.jpg\"")
+                .orElseThrow();
+        HttpResponse<byte[]> response = HttpClient.newHttpClient()
+                .send(HttpRequest.newBuilder(url).build(), HttpResponse.BodyHandlers.ofByteArray());
+
+        assertEquals(200, response.statusCode());
+        assertArrayEquals(content, response.body());
+        assertEquals("attachment; filename=\"signe.jpg\"",
+                response.headers().firstValue("Content-Disposition").orElse(null));
+    }
+
+
+    private static byte[] bytes(int size, long seed) {
+        byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}